@@ -0,0 +1,129 @@
+package com.example.signalserver.config;
+
+import org.springframework.amqp.core.Binding;
+import org.springframework.amqp.core.BindingBuilder;
+import org.springframework.amqp.core.DirectExchange;
+import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.core.QueueBuilder;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.thymeleaf.TemplateEngine;
+import org.thymeleaf.templatemode.TemplateMode;
+import org.thymeleaf.templateresolver.ClassLoaderTemplateResolver;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Очереди исходящей почты.
+ *
+ * mail.outbound - основная очередь; mail.outbound.retry - очередь повторов без
+ * потребителей, сообщения по истечении TTL возвращаются в основную; mail.outbound.dlq -
+ * письма, которые не удалось отправить за все попытки.
+ */
+@Configuration
+public class MailQueueConfig {
+
+    public static final String MAIL_EXCHANGE = "mail";
+    public static final String OUTBOUND_QUEUE = "mail.outbound";
+    public static final String RETRY_QUEUE = "mail.outbound.retry";
+    public static final String DEAD_QUEUE = "mail.outbound.dlq";
+    public static final String OUTBOUND_ROUTING_KEY = "outbound";
+    public static final String RETRY_ROUTING_KEY = "retry";
+    public static final String DEAD_ROUTING_KEY = "dead";
+
+    @Value("${app.mail.retry-delay-ms:30000}")
+    private int retryDelayMs;
+
+    @Value("${app.mail.consumers:2}")
+    private int consumers;
+
+    @Value("${app.mail.batch-size:50}")
+    private int batchSize;
+
+    @Value("${app.mail.batch-receive-timeout-ms:500}")
+    private long batchReceiveTimeoutMs;
+
+    @Bean
+    public DirectExchange mailExchange() {
+        return new DirectExchange(MAIL_EXCHANGE);
+    }
+
+    @Bean
+    public Queue mailOutboundQueue() {
+        return QueueBuilder.durable(OUTBOUND_QUEUE).build();
+    }
+
+    @Bean
+    public Queue mailRetryQueue() {
+        return QueueBuilder.durable(RETRY_QUEUE)
+                .ttl(retryDelayMs)
+                .deadLetterExchange(MAIL_EXCHANGE)
+                .deadLetterRoutingKey(OUTBOUND_ROUTING_KEY)
+                .build();
+    }
+
+    @Bean
+    public Queue mailDeadQueue() {
+        return QueueBuilder.durable(DEAD_QUEUE).build();
+    }
+
+    @Bean
+    public Binding mailOutboundBinding() {
+        return BindingBuilder.bind(mailOutboundQueue()).to(mailExchange()).with(OUTBOUND_ROUTING_KEY);
+    }
+
+    @Bean
+    public Binding mailRetryBinding() {
+        return BindingBuilder.bind(mailRetryQueue()).to(mailExchange()).with(RETRY_ROUTING_KEY);
+    }
+
+    @Bean
+    public Binding mailDeadBinding() {
+        return BindingBuilder.bind(mailDeadQueue()).to(mailExchange()).with(DEAD_ROUTING_KEY);
+    }
+
+    @Bean
+    public MessageConverter jsonMessageConverter() {
+        return new Jackson2JsonMessageConverter();
+    }
+
+    /**
+     * Пакетный потребитель: до batchSize сообщений или batchReceiveTimeoutMs ожидания
+     */
+    @Bean
+    public SimpleRabbitListenerContainerFactory mailListenerContainerFactory(ConnectionFactory connectionFactory,
+                                                                             MessageConverter jsonMessageConverter) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        factory.setConnectionFactory(connectionFactory);
+        factory.setMessageConverter(jsonMessageConverter);
+        factory.setConcurrentConsumers(consumers);
+        factory.setBatchListener(true);
+        factory.setConsumerBatchEnabled(true);
+        factory.setBatchSize(batchSize);
+        factory.setReceiveTimeout(batchReceiveTimeoutMs);
+        factory.setPrefetchCount(batchSize * 2);
+        return factory;
+    }
+
+    /**
+     * Thymeleaf без Spring MVC: шаблоны писем из classpath:templates/
+     */
+    @Bean
+    public TemplateEngine mailTemplateEngine() {
+        ClassLoaderTemplateResolver resolver = new ClassLoaderTemplateResolver();
+        resolver.setPrefix("templates/");
+        resolver.setSuffix(".html");
+        resolver.setTemplateMode(TemplateMode.HTML);
+        resolver.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        resolver.setCacheable(true);
+
+        TemplateEngine engine = new TemplateEngine();
+        engine.setTemplateResolver(resolver);
+        return engine;
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.signalserver.config;
+
+import com.example.signalserver.service.auth.TokenPurgeJob;
+import org.quartz.CronScheduleBuilder;
+import org.quartz.JobBuilder;
+import org.quartz.JobDetail;
+import org.quartz.Trigger;
+import org.quartz.TriggerBuilder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class QuartzConfig {
+
+    @Value("${app.token-purge.cron:0 15 * * * ?}")
+    private String tokenPurgeCron;
+
+    @Bean
+    public JobDetail tokenPurgeJobDetail() {
+        return JobBuilder.newJob(TokenPurgeJob.class)
+                .withIdentity("tokenPurge", "maintenance")
+                .storeDurably()
+                .requestRecovery()
+                .build();
+    }
+
+    /**
+     * Пропущенные запуски не догоняются - следующий запуск удалит всё накопившееся
+     */
+    @Bean
+    public Trigger tokenPurgeTrigger(JobDetail tokenPurgeJobDetail) {
+        return TriggerBuilder.newTrigger()
+                .forJob(tokenPurgeJobDetail)
+                .withIdentity("tokenPurgeTrigger", "maintenance")
+                .withSchedule(CronScheduleBuilder.cronSchedule(tokenPurgeCron)
+                        .withMisfireHandlingInstructionDoNothing())
+                .build();
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.signalserver.config;
+
+import com.example.signalserver.service.cluster.ClusterMembership;
+import org.springframework.amqp.core.Binding;
+import org.springframework.amqp.core.BindingBuilder;
+import org.springframework.amqp.core.DirectExchange;
+import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.core.QueueBuilder;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Маршрутизация сигналинга между узлами (app.room-transport=owner).
+ *
+ * У каждого узла своя эксклюзивная автоудаляемая очередь signaling.node.{nodeId},
+ * привязанная к direct-обменнику signaling по ключу nodeId.
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.room-transport", havingValue = "owner")
+public class SignalingQueueConfig {
+
+    public static final String SIGNALING_EXCHANGE = "signaling";
+    public static final String NODE_QUEUE_PREFIX = "signaling.node.";
+
+    @Bean
+    public DirectExchange signalingExchange() {
+        return new DirectExchange(SIGNALING_EXCHANGE, false, false);
+    }
+
+    @Bean
+    public Queue signalingNodeQueue(ClusterMembership clusterMembership) {
+        return QueueBuilder.nonDurable(NODE_QUEUE_PREFIX + clusterMembership.getNodeId())
+                .exclusive()
+                .autoDelete()
+                .build();
+    }
+
+    @Bean
+    public Binding signalingNodeBinding(Queue signalingNodeQueue, DirectExchange signalingExchange,
+                                        ClusterMembership clusterMembership) {
+        return BindingBuilder.bind(signalingNodeQueue).to(signalingExchange).with(clusterMembership.getNodeId());
+    }
+}
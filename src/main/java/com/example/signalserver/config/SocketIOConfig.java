@@ -0,0 +1,97 @@
+package com.example.signalserver.config;
+
+import com.corundumstudio.socketio.SocketConfig;
+import com.corundumstudio.socketio.SocketIOChannelInitializer;
+import com.corundumstudio.socketio.SocketIOServer;
+import com.example.signalserver.service.call.ChannelWritabilityTracker;
+import com.example.signalserver.service.call.RoomExecutor;
+import io.netty.channel.Channel;
+import io.netty.channel.WriteBufferWaterMark;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class SocketIOConfig {
+
+    @Value("${socketio.host:0.0.0.0}")
+    private String host;
+
+    @Value("${socketio.port:9092}")
+    private int port;
+
+    @Value("${socketio.boss-threads:1}")
+    private int bossThreads;
+
+    // 0 - количество потоков по умолчанию в Netty (2 * CPU)
+    @Value("${socketio.worker-threads:0}")
+    private int workerThreads;
+
+    @Value("${socketio.ping-interval:25000}")
+    private int pingInterval;
+
+    @Value("${socketio.ping-timeout:60000}")
+    private int pingTimeout;
+
+    @Value("${socketio.max-frame-payload:65536}")
+    private int maxFramePayloadLength;
+
+    // Границы буфера записи канала: выше high канал незаписываем, и события ждут в PeerOutbox
+    @Value("${app.outbox.write-buffer-low-bytes:32768}")
+    private int writeBufferLow;
+
+    @Value("${app.outbox.write-buffer-high-bytes:65536}")
+    private int writeBufferHigh;
+
+    // 0 - по одному loop'у на ядро
+    @Value("${signaling.room-loops:0}")
+    private int roomLoops;
+
+    // Пул блокирующих обращений к БД при подключении и первом входе в комнату
+    @Value("${signaling.room-offload-threads:8}")
+    private int roomOffloadThreads;
+
+    @Value("${signaling.room-offload-queue:1024}")
+    private int roomOffloadQueue;
+
+    /**
+     * Сервер Socket.IO. Запуск и остановка выполняются в SignalingService
+     * после регистрации обработчиков событий.
+     */
+    @Bean
+    public SocketIOServer socketIOServer(ChannelWritabilityTracker writabilityTracker) {
+        com.corundumstudio.socketio.Configuration config = new com.corundumstudio.socketio.Configuration();
+        config.setHostname(host);
+        config.setPort(port);
+        config.setBossThreads(bossThreads);
+        config.setWorkerThreads(workerThreads);
+        config.setPingInterval(pingInterval);
+        config.setPingTimeout(pingTimeout);
+        config.setMaxFramePayloadLength(maxFramePayloadLength);
+
+        SocketConfig socketConfig = new SocketConfig();
+        socketConfig.setTcpNoDelay(true);
+        socketConfig.setReuseAddress(true);
+        config.setSocketConfig(socketConfig);
+
+        SocketIOServer server = new SocketIOServer(config);
+        server.setPipelineFactory(new SocketIOChannelInitializer() {
+            @Override
+            protected void initChannel(Channel ch) throws Exception {
+                super.initChannel(ch);
+                ch.config().setWriteBufferWaterMark(new WriteBufferWaterMark(writeBufferLow, writeBufferHigh));
+                // После декодера: трекеру нужен URI запроса открытия websocket
+                ch.pipeline().addAfter(HTTP_REQUEST_DECODER, "writabilityTracker", writabilityTracker);
+            }
+        });
+        return server;
+    }
+
+    /**
+     * Однопоточные loop'ы, владеющие состоянием комнат
+     */
+    @Bean(destroyMethod = "shutdown")
+    public RoomExecutor roomExecutor() {
+        return new RoomExecutor(roomLoops, roomOffloadThreads, roomOffloadQueue);
+    }
+}
@@ -6,6 +6,9 @@ import com.example.signalserver.dto.request.RefreshTokenRequest;
 import com.example.signalserver.dto.request.ChangePasswordRequest;
 import com.example.signalserver.dto.response.AuthResponse;
 import com.example.signalserver.dto.response.MessageResponse;
+import com.example.signalserver.exception.HashingOverloadException;
+import com.example.signalserver.exception.LoginThrottledException;
+import com.example.signalserver.security.ClientIpResolver;
 import com.example.signalserver.service.auth.AuthService;
 import com.example.signalserver.service.user.UserService;
 import io.swagger.v3.oas.annotations.Operation;
@@ -13,6 +16,8 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
@@ -29,6 +34,9 @@ public class AuthController {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private ClientIpResolver clientIpResolver;
+
     @Operation(summary = "Register new user", description = "Create a new user account")
     @PostMapping("/register")
     public ResponseEntity<MessageResponse> register(@Valid @RequestBody RegisterRequest request,
@@ -43,6 +51,8 @@ public class AuthController {
                     "User registered successfully! Please check your email for verification.",
                     "SUCCESS"
             ));
+        } catch (HashingOverloadException e) {
+            return overloaded(e);
         } catch (Exception e) {
             return ResponseEntity.badRequest()
                     .body(new MessageResponse(e.getMessage(), "ERROR"));
@@ -59,6 +69,12 @@ public class AuthController {
 
             AuthResponse response = authService.login(request, clientIp, userAgent);
             return ResponseEntity.ok(response);
+        } catch (LoginThrottledException e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                    .body(new MessageResponse(e.getMessage(), "THROTTLED"));
+        } catch (HashingOverloadException e) {
+            return overloaded(e);
         } catch (Exception e) {
             return ResponseEntity.badRequest()
                     .body(new MessageResponse(e.getMessage(), "ERROR"));
@@ -152,6 +168,8 @@ public class AuthController {
                     "Password reset successfully!",
                     "SUCCESS"
             ));
+        } catch (HashingOverloadException e) {
+            return overloaded(e);
         } catch (Exception e) {
             return ResponseEntity.badRequest()
                     .body(new MessageResponse(e.getMessage(), "ERROR"));
@@ -172,6 +190,8 @@ public class AuthController {
                     "Password changed successfully!",
                     "SUCCESS"
             ));
+        } catch (HashingOverloadException e) {
+            return overloaded(e);
         } catch (Exception e) {
             return ResponseEntity.badRequest()
                     .body(new MessageResponse(e.getMessage(), "ERROR"));
@@ -199,13 +219,15 @@ public class AuthController {
     }
 
     // Utility methods
+    private ResponseEntity<MessageResponse> overloaded(HashingOverloadException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(new MessageResponse(e.getMessage(), "OVERLOADED"));
+    }
+
+    // X-Forwarded-For учитывается только от доверенных прокси: IP - ключ ограничения входов
     private String getClientIpAddress(HttpServletRequest request) {
-        String xForwardedForHeader = request.getHeader("X-Forwarded-For");
-        if (xForwardedForHeader == null) {
-            return request.getRemoteAddr();
-        } else {
-            return xForwardedForHeader.split(",")[0];
-        }
+        return clientIpResolver.resolve(request);
     }
 
     private String extractJwtFromRequest(HttpServletRequest request) {
@@ -0,0 +1,17 @@
+package com.example.signalserver.exception;
+
+import lombok.Getter;
+
+/**
+ * Пул хеширования паролей перегружен; клиенту следует повторить запрос позже
+ */
+@Getter
+public class HashingOverloadException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public HashingOverloadException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
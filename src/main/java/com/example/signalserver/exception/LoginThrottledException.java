@@ -0,0 +1,17 @@
+package com.example.signalserver.exception;
+
+import lombok.Getter;
+
+/**
+ * Слишком много неудачных попыток входа с адреса или для учётной записи
+ */
+@Getter
+public class LoginThrottledException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public LoginThrottledException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
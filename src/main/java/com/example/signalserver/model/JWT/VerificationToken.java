@@ -18,7 +18,8 @@ import java.time.LocalDateTime;
 @AllArgsConstructor
 public class VerificationToken {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "verification_tokens_seq")
+    @SequenceGenerator(name = "verification_tokens_seq", sequenceName = "verification_tokens_id_seq", allocationSize = 50)
     private Long id;
 
     @Column(unique = true, nullable = false)
@@ -19,7 +19,8 @@ import java.time.LocalDateTime;
 public class CallSession {
     // Getters and Setters
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "call_sessions_seq")
+    @SequenceGenerator(name = "call_sessions_seq", sequenceName = "call_sessions_id_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -19,7 +19,8 @@ import java.util.List;
 @EntityListeners(AuditingEntityListener.class)
 public class Room {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "rooms_seq")
+    @SequenceGenerator(name = "rooms_seq", sequenceName = "rooms_id_seq", allocationSize = 50)
     private Long id;
 
     @Column(unique = true, nullable = false, length = 10)
@@ -205,10 +206,17 @@ public class Room {
     }
 
     // Business methods
+
+    /**
+     * Загружает всю lazy-коллекцию sessions. Для живого состава комнаты
+     * используйте RoomService / RoomRosterRegistry.
+     */
+    @Deprecated
     public int getCurrentParticipants() {
         return (int) sessions.stream().filter(CallSession::isActive).count();
     }
 
+    @Deprecated
     public boolean isFull() {
         return getCurrentParticipants() >= maxParticipants;
     }
@@ -15,6 +15,8 @@ import java.time.LocalDateTime;
 @Table(name = "room_events")
 @EntityListeners(AuditingEntityListener.class)
 public class RoomEvent {
+    // Строки пишет RoomEventSink сырым INSERT с DEFAULT nextval(): pooled-диапазон
+    // здесь сжигал бы 50 значений на строку, поэтому id по-прежнему выдаёт БД
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
@@ -0,0 +1,27 @@
+package com.example.signalserver.repository.call;
+
+import com.example.signalserver.model.entity.CallSession;
+import com.example.signalserver.model.enums.ConnectionStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+@Repository
+public interface CallSessionRepository extends JpaRepository<CallSession, Long> {
+
+    Optional<CallSession> findBySocketId(String socketId);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE CallSession cs SET cs.active = false, cs.leftAt = :leftAt, cs.connectionStatus = :status " +
+            "WHERE cs.socketId = :socketId AND cs.active = true")
+    int closeBySocketId(@Param("socketId") String socketId,
+                        @Param("leftAt") LocalDateTime leftAt,
+                        @Param("status") ConnectionStatus status);
+}
@@ -0,0 +1,13 @@
+package com.example.signalserver.repository.room;
+
+import com.example.signalserver.model.entity.Room;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface RoomRepository extends JpaRepository<Room, Long> {
+
+    Optional<Room> findByRoomCode(String roomCode);
+}
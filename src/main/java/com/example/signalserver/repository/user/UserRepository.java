@@ -48,7 +48,11 @@ public interface UserRepository extends JpaRepository<User, Long> {
     @Query("SELECT u FROM User u WHERE u.status = :status ORDER BY u.lastSeenAt DESC")
     Page<User> findByStatusOrderByLastSeenDesc(@Param("status") UserStatus status, Pageable pageable);
 
-    // Поиск по имени (поиск пользователей)
+    /**
+     * Полный просмотр таблицы на каждый запрос. Для поиска пользователей
+     * используйте UserService.searchUsers (триграммный индекс в памяти).
+     */
+    @Deprecated
     @Query("SELECT u FROM User u WHERE " +
             "(LOWER(u.username) LIKE LOWER(CONCAT('%', :search, '%')) OR " +
             "LOWER(u.firstName) LIKE LOWER(CONCAT('%', :search, '%')) OR " +
@@ -57,20 +61,6 @@ public interface UserRepository extends JpaRepository<User, Long> {
             "u.status = 'ACTIVE'")
     Page<User> searchActiveUsers(@Param("search") String search, Pageable pageable);
 
-    // Методы для обновления активности
-    @Modifying
-    @Transactional
-    @Query("UPDATE User u SET u.online = :online, u.lastSeenAt = :lastSeen WHERE u.id = :userId")
-    void updateUserOnlineStatus(@Param("userId") Long userId,
-                                @Param("online") boolean online,
-                                @Param("lastSeen") LocalDateTime lastSeen);
-
-    @Modifying
-    @Transactional
-    @Query("UPDATE User u SET u.lastSeenAt = :lastSeen WHERE u.username = :username")
-    void updateLastSeenByUsername(@Param("username") String username,
-                                  @Param("lastSeen") LocalDateTime lastSeen);
-
     // Методы для верификации email
     @Query("SELECT u FROM User u WHERE u.emailVerified = false AND u.status = 'ACTIVE'")
     List<User> findUnverifiedUsers();
@@ -101,15 +91,6 @@ public interface UserRepository extends JpaRepository<User, Long> {
             "WHERE cs.room.roomCode = :roomCode AND cs.active = true)")
     List<User> findActiveUsersInRoom(@Param("roomCode") String roomCode);
 
-    // Методы для очистки неактивных пользователей
-    @Query("SELECT u FROM User u WHERE u.online = true AND u.lastSeenAt < :cutoffTime")
-    List<User> findStaleOnlineUsers(@Param("cutoffTime") LocalDateTime cutoffTime);
-
-    @Modifying
-    @Transactional
-    @Query("UPDATE User u SET u.online = false WHERE u.lastSeenAt < :cutoffTime AND u.online = true")
-    int markStaleUsersOffline(@Param("cutoffTime") LocalDateTime cutoffTime);
-
     // Методы для администрирования
     @Query("SELECT u FROM User u WHERE u.status = 'ACTIVE' ORDER BY u.createdAt DESC")
     Page<User> findActiveUsersOrderByRegistration(Pageable pageable);
@@ -0,0 +1,82 @@
+package com.example.signalserver.security;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.web.util.matcher.IpAddressMatcher;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * IP клиента для ограничений по адресу (LoginThrottleService).
+ *
+ * X-Forwarded-For задаёт клиент, поэтому заголовку верят только от доверенных
+ * прокси (app.trusted-proxies, адреса или CIDR): цепочка читается справа налево,
+ * пропуская доверенные узлы, и первый недоверенный адрес считается клиентом.
+ * Без списка доверенных прокси используется адрес соединения.
+ */
+@Component
+public class ClientIpResolver {
+
+    private static final String FORWARDED_FOR = "X-Forwarded-For";
+
+    @Value("${app.trusted-proxies:}")
+    private List<String> trustedProxies;
+
+    private final List<IpAddressMatcher> matchers = new ArrayList<>();
+
+    @PostConstruct
+    public void init() {
+        for (String proxy : trustedProxies) {
+            if (StringUtils.hasText(proxy)) {
+                matchers.add(new IpAddressMatcher(proxy.trim()));
+            }
+        }
+    }
+
+    public String resolve(HttpServletRequest request) {
+        String remoteAddr = request.getRemoteAddr();
+        if (!isTrusted(remoteAddr)) {
+            return remoteAddr;
+        }
+
+        String header = request.getHeader(FORWARDED_FOR);
+        if (!StringUtils.hasText(header)) {
+            return remoteAddr;
+        }
+
+        String[] hops = header.split(",");
+        String client = remoteAddr;
+        for (int i = hops.length - 1; i >= 0; i--) {
+            String hop = hops[i].trim();
+            if (hop.isEmpty()) {
+                continue;
+            }
+            client = hop;
+            if (!isTrusted(hop)) {
+                break;
+            }
+        }
+        return client;
+    }
+
+    private boolean isTrusted(String address) {
+        if (address == null) {
+            return false;
+        }
+        for (IpAddressMatcher matcher : matchers) {
+            try {
+                if (matcher.matches(address)) {
+                    return true;
+                }
+            } catch (IllegalArgumentException e) {
+                // Не адрес (мусор в заголовке) - не доверенный
+                return false;
+            }
+        }
+        return false;
+    }
+}
@@ -7,21 +7,49 @@ import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 
 import java.time.LocalDateTime;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
+import java.util.stream.Collectors;
 
 public class CustomUserDetails implements UserDetails {
 
+    private static final List<GrantedAuthority> DEFAULT_AUTHORITIES =
+            List.of(new SimpleGrantedAuthority("ROLE_USER"));
+
     private final User user;
+    private final Collection<? extends GrantedAuthority> authorities;
 
     public CustomUserDetails(User user) {
+        this(user, DEFAULT_AUTHORITIES);
+    }
+
+    private CustomUserDetails(User user, Collection<? extends GrantedAuthority> authorities) {
         this.user = user;
+        this.authorities = authorities;
+    }
+
+    /**
+     * Принципал из claims access-токена, без обращения к БД.
+     * Содержит только id, username и роли - остальные поля пусты.
+     */
+    public static CustomUserDetails fromToken(Long id, String username, String roles) {
+        User user = new User();
+        user.setId(id);
+        user.setUsername(username);
+
+        List<GrantedAuthority> authorities = DEFAULT_AUTHORITIES;
+        if (roles != null && !roles.isEmpty()) {
+            authorities = Arrays.stream(roles.split(","))
+                    .map(SimpleGrantedAuthority::new)
+                    .collect(Collectors.toUnmodifiableList());
+        }
+        return new CustomUserDetails(user, authorities);
     }
 
     @Override
     public Collection<? extends GrantedAuthority> getAuthorities() {
-        // Простая реализация - всем пользователям только роль USER
-        return List.of(new SimpleGrantedAuthority("ROLE_USER"));
+        return authorities;
     }
 
     @Override
@@ -1,6 +1,7 @@
 package com.example.signalserver.security;
 
 import com.example.signalserver.service.auth.JWTService;
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -34,6 +35,9 @@ public class JwtRequestFilter extends OncePerRequestFilter {
     @Autowired
     private UserDetailsService userDetailsService;
 
+    @Autowired
+    private TokenRevocationService revocationService;
+
     @Override
     protected void doFilterInternal(@NonNull HttpServletRequest request,
                                     @NonNull HttpServletResponse response,
@@ -42,25 +46,24 @@ public class JwtRequestFilter extends OncePerRequestFilter {
         try {
             String jwt = extractJwtFromRequest(request);
 
-            if (jwt != null && jwtService.validateToken(jwt)) {
-                String username = jwtService.getUsernameFromToken(jwt);
+            if (jwt != null && SecurityContextHolder.getContext().getAuthentication() == null) {
+                // Один разбор токена: подпись, срок действия и claims
+                Claims claims = jwtService.parseToken(jwt);
 
-                if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-                    UserDetails userDetails = userDetailsService.loadUserByUsername(username);
+                if (claims != null && claims.getSubject() != null && !revocationService.isRevoked(claims)) {
+                    UserDetails userDetails = buildPrincipal(claims);
 
-                    if (jwtService.validateToken(jwt, userDetails)) {
-                        UsernamePasswordAuthenticationToken authToken =
-                                new UsernamePasswordAuthenticationToken(
-                                        userDetails,
-                                        null,
-                                        userDetails.getAuthorities()
-                                );
+                    UsernamePasswordAuthenticationToken authToken =
+                            new UsernamePasswordAuthenticationToken(
+                                    userDetails,
+                                    null,
+                                    userDetails.getAuthorities()
+                            );
 
-                        authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-                        SecurityContextHolder.getContext().setAuthentication(authToken);
+                    authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+                    SecurityContextHolder.getContext().setAuthentication(authToken);
 
-                        logger.debug("User '{}' authenticated successfully", username);
-                    }
+                    logger.debug("User '{}' authenticated successfully", claims.getSubject());
                 }
             }
         } catch (Exception e) {
@@ -71,6 +74,19 @@ public class JwtRequestFilter extends OncePerRequestFilter {
         filterChain.doFilter(request, response);
     }
 
+    /**
+     * Принципал строится из claims; БД нужна только для старых токенов без uid
+     */
+    private UserDetails buildPrincipal(Claims claims) {
+        Number userId = claims.get(JWTService.USER_ID_KEY, Number.class);
+        if (userId == null) {
+            return userDetailsService.loadUserByUsername(claims.getSubject());
+        }
+
+        return CustomUserDetails.fromToken(userId.longValue(), claims.getSubject(),
+                claims.get(JWTService.AUTHORITIES_KEY, String.class));
+    }
+
     /**
      * Извлекает JWT токен из заголовка Authorization
      */
@@ -0,0 +1,48 @@
+package com.example.signalserver.security;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.authentication.AccountStatusUserDetailsChecker;
+import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+/**
+ * Проверка пароля для пользователя, которого AuthService.login уже прочитал из БД.
+ *
+ * Заменяет DaoAuthenticationProvider на пути входа: тот повторно загружал того же
+ * пользователя через UserDetailsService. Проверки статуса аккаунта те же
+ * (блокировка, отключение), сравнение BCrypt выполняется на потоке вызывающего -
+ * AuthService вызывает менеджер аутентификации внутри пула хеширования.
+ */
+@Component
+public class LoadedUserAuthenticationProvider implements AuthenticationProvider {
+
+    private final AccountStatusUserDetailsChecker statusChecker = new AccountStatusUserDetailsChecker();
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Override
+    public Authentication authenticate(Authentication authentication) throws AuthenticationException {
+        LoadedUserAuthenticationToken token = (LoadedUserAuthenticationToken) authentication;
+        CustomUserDetails userDetails = new CustomUserDetails(token.getUser());
+
+        statusChecker.check(userDetails);
+
+        Object password = token.getCredentials();
+        if (password == null || !passwordEncoder.matches(password.toString(), userDetails.getPassword())) {
+            throw new BadCredentialsException("Bad credentials");
+        }
+
+        return UsernamePasswordAuthenticationToken.authenticated(userDetails, null, userDetails.getAuthorities());
+    }
+
+    @Override
+    public boolean supports(Class<?> authentication) {
+        return LoadedUserAuthenticationToken.class.isAssignableFrom(authentication);
+    }
+}
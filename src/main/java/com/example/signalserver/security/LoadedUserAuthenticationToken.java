@@ -0,0 +1,43 @@
+package com.example.signalserver.security;
+
+import com.example.signalserver.model.entity.User;
+import org.springframework.security.authentication.AbstractAuthenticationToken;
+
+import java.util.List;
+
+/**
+ * Запрос на аутентификацию пользователя, уже загруженного вызывающим кодом.
+ * Обрабатывается LoadedUserAuthenticationProvider без повторного чтения из БД.
+ */
+public class LoadedUserAuthenticationToken extends AbstractAuthenticationToken {
+
+    private final User user;
+    private String password;
+
+    public LoadedUserAuthenticationToken(User user, String password) {
+        super(List.of());
+        this.user = user;
+        this.password = password;
+        setAuthenticated(false);
+    }
+
+    public User getUser() {
+        return user;
+    }
+
+    @Override
+    public Object getCredentials() {
+        return password;
+    }
+
+    @Override
+    public Object getPrincipal() {
+        return user.getUsername();
+    }
+
+    @Override
+    public void eraseCredentials() {
+        super.eraseCredentials();
+        password = null;
+    }
+}
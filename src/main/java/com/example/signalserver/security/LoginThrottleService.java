@@ -0,0 +1,203 @@
+package com.example.signalserver.security;
+
+import com.example.signalserver.exception.LoginThrottledException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Ограничение неудачных входов по IP и по учётной записи.
+ *
+ * Скользящее окно приближается двумя фиксированными: счётчик предыдущего окна
+ * берётся с весом оставшейся доли текущего. Неудачи сначала копятся в LongAdder
+ * на узле и периодически пачкой отправляются в Redis (INCRBY), откуда же читаются
+ * суммы по всем узлам. Проверка не делает сетевых вызовов и выполняется до BCrypt.
+ *
+ * Поэтому проверка видит только ключи, по которым на этом узле уже были неудачи:
+ * для ключа, неизвестного узлу, суммы кластера подтягиваются лишь при синхронизации
+ * после первой неудачи здесь. Лимит кластера может быть превышен на число неудач,
+ * пришедших на каждый узел за один sync-interval-ms.
+ *
+ * Ключ по IP строит ClientIpResolver: X-Forwarded-For учитывается только от
+ * доверенных прокси, иначе подменой заголовка лимит по IP обходится.
+ */
+@Service
+public class LoginThrottleService {
+
+    private static final Logger logger = LoggerFactory.getLogger(LoginThrottleService.class);
+
+    private static final String KEY_PREFIX = "login:fail:";
+
+    @Value("${app.login-throttle.ip.max-failures:50}")
+    private int ipMaxFailures;
+
+    @Value("${app.login-throttle.ip.window-seconds:600}")
+    private long ipWindowSeconds;
+
+    @Value("${app.login-throttle.account.max-failures:10}")
+    private int accountMaxFailures;
+
+    @Value("${app.login-throttle.account.window-seconds:900}")
+    private long accountWindowSeconds;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    private final Map<String, WindowCounter> counters = new ConcurrentHashMap<>();
+
+    /**
+     * Бросает LoginThrottledException, если лимит по IP или по учётной записи исчерпан
+     */
+    public void check(String clientIp, String account) {
+        long now = System.currentTimeMillis();
+        checkLimit(ipKey(clientIp), ipMaxFailures, ipWindowSeconds, now);
+        checkLimit(accountKey(account), accountMaxFailures, accountWindowSeconds, now);
+    }
+
+    public void recordFailure(String clientIp, String account) {
+        counter(ipKey(clientIp), ipWindowSeconds).pending.increment();
+        counter(accountKey(account), accountWindowSeconds).pending.increment();
+    }
+
+    private void checkLimit(String key, int maxFailures, long windowSeconds, long now) {
+        if (key == null) {
+            return;
+        }
+
+        WindowCounter counter = counters.get(key);
+        if (counter != null && counter.estimate(now) >= maxFailures) {
+            long windowMs = windowSeconds * 1000;
+            long retryAfter = Math.max(1, (windowMs - now % windowMs) / 1000);
+            throw new LoginThrottledException("Too many failed login attempts, please retry later", retryAfter);
+        }
+    }
+
+    private WindowCounter counter(String key, long windowSeconds) {
+        return counters.computeIfAbsent(key, k -> new WindowCounter(k, windowSeconds * 1000));
+    }
+
+    /**
+     * Отправляет накопленные неудачи в Redis и забирает суммы по всем узлам одним конвейером
+     */
+    @Scheduled(fixedDelayString = "${app.login-throttle.sync-interval-ms:200}")
+    public void sync() {
+        if (counters.isEmpty()) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        List<WindowCounter> batch = new ArrayList<>(counters.size());
+        List<Long> deltas = new ArrayList<>(counters.size());
+
+        for (WindowCounter counter : counters.values()) {
+            if (counter.isIdle(now)) {
+                counters.remove(counter.key, counter);
+                continue;
+            }
+            // sum + add(-sum) не теряет инкременты, пришедшие между вызовами
+            long delta = counter.pending.sum();
+            counter.pending.add(-delta);
+            batch.add(counter);
+            deltas.add(delta);
+        }
+
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        try {
+            List<Object> results = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection redis = (StringRedisConnection) connection;
+                for (int i = 0; i < batch.size(); i++) {
+                    WindowCounter counter = batch.get(i);
+                    long index = now / counter.windowMs;
+                    String currentKey = KEY_PREFIX + counter.key + ":" + index;
+                    redis.incrBy(currentKey, deltas.get(i));
+                    redis.expire(currentKey, counter.windowMs / 1000 * 2);
+                    redis.get(KEY_PREFIX + counter.key + ":" + (index - 1));
+                }
+                return null;
+            });
+
+            for (int i = 0; i < batch.size(); i++) {
+                WindowCounter counter = batch.get(i);
+                long current = ((Number) results.get(i * 3)).longValue();
+                Object previous = results.get(i * 3 + 2);
+                counter.counts = new Counts(now / counter.windowMs, current,
+                        previous != null ? Long.parseLong(previous.toString()) : 0);
+                if (deltas.get(i) > 0) {
+                    counter.lastActivity = now;
+                }
+            }
+        } catch (Exception e) {
+            // Без Redis продолжаем считать локально: возвращаем неотправленные неудачи
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).pending.add(deltas.get(i));
+            }
+            logger.warn("Failed to sync login throttle counters: {}", e.getMessage());
+        }
+    }
+
+    private static String ipKey(String clientIp) {
+        return clientIp != null ? "ip:" + clientIp : null;
+    }
+
+    private static String accountKey(String account) {
+        return account != null ? "acct:" + account.trim().toLowerCase(Locale.ROOT) : null;
+    }
+
+    private record Counts(long windowIndex, long current, long previous) {
+    }
+
+    private static final class WindowCounter {
+        final String key;
+        final long windowMs;
+        final LongAdder pending = new LongAdder();
+
+        // Суммы по кластеру на момент последней синхронизации
+        volatile Counts counts = new Counts(0, 0, 0);
+        volatile long lastActivity = System.currentTimeMillis();
+
+        WindowCounter(String key, long windowMs) {
+            this.key = key;
+            this.windowMs = windowMs;
+        }
+
+        long estimate(long now) {
+            Counts snapshot = counts;
+            long index = now / windowMs;
+            long current;
+            long previous;
+            if (snapshot.windowIndex() == index) {
+                current = snapshot.current();
+                previous = snapshot.previous();
+            } else if (snapshot.windowIndex() == index - 1) {
+                current = 0;
+                previous = snapshot.current();
+            } else {
+                current = 0;
+                previous = 0;
+            }
+
+            double previousWeight = 1.0 - (double) (now % windowMs) / windowMs;
+            return (long) (previous * previousWeight) + current + pending.sum();
+        }
+
+        boolean isIdle(long now) {
+            return pending.sum() == 0 && now - lastActivity > windowMs * 2;
+        }
+    }
+}
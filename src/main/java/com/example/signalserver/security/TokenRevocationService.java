@@ -0,0 +1,199 @@
+package com.example.signalserver.security;
+
+import com.example.signalserver.service.auth.JWTService;
+import com.example.signalserver.util.BloomFilter;
+import io.jsonwebtoken.Claims;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Список отозванных access-токенов.
+ *
+ * Хранит отдельные токены (по jti) и отметки "не раньше" для пользователя:
+ * токены, выпущенные до отметки, считаются недействительными. Проверка jti идёт
+ * через фильтр Блума, поэтому для неотозванных токенов она не трогает map.
+ * Записи живут не дольше, чем сам токен. Узлы синхронизируются через Redis pub/sub,
+ * а ключи revoked:* с TTL позволяют новым узлам прогреть состояние при старте.
+ */
+@Service
+public class TokenRevocationService implements MessageListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(TokenRevocationService.class);
+
+    private static final String CHANNEL = "auth:revocations";
+    private static final String JTI_KEY_PREFIX = "revoked:jti:";
+    private static final String USER_KEY_PREFIX = "revoked:user:";
+    private static final String TYPE_JTI = "J";
+    private static final String TYPE_USER = "U";
+
+    @Value("${app.revocation.expected-entries:100000}")
+    private int expectedEntries;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private RedisMessageListenerContainer listenerContainer;
+
+    @Autowired
+    private JWTService jwtService;
+
+    // jti -> время истечения токена (epoch ms)
+    private final Map<String, Long> revokedTokens = new ConcurrentHashMap<>();
+
+    // username -> отметка "не раньше" (epoch ms); токены, выпущенные не позже неё, отозваны
+    private final Map<String, Long> userNotBefore = new ConcurrentHashMap<>();
+
+    private volatile BloomFilter revokedFilter;
+
+    @PostConstruct
+    public void init() {
+        revokedFilter = new BloomFilter(expectedEntries, 0.001);
+        listenerContainer.addMessageListener(this, new ChannelTopic(CHANNEL));
+        warmUp();
+    }
+
+    /**
+     * Проверка токена на отзыв. Вызывается на каждом аутентифицированном запросе.
+     */
+    public boolean isRevoked(Claims claims) {
+        if (!userNotBefore.isEmpty()) {
+            Long notBefore = userNotBefore.get(claims.getSubject());
+            if (notBefore != null) {
+                long issuedAt = issuedAtMillis(claims);
+                if (issuedAt <= notBefore) {
+                    return true;
+                }
+            }
+        }
+
+        String jti = claims.getId();
+        return jti != null && revokedFilter.mightContain(jti) && revokedTokens.containsKey(jti);
+    }
+
+    /**
+     * Время выпуска токена в миллисекундах. У токенов без iatms берётся iat,
+     * усечённый до секунды: токен из той же секунды, что и отзыв, отклоняется.
+     */
+    private static long issuedAtMillis(Claims claims) {
+        Number issuedAtMs = claims.get(JWTService.ISSUED_AT_MS_KEY, Number.class);
+        if (issuedAtMs != null) {
+            return issuedAtMs.longValue();
+        }
+        Date issuedAt = claims.getIssuedAt();
+        return issuedAt != null ? issuedAt.getTime() : Long.MIN_VALUE;
+    }
+
+    /**
+     * Отзыв одного токена (logout)
+     */
+    public void revokeToken(String jti, Date expiration) {
+        if (jti == null || expiration == null || expiration.getTime() <= System.currentTimeMillis()) {
+            return;
+        }
+
+        applyTokenRevocation(jti, expiration.getTime());
+
+        Duration ttl = Duration.ofMillis(expiration.getTime() - System.currentTimeMillis());
+        stringRedisTemplate.opsForValue().set(JTI_KEY_PREFIX + jti, String.valueOf(expiration.getTime()), ttl);
+        stringRedisTemplate.convertAndSend(CHANNEL, TYPE_JTI + "|" + jti + "|" + expiration.getTime());
+    }
+
+    /**
+     * Отзыв всех ранее выпущенных токенов пользователя (смена пароля, бан)
+     */
+    public void revokeAllForUser(String username) {
+        long notBefore = System.currentTimeMillis();
+        applyUserRevocation(username, notBefore);
+
+        Duration ttl = Duration.ofSeconds(jwtService.getJwtExpiration());
+        stringRedisTemplate.opsForValue().set(USER_KEY_PREFIX + username, String.valueOf(notBefore), ttl);
+        stringRedisTemplate.convertAndSend(CHANNEL, TYPE_USER + "|" + username + "|" + notBefore);
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        String[] parts = body.split("\\|", 3);
+        if (parts.length != 3) {
+            logger.warn("Malformed revocation message: {}", body);
+            return;
+        }
+
+        try {
+            long value = Long.parseLong(parts[2]);
+            if (TYPE_JTI.equals(parts[0])) {
+                applyTokenRevocation(parts[1], value);
+            } else if (TYPE_USER.equals(parts[0])) {
+                applyUserRevocation(parts[1], value);
+            }
+        } catch (NumberFormatException e) {
+            logger.warn("Malformed revocation message: {}", body);
+        }
+    }
+
+    /**
+     * Удаление истёкших записей и перестройка фильтра Блума
+     */
+    @Scheduled(fixedDelayString = "${app.revocation.sweep-interval-ms:60000}")
+    public void sweep() {
+        long now = System.currentTimeMillis();
+        long maxLifetime = jwtService.getJwtExpiration() * 1000L;
+
+        revokedTokens.values().removeIf(expiresAt -> expiresAt <= now);
+        userNotBefore.values().removeIf(notBefore -> notBefore + maxLifetime <= now);
+
+        BloomFilter rebuilt = new BloomFilter(Math.max(expectedEntries, revokedTokens.size() * 2), 0.001);
+        revokedTokens.keySet().forEach(rebuilt::put);
+        revokedFilter = rebuilt;
+        // Отзыв, пришедший во время перестройки, мог не попасть в новый фильтр
+        revokedTokens.keySet().forEach(rebuilt::put);
+    }
+
+    private void applyTokenRevocation(String jti, long expiresAt) {
+        revokedTokens.put(jti, expiresAt);
+        revokedFilter.put(jti);
+    }
+
+    private void applyUserRevocation(String username, long notBefore) {
+        userNotBefore.merge(username, notBefore, Math::max);
+    }
+
+    private void warmUp() {
+        try (Cursor<String> cursor = stringRedisTemplate.scan(
+                ScanOptions.scanOptions().match("revoked:*").count(1000).build())) {
+            while (cursor.hasNext()) {
+                String key = cursor.next();
+                String value = stringRedisTemplate.opsForValue().get(key);
+                if (value == null) {
+                    continue;
+                }
+                if (key.startsWith(JTI_KEY_PREFIX)) {
+                    applyTokenRevocation(key.substring(JTI_KEY_PREFIX.length()), Long.parseLong(value));
+                } else if (key.startsWith(USER_KEY_PREFIX)) {
+                    applyUserRevocation(key.substring(USER_KEY_PREFIX.length()), Long.parseLong(value));
+                }
+            }
+        } catch (Exception e) {
+            logger.warn("Failed to load revoked tokens from Redis: {}", e.getMessage());
+        }
+    }
+}
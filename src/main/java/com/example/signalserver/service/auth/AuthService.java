@@ -5,6 +5,7 @@ import com.example.signalserver.dto.request.RegisterRequest;
 import com.example.signalserver.dto.response.AuthResponse;
 import com.example.signalserver.dto.response.UserResponse;
 import com.example.signalserver.exception.AuthenticationException;
+import com.example.signalserver.exception.HashingOverloadException;
 import com.example.signalserver.exception.user.UserNotFoundException;
 import com.example.signalserver.exception.ValidationException;
 import com.example.signalserver.model.entity.User;
@@ -15,20 +16,30 @@ import com.example.signalserver.repository.user.UserRepository;
 import com.example.signalserver.repository.JWT.RefreshTokenRepository;
 import com.example.signalserver.repository.JWT.VerificationTokenRepository;
 import com.example.signalserver.security.CustomUserDetails;
+import com.example.signalserver.security.LoadedUserAuthenticationToken;
+import com.example.signalserver.security.LoginThrottleService;
+import com.example.signalserver.security.TokenRevocationService;
+import com.example.signalserver.service.mail.EmailJob;
+import com.example.signalserver.service.mail.EmailOutbox;
+import com.example.signalserver.service.user.LastSeenBuffer;
+import com.example.signalserver.service.user.UserCache;
+import com.example.signalserver.service.user.UserExistenceFilter;
+import com.example.signalserver.service.user.UserSearchIndex;
 import com.example.signalserver.service.user.UserService;
 import com.example.signalserver.validate.EmailValidator;
+import io.jsonwebtoken.Claims;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.BadCredentialsException;
-import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.util.StringUtils;
 
 import java.time.LocalDateTime;
@@ -49,15 +60,16 @@ public class AuthService {
     @Value("${app.jwt.expiration:86400}")
     private int jwtExpiration;
 
-    @Value("${app.refresh-token.expiration:604800}")
-    private long refreshTokenDuration;
-
     @Value("${app.verification.expiration:86400}")
     private long verificationTokenDuration;
 
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private RefreshTokenStore refreshTokenStore;
+
+    // Токены, выпущенные до переноса в Redis; читаются только при обновлении, пока не истекут
     @Autowired
     private RefreshTokenRepository refreshTokenRepository;
 
@@ -65,7 +77,7 @@ public class AuthService {
     private VerificationTokenRepository verificationTokenRepository;
 
     @Autowired
-    private PasswordEncoder passwordEncoder;
+    private PasswordHashingService passwordHashingService;
 
     @Autowired
     private JWTService jwtService;
@@ -77,9 +89,39 @@ public class AuthService {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private TokenRevocationService revocationService;
+
+    @Autowired
+    private LoginThrottleService loginThrottleService;
+
+    @Autowired
+    private EmailOutbox emailOutbox;
+
+    @Autowired
+    private UserExistenceFilter userExistenceFilter;
+
+    @Autowired
+    private UserSearchIndex userSearchIndex;
+
+    @Autowired
+    private UserCache userCache;
+
+    @Autowired
+    private LastSeenBuffer lastSeenBuffer;
+
+    // Короткие транзакции записи для методов, хеширующих пароль вне транзакции
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
     /**
-     * Регистрация нового пользователя
+     * Регистрация нового пользователя.
+     *
+     * Как и вход, выполняется вне транзакции: проверки уникальности идут короткими
+     * транзакциями репозитория, пароль хешируется без соединения с БД, а пользователь
+     * и токен верификации пишутся одной короткой транзакцией.
      */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public void register(RegisterRequest request, String clientIp, String userAgent) {
         logger.info("Registration attempt for username: {}, email: {}",
                 request.getUsername(), request.getEmail());
@@ -88,30 +130,37 @@ public class AuthService {
         validateRegistrationRequest(request);
 
         // Проверка уникальности username и email
-        if (userRepository.existsByUsername(request.getUsername())) {
+        if (userService.existsByUsername(request.getUsername())) {
             throw new ValidationException("Username is already taken!");
         }
 
-        if (userRepository.existsByEmail(request.getEmail())) {
+        if (userService.existsByEmail(request.getEmail())) {
             throw new ValidationException("Email is already in use!");
         }
 
         try {
-            // Создание пользователя
-            User user = createUserFromRequest(request);
-            user = userRepository.save(user);
+            String passwordHash = passwordHashingService.encode(
+                    PasswordHashingService.Category.REGISTER, request.getPassword());
+
+            // Создание пользователя и токена верификации email
+            User user = transactionTemplate.execute(status -> {
+                User created = userRepository.save(createUserFromRequest(request, passwordHash));
+                if (shouldSendVerificationEmail()) {
+                    createAndSendVerificationToken(created);
+                }
+                return created;
+            });
+            userExistenceFilter.onUserCreated(user.getUsername(), user.getEmail());
+            userSearchIndex.onUserChanged(user);
 
             logger.info("User created successfully: id={}, username={}",
                     user.getId(), user.getUsername());
 
-            // Создание токена верификации email
-            if (shouldSendVerificationEmail()) {
-                createAndSendVerificationToken(user);
-            }
-
             // Логирование регистрации
             logUserAction(user.getId(), "REGISTRATION", clientIp, userAgent);
 
+        } catch (HashingOverloadException e) {
+            throw e;
         } catch (Exception e) {
             logger.error("Registration failed for username: {}", request.getUsername(), e);
             throw new RuntimeException("Registration failed: " + e.getMessage());
@@ -119,24 +168,38 @@ public class AuthService {
     }
 
     /**
-     * Аутентификация пользователя
+     * Аутентификация пользователя: одно чтение пользователя, пароль проверяется
+     * по уже загруженной сущности, refresh-токен пишется в Redis, а время входа
+     * уходит в БД пакетом через LastSeenBuffer.
+     *
+     * Вход выполняется вне транзакции: пользователь читается собственной короткой
+     * транзакцией репозитория, и соединение с БД не удерживается, пока запрос ждёт
+     * пул хеширования и BCrypt. Дальше используются только поля загруженной сущности.
      */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public AuthResponse login(LoginRequest request, String clientIp, String userAgent) {
         logger.info("Login attempt for: {}", request.getUsernameOrEmail());
 
+        // Отказ до обращения к БД и BCrypt
+        loginThrottleService.check(clientIp, request.getUsernameOrEmail());
+
         try {
             // Поиск пользователя по username или email
-            User user = userRepository.findByUsernameOrEmail(request.getUsernameOrEmail())
-                    .orElseThrow(() -> new AuthenticationException("Invalid credentials"));
+            Optional<User> userOpt = userRepository.findByUsernameOrEmail(request.getUsernameOrEmail());
+            if (userOpt.isEmpty()) {
+                logFailedLoginAttempt(request.getUsernameOrEmail(), clientIp, userAgent);
+                throw new AuthenticationException("Invalid credentials");
+            }
+            User user = userOpt.get();
 
             // Проверка статуса пользователя
             validateUserForLogin(user);
 
-            // Аутентификация
-            Authentication authentication = authenticationManager.authenticate(
-                    new UsernamePasswordAuthenticationToken(
-                            user.getUsername(),
-                            request.getPassword()
+            // Аутентификация (проверка BCrypt) в пуле хеширования, без повторной загрузки пользователя
+            Authentication authentication = passwordHashingService.call(
+                    PasswordHashingService.Category.LOGIN,
+                    () -> authenticationManager.authenticate(
+                            new LoadedUserAuthenticationToken(user, request.getPassword())
                     )
             );
 
@@ -145,10 +208,10 @@ public class AuthService {
             // Генерация токенов
             CustomUserDetails userDetails = (CustomUserDetails) authentication.getPrincipal();
             String accessToken = jwtService.generateToken(userDetails);
-            RefreshToken refreshToken = createRefreshToken(user, clientIp, userAgent);
+            String refreshToken = refreshTokenStore.issue(user.getId(), clientIp, userAgent);
 
             // Обновление информации о входе
-            updateUserLoginInfo(user, clientIp, userAgent);
+            updateUserLoginInfo(user);
 
             // Логирование успешного входа
             logUserAction(user.getId(), "LOGIN_SUCCESS", clientIp, userAgent);
@@ -158,7 +221,7 @@ public class AuthService {
 
             return AuthResponse.builder()
                     .accessToken(accessToken)
-                    .refreshToken(refreshToken.getToken())
+                    .refreshToken(refreshToken)
                     .tokenType("Bearer")
                     .expiresIn(jwtExpiration)
                     .user(UserResponse.fromUser(user))
@@ -168,6 +231,8 @@ public class AuthService {
             logger.warn("Login failed - invalid credentials for: {}", request.getUsernameOrEmail());
             logFailedLoginAttempt(request.getUsernameOrEmail(), clientIp, userAgent);
             throw new AuthenticationException("Invalid credentials");
+        } catch (HashingOverloadException e) {
+            throw e;
         } catch (Exception e) {
             logger.error("Login failed for: {}", request.getUsernameOrEmail(), e);
             throw new AuthenticationException("Login failed: " + e.getMessage());
@@ -180,31 +245,44 @@ public class AuthService {
     public AuthResponse refreshToken(String refreshTokenValue, String clientIp) {
         logger.debug("Token refresh attempt from IP: {}", clientIp);
 
-        RefreshToken refreshToken = refreshTokenRepository.findByToken(refreshTokenValue)
-                .orElseThrow(() -> new AuthenticationException("Refresh token not found"));
-
-        if (refreshToken.isExpired()) {
-            refreshTokenRepository.delete(refreshToken);
-            throw new AuthenticationException("Refresh token has expired");
+        // Истёкшие токены удаляет TTL Redis, поэтому отдельной проверки срока нет
+        RefreshTokenStore.StoredRefreshToken refreshToken = refreshTokenStore.findAndTouch(refreshTokenValue)
+                .orElse(null);
+
+        // Токен не найден в Redis - возможно, он выпущен до переноса и лежит в refresh_tokens
+        RefreshToken legacyToken = null;
+        if (refreshToken == null) {
+            legacyToken = refreshTokenRepository.findByToken(refreshTokenValue)
+                    .orElseThrow(() -> new AuthenticationException("Refresh token not found"));
+            if (legacyToken.isExpired()) {
+                throw new AuthenticationException("Refresh token has expired");
+            }
+            refreshToken = new RefreshTokenStore.StoredRefreshToken(
+                    legacyToken.getUser().getId(), legacyToken.getClientIp(), legacyToken.getUserAgent());
         }
 
         try {
-            User user = refreshToken.getUser();
+            User user = userRepository.findById(refreshToken.userId())
+                    .orElseThrow(() -> new AuthenticationException("Refresh token not found"));
             validateUserForLogin(user);
 
             // Генерация нового access token
             CustomUserDetails userDetails = new CustomUserDetails(user);
             String newAccessToken = jwtService.generateToken(userDetails);
 
-            // Опционально: обновление refresh token
-            refreshToken.updateExpiryDate(refreshTokenDuration);
-            refreshToken = refreshTokenRepository.save(refreshToken);
+            // Старый токен заменяется новым из Redis и больше не принимается
+            String newRefreshToken = refreshTokenValue;
+            if (legacyToken != null) {
+                refreshTokenRepository.delete(legacyToken);
+                newRefreshToken = refreshTokenStore.issue(user.getId(), refreshToken.clientIp(), refreshToken.userAgent());
+                logger.debug("Legacy refresh token migrated to Redis for user: {}", user.getUsername());
+            }
 
             logger.info("Token refreshed successfully for user: {}", user.getUsername());
 
             return AuthResponse.builder()
                     .accessToken(newAccessToken)
-                    .refreshToken(refreshToken.getToken())
+                    .refreshToken(newRefreshToken)
                     .tokenType("Bearer")
                     .expiresIn(jwtExpiration)
                     .user(UserResponse.fromUser(user))
@@ -229,9 +307,16 @@ public class AuthService {
             if (userOpt.isPresent()) {
                 User user = userOpt.get();
 
-                // Удаление всех refresh токенов пользователя
+                // Удаление refresh токенов всех устройств пользователя
+                refreshTokenStore.revokeAll(user.getId());
                 refreshTokenRepository.deleteByUser(user);
 
+                // Отзыв текущего access токена до истечения его срока
+                Claims claims = accessToken != null ? jwtService.parseToken(accessToken) : null;
+                if (claims != null) {
+                    revocationService.revokeToken(claims.getId(), claims.getExpiration());
+                }
+
                 // Обновление статуса пользователя
                 userService.updateUserOnlineStatus(user.getId(), false);
                 // Логирование
@@ -268,6 +353,7 @@ public class AuthService {
             user.setEmailVerified(true);
             user.setStatus(UserStatus.ONLINE);
             userRepository.save(user);
+            userCache.invalidate(user.getId(), user.getUsername());
 
             verificationTokenRepository.delete(token);
 
@@ -326,9 +412,13 @@ public class AuthService {
 
             // Создание токена сброса пароля
             String resetToken = generateSecureToken();
-            VerificationToken token = createPasswordResetToken(user, resetToken);
+            createPasswordResetToken(user, resetToken);
+
+            // Письмо записывается в mail_outbox в той же транзакции
+            emailOutbox.enqueue(EmailJob.of(EmailJob.Type.PASSWORD_RESET,
+                    user.getEmail(), user.getFirstName(), resetToken));
 
-            logger.info("Password reset email sent for user: {}", user.getUsername());
+            logger.info("Password reset email queued for user: {}", user.getUsername());
 
         } catch (Exception e) {
             logger.error("Failed to process password reset request", e);
@@ -337,36 +427,57 @@ public class AuthService {
     }
 
     /**
-     * Сброс пароля
+     * Сброс пароля. Токен читается и пароль записывается короткими транзакциями,
+     * хеширование - между ними, без соединения с БД
      */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public void resetPassword(String tokenValue, String newPassword) {
         logger.info("Password reset attempt with token: {}", tokenValue);
 
-        VerificationToken token = verificationTokenRepository.findByToken(tokenValue)
-                .orElseThrow(() -> new ValidationException("Invalid reset token"));
-
-        if (token.isExpired()) {
-            verificationTokenRepository.delete(token);
+        ResetTarget target = transactionTemplate.execute(status -> {
+            VerificationToken token = verificationTokenRepository.findByToken(tokenValue).orElse(null);
+            if (token == null) {
+                return null;
+            }
+            if (token.isExpired()) {
+                verificationTokenRepository.delete(token);
+                return ResetTarget.EXPIRED;
+            }
+            return new ResetTarget(token.getId(), token.getUser().getId(), token.getUser().getUsername());
+        });
+        if (target == null) {
+            throw new ValidationException("Invalid reset token");
+        }
+        if (target == ResetTarget.EXPIRED) {
             throw new ValidationException("Reset token has expired");
         }
 
         try {
             validatePassword(newPassword);
 
-            User user = token.getUser();
-            user.setPassword(passwordEncoder.encode(newPassword));
-            userRepository.save(user);
+            String passwordHash = passwordHashingService.encode(
+                    PasswordHashingService.Category.PASSWORD_CHANGE, newPassword);
 
-            // Удаление всех refresh токенов (принудительный logout)
-            refreshTokenRepository.deleteByUser(user);
+            transactionTemplate.executeWithoutResult(status -> {
+                User user = userRepository.findById(target.userId())
+                        .orElseThrow(() -> new UserNotFoundException("User not found"));
+                user.setPassword(passwordHash);
+                refreshTokenRepository.deleteByUser(user);
+                verificationTokenRepository.deleteById(target.tokenId());
+            });
+            userCache.invalidate(target.userId(), target.username());
 
-            verificationTokenRepository.delete(token);
+            // Удаление всех refresh токенов и отзыв access токенов (принудительный logout)
+            refreshTokenStore.revokeAll(target.userId());
+            revocationService.revokeAllForUser(target.username());
 
-            logger.info("Password reset successfully for user: {}", user.getUsername());
+            logger.info("Password reset successfully for user: {}", target.username());
 
             // Логирование
-            logUserAction(user.getId(), "PASSWORD_RESET", null, null);
+            logUserAction(target.userId(), "PASSWORD_RESET", null, null);
 
+        } catch (HashingOverloadException e) {
+            throw e;
         } catch (Exception e) {
             logger.error("Password reset failed", e);
             throw new RuntimeException("Password reset failed: " + e.getMessage());
@@ -374,8 +485,10 @@ public class AuthService {
     }
 
     /**
-     * Изменение пароля (для аутентифицированного пользователя)
+     * Изменение пароля (для аутентифицированного пользователя). Проверка текущего
+     * пароля и хеширование нового - вне транзакции, запись - короткой транзакцией
      */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public void changePassword(String username, String currentPassword, String newPassword) {
         logger.info("Password change request for user: {}", username);
 
@@ -383,24 +496,31 @@ public class AuthService {
                 .orElseThrow(() -> new UserNotFoundException("User not found"));
 
         // Проверка текущего пароля
-        if (!passwordEncoder.matches(currentPassword, user.getPassword())) {
+        if (!passwordHashingService.matches(PasswordHashingService.Category.PASSWORD_CHANGE,
+                currentPassword, user.getPassword())) {
             throw new ValidationException("Current password is incorrect");
         }
 
         try {
             validatePassword(newPassword);
 
-            user.setPassword(passwordEncoder.encode(newPassword));
-            userRepository.save(user);
+            String passwordHash = passwordHashingService.encode(
+                    PasswordHashingService.Category.PASSWORD_CHANGE, newPassword);
+            transactionTemplate.executeWithoutResult(status -> userRepository.findById(user.getId())
+                    .orElseThrow(() -> new UserNotFoundException("User not found"))
+                    .setPassword(passwordHash));
+            userCache.invalidate(user.getId(), user.getUsername());
 
-            // Удаление всех refresh токенов кроме текущего
-            // (опционально - можно оставить текущую сессию)
+            // Ранее выпущенные access токены перестают действовать
+            revocationService.revokeAllForUser(username);
 
             logger.info("Password changed successfully for user: {}", username);
 
             // Логирование
             logUserAction(user.getId(), "PASSWORD_CHANGE", null, null);
 
+        } catch (HashingOverloadException e) {
+            throw e;
         } catch (Exception e) {
             logger.error("Password change failed for user: {}", username, e);
             throw new RuntimeException("Password change failed: " + e.getMessage());
@@ -481,11 +601,11 @@ public class AuthService {
         // }
     }
 
-    private User createUserFromRequest(RegisterRequest request) {
+    private User createUserFromRequest(RegisterRequest request, String passwordHash) {
         User user = new User();
         user.setUsername(request.getUsername());
         user.setEmail(request.getEmail());
-        user.setPassword(passwordEncoder.encode(request.getPassword()));
+        user.setPassword(passwordHash);
         user.setFirstName(request.getFirstName());
         user.setLastName(request.getLastName());
         user.setStatus(UserStatus.ONLINE); // или PENDING если требуется верификация email
@@ -494,21 +614,6 @@ public class AuthService {
         return user;
     }
 
-    private RefreshToken createRefreshToken(User user, String clientIp, String userAgent) {
-        // Удаление старых токенов для этого пользователя (опционально)
-        refreshTokenRepository.deleteByUser(user);
-
-        RefreshToken refreshToken = RefreshToken.builder()
-                .user(user)
-                .token(generateSecureToken())
-                .expiryDate(LocalDateTime.now().plusSeconds(refreshTokenDuration))
-                .clientIp(clientIp)
-                .userAgent(userAgent)
-                .build();
-
-        return refreshTokenRepository.save(refreshToken);
-    }
-
     private void createAndSendVerificationToken(User user) {
         String tokenValue = generateSecureToken();
 
@@ -520,6 +625,10 @@ public class AuthService {
                 .build();
 
         verificationTokenRepository.save(token);
+
+        // Письмо записывается в mail_outbox в той же транзакции
+        emailOutbox.enqueue(EmailJob.of(EmailJob.Type.EMAIL_VERIFICATION,
+                user.getEmail(), user.getFirstName(), tokenValue));
     }
 
     private VerificationToken createPasswordResetToken(User user, String tokenValue) {
@@ -536,10 +645,13 @@ public class AuthService {
         return verificationTokenRepository.save(token);
     }
 
-    private void updateUserLoginInfo(User user, String clientIp, String userAgent) {
-        user.setOnline(true);
-        user.setLastSeenAt(LocalDateTime.now());
-        userRepository.save(user);
+    /**
+     * Время входа записывается пакетом вместе с остальной активностью; сущность
+     * не изменяется, поэтому при коммите нет UPDATE. Онлайн-статус задаёт PresenceService
+     * по подключению сокета
+     */
+    private void updateUserLoginInfo(User user) {
+        lastSeenBuffer.touch(user.getId());
     }
 
     private void logUserAction(Long userId, String action, String clientIp, String userAgent) {
@@ -554,7 +666,7 @@ public class AuthService {
     private void logFailedLoginAttempt(String usernameOrEmail, String clientIp, String userAgent) {
         try {
             logger.warn("Failed login attempt: username/email={}, ip={}", usernameOrEmail, clientIp);
-            // Здесь можно добавить защиту от брутфорс атак
+            loginThrottleService.recordFailure(clientIp, usernameOrEmail);
         } catch (Exception e) {
             logger.warn("Failed to log failed login attempt", e);
         }
@@ -568,4 +680,11 @@ public class AuthService {
         // Можно сделать это настраиваемым через application.yml
         return true;
     }
+
+    /**
+     * Что нужно для сброса пароля после чтения токена
+     */
+    private record ResetTarget(Long tokenId, Long userId, String username) {
+        static final ResetTarget EXPIRED = new ResetTarget(null, null, null);
+    }
 }
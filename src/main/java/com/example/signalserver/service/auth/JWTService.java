@@ -1,18 +1,21 @@
 package com.example.signalserver.service.auth;
 
+import com.example.signalserver.security.CustomUserDetails;
 import io.jsonwebtoken.*;
-import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
 
-import javax.crypto.SecretKey;
+import java.security.Key;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.UUID;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -21,13 +24,35 @@ public class JWTService {
 
     private static final Logger logger = LoggerFactory.getLogger(JWTService.class);
 
-    @Value("${jwt.secret}")
-    private String secret;
-
     @Value("${jwt.expiration:86400}")
     private int jwtExpiration;
 
-    private static final String AUTHORITIES_KEY = "roles";
+    public static final String AUTHORITIES_KEY = "roles";
+    public static final String USER_ID_KEY = "uid";
+    // Время выпуска в миллисекундах: iat хранит только секунды
+    public static final String ISSUED_AT_MS_KEY = "iatms";
+
+    @Autowired
+    private JwtKeyRing keyRing;
+
+    // Парсер потокобезопасен и строится один раз; ключ проверки выбирается по kid
+    private JwtParser parser;
+
+    @PostConstruct
+    public void init() {
+        parser = Jwts.parserBuilder()
+                .setSigningKeyResolver(new SigningKeyResolverAdapter() {
+                    @Override
+                    public Key resolveSigningKey(JwsHeader header, Claims claims) {
+                        Key key = keyRing.getVerificationKey(header.getKeyId());
+                        if (key == null) {
+                            throw new UnsupportedJwtException("Unknown signing key id: " + header.getKeyId());
+                        }
+                        return key;
+                    }
+                })
+                .build();
+    }
 
     /**
      * Генерирует JWT токен для пользователя
@@ -41,6 +66,10 @@ public class JWTService {
                     .collect(Collectors.joining(",")));
         }
 
+        if (userDetails instanceof CustomUserDetails custom && custom.getId() != null) {
+            claims.put(USER_ID_KEY, custom.getId());
+        }
+
         return createToken(claims, userDetails.getUsername());
     }
 
@@ -50,13 +79,17 @@ public class JWTService {
     private String createToken(Map<String, Object> claims, String subject) {
         Date now = new Date();
         Date expiryDate = new Date(now.getTime() + jwtExpiration * 1000L);
+        JwtKeyRing.SigningKey signingKey = keyRing.getSigningKey();
 
         return Jwts.builder()
+                .setHeaderParam(JwsHeader.KEY_ID, signingKey.getKid())
                 .setClaims(claims)
+                .claim(ISSUED_AT_MS_KEY, now.getTime())
+                .setId(UUID.randomUUID().toString())
                 .setSubject(subject)
                 .setIssuedAt(now)
                 .setExpiration(expiryDate)
-                .signWith(getSigningKey(), SignatureAlgorithm.HS512)
+                .signWith(signingKey.getPrivateKey(), SignatureAlgorithm.ES256)
                 .compact();
     }
 
@@ -64,22 +97,28 @@ public class JWTService {
      * Валидирует JWT токен
      */
     public boolean validateToken(String token) {
+        return parseToken(token) != null;
+    }
+
+    /**
+     * Проверяет подпись и срок действия и возвращает claims за один разбор.
+     * Для невалидного токена возвращает null.
+     */
+    public Claims parseToken(String token) {
         try {
-            Jwts.parserBuilder()
-                    .setSigningKey(getSigningKey())
-                    .build()
-                    .parseClaimsJws(token);
-            return true;
+            return parser.parseClaimsJws(token).getBody();
         } catch (MalformedJwtException e) {
             logger.error("Invalid JWT token: {}", e.getMessage());
         } catch (ExpiredJwtException e) {
-            logger.error("JWT token is expired: {}", e.getMessage());
+            logger.debug("JWT token is expired: {}", e.getMessage());
         } catch (UnsupportedJwtException e) {
             logger.error("JWT token is unsupported: {}", e.getMessage());
+        } catch (io.jsonwebtoken.security.SecurityException e) {
+            logger.error("Invalid JWT signature: {}", e.getMessage());
         } catch (IllegalArgumentException e) {
             logger.error("JWT claims string is empty: {}", e.getMessage());
         }
-        return false;
+        return null;
     }
 
     /**
@@ -116,11 +155,7 @@ public class JWTService {
      * Извлекает все утверждения из токена
      */
     private Claims getAllClaimsFromToken(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+        return parser.parseClaimsJws(token).getBody();
     }
 
     /**
@@ -131,11 +166,7 @@ public class JWTService {
         return expiration.before(new Date());
     }
 
-    /**
-     * Получает ключ для подписи токена
-     */
-    private SecretKey getSigningKey() {
-        byte[] keyBytes = secret.getBytes();
-        return Keys.hmacShaKeyFor(keyBytes);
+    public int getJwtExpiration() {
+        return jwtExpiration;
     }
 }
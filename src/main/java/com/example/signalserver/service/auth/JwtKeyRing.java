@@ -0,0 +1,187 @@
+package com.example.signalserver.service.auth;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Набор ключей ES256 для подписи и проверки JWT.
+ *
+ * Узел с правом подписи генерирует свою пару ключей, периодически ротирует её и
+ * публикует открытый ключ в Redis (hash jwt:keys, поле = kid). Открытый ключ
+ * остаётся действительным, пока могут жить подписанные им токены, плюс окно перекрытия.
+ * Узлы только с проверкой (jwt.signing-enabled=false) закрытых ключей не имеют.
+ */
+@Component
+public class JwtKeyRing {
+
+    private static final Logger logger = LoggerFactory.getLogger(JwtKeyRing.class);
+
+    private static final String KEYS_HASH = "jwt:keys";
+    private static final String CURVE = "secp256r1";
+    private static final long MIN_REFRESH_INTERVAL_MS = 1000;
+
+    @Value("${jwt.signing-enabled:true}")
+    private boolean signingEnabled;
+
+    @Value("${jwt.expiration:86400}")
+    private int jwtExpiration;
+
+    @Value("${jwt.rotation-interval-ms:86400000}")
+    private long rotationIntervalMs;
+
+    @Value("${jwt.key-overlap-seconds:300}")
+    private long overlapSeconds;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    private volatile SigningKey currentKey;
+
+    // kid -> открытый ключ; неизменяемая карта, заменяется целиком
+    private volatile Map<String, PublicKey> verificationKeys = Map.of();
+    private volatile long lastRefresh;
+
+    @PostConstruct
+    public void init() {
+        refresh();
+        if (signingEnabled) {
+            rotate();
+        }
+    }
+
+    /**
+     * Ключ, которым подписываются новые токены
+     */
+    public SigningKey getSigningKey() {
+        SigningKey key = currentKey;
+        if (key == null) {
+            throw new IllegalStateException("JWT signing is disabled on this node");
+        }
+        return key;
+    }
+
+    /**
+     * Открытый ключ по kid; для неизвестного kid один раз перечитывает Redis
+     */
+    public PublicKey getVerificationKey(String kid) {
+        if (kid == null) {
+            return null;
+        }
+
+        PublicKey key = verificationKeys.get(kid);
+        if (key == null && System.currentTimeMillis() - lastRefresh > MIN_REFRESH_INTERVAL_MS) {
+            refresh();
+            key = verificationKeys.get(kid);
+        }
+        return key;
+    }
+
+    @Scheduled(initialDelayString = "${jwt.rotation-interval-ms:86400000}",
+            fixedDelayString = "${jwt.rotation-interval-ms:86400000}")
+    public void scheduledRotate() {
+        if (signingEnabled) {
+            rotate();
+        }
+    }
+
+    /**
+     * Новая пара ключей; предыдущий открытый ключ остаётся в наборе до своего notAfter
+     */
+    public synchronized void rotate() {
+        try {
+            KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+            generator.initialize(new ECGenParameterSpec(CURVE));
+            KeyPair pair = generator.generateKeyPair();
+
+            String kid = UUID.randomUUID().toString();
+            long notAfter = System.currentTimeMillis() + rotationIntervalMs
+                    + (jwtExpiration + overlapSeconds) * 1000L;
+
+            stringRedisTemplate.opsForHash().put(KEYS_HASH, kid,
+                    notAfter + "|" + Base64.getEncoder().encodeToString(pair.getPublic().getEncoded()));
+
+            Map<String, PublicKey> keys = new HashMap<>(verificationKeys);
+            keys.put(kid, pair.getPublic());
+            verificationKeys = Map.copyOf(keys);
+            currentKey = new SigningKey(kid, pair.getPrivate());
+
+            logger.info("JWT signing key rotated, kid={}", kid);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Failed to generate JWT signing key", e);
+        }
+    }
+
+    /**
+     * Перечитывает опубликованные открытые ключи и удаляет истёкшие
+     */
+    @Scheduled(fixedDelayString = "${jwt.key-refresh-ms:30000}")
+    public synchronized void refresh() {
+        lastRefresh = System.currentTimeMillis();
+        try {
+            Map<Object, Object> published = stringRedisTemplate.opsForHash().entries(KEYS_HASH);
+            Map<String, PublicKey> keys = new HashMap<>();
+            KeyFactory keyFactory = KeyFactory.getInstance("EC");
+
+            for (Map.Entry<Object, Object> entry : published.entrySet()) {
+                String kid = (String) entry.getKey();
+                String[] parts = ((String) entry.getValue()).split("\\|", 2);
+
+                if (Long.parseLong(parts[0]) < lastRefresh) {
+                    stringRedisTemplate.opsForHash().delete(KEYS_HASH, kid);
+                    continue;
+                }
+
+                PublicKey existing = verificationKeys.get(kid);
+                keys.put(kid, existing != null ? existing
+                        : keyFactory.generatePublic(new X509EncodedKeySpec(Base64.getDecoder().decode(parts[1]))));
+            }
+
+            // Собственный текущий ключ доступен даже при недоступном Redis
+            SigningKey own = currentKey;
+            if (own != null && verificationKeys.containsKey(own.getKid())) {
+                keys.putIfAbsent(own.getKid(), verificationKeys.get(own.getKid()));
+            }
+
+            verificationKeys = Map.copyOf(keys);
+        } catch (Exception e) {
+            logger.warn("Failed to refresh JWT verification keys: {}", e.getMessage());
+        }
+    }
+
+    public static final class SigningKey {
+        private final String kid;
+        private final PrivateKey privateKey;
+
+        public SigningKey(String kid, PrivateKey privateKey) {
+            this.kid = kid;
+            this.privateKey = privateKey;
+        }
+
+        public String getKid() {
+            return kid;
+        }
+
+        public PrivateKey getPrivateKey() {
+            return privateKey;
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package com.example.signalserver.service.auth;
+
+import com.example.signalserver.exception.HashingOverloadException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Выделенный пул для BCrypt. Хеширование не выполняется на потоках Tomcat:
+ * у каждой категории запросов свой лимит одновременных операций, при исчерпании
+ * лимита или переполнении очереди запрос сразу отклоняется (503 + Retry-After).
+ */
+@Service
+public class PasswordHashingService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PasswordHashingService.class);
+
+    public enum Category {
+        LOGIN, REGISTER, PASSWORD_CHANGE
+    }
+
+    // 0 - по числу ядер
+    @Value("${app.password-hashing.threads:0}")
+    private int threads;
+
+    @Value("${app.password-hashing.queue-capacity:64}")
+    private int queueCapacity;
+
+    @Value("${app.password-hashing.timeout-ms:5000}")
+    private long timeoutMs;
+
+    @Value("${app.password-hashing.budget.login:48}")
+    private int loginBudget;
+
+    @Value("${app.password-hashing.budget.register:8}")
+    private int registerBudget;
+
+    @Value("${app.password-hashing.budget.password-change:8}")
+    private int passwordChangeBudget;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private ThreadPoolExecutor executor;
+    private final Map<Category, Semaphore> budgets = new EnumMap<>(Category.class);
+    private final Map<Category, Timer> queueWaitTimers = new EnumMap<>(Category.class);
+    private final Map<Category, Timer> hashTimers = new EnumMap<>(Category.class);
+
+    @PostConstruct
+    public void start() {
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                new DefaultThreadFactory("password-hash", true),
+                new ThreadPoolExecutor.AbortPolicy());
+
+        budgets.put(Category.LOGIN, new Semaphore(loginBudget));
+        budgets.put(Category.REGISTER, new Semaphore(registerBudget));
+        budgets.put(Category.PASSWORD_CHANGE, new Semaphore(passwordChangeBudget));
+
+        for (Category category : Category.values()) {
+            String tag = category.name().toLowerCase();
+            queueWaitTimers.put(category, Timer.builder("auth.hash.queue.wait")
+                    .tag("category", tag)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry));
+            hashTimers.put(category, Timer.builder("auth.hash.time")
+                    .tag("category", tag)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry));
+        }
+
+        logger.info("Password hashing pool started: threads={}, queue={}", poolSize, queueCapacity);
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdown();
+    }
+
+    public String encode(Category category, CharSequence rawPassword) {
+        return call(category, () -> passwordEncoder.encode(rawPassword));
+    }
+
+    public boolean matches(Category category, CharSequence rawPassword, String encodedPassword) {
+        return call(category, () -> passwordEncoder.matches(rawPassword, encodedPassword));
+    }
+
+    /**
+     * Выполняет задачу с хешированием в пуле и ждёт результат.
+     * Исключения задачи пробрасываются вызывающему как есть.
+     */
+    public <T> T call(Category category, Callable<T> task) {
+        Semaphore budget = budgets.get(category);
+        if (!budget.tryAcquire()) {
+            throw overloaded(category);
+        }
+
+        long enqueuedAt = System.nanoTime();
+        Future<T> future;
+        try {
+            future = executor.submit(() -> {
+                long startedAt = System.nanoTime();
+                queueWaitTimers.get(category).record(startedAt - enqueuedAt, TimeUnit.NANOSECONDS);
+                try {
+                    return task.call();
+                } finally {
+                    hashTimers.get(category).record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+                    budget.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            budget.release();
+            throw overloaded(category);
+        }
+
+        try {
+            return future.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // Задача из очереди ещё не начата - снимаем её; начатая доработает и освободит лимит сама
+            if (future.cancel(false)) {
+                budget.release();
+            }
+            throw overloaded(category);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException("Password hashing failed", cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for password hashing", e);
+        }
+    }
+
+    /**
+     * Оценка времени до освобождения пула: очередь делится на потоки, умножается на среднее время хеша
+     */
+    private HashingOverloadException overloaded(Category category) {
+        double meanMs = hashTimers.get(category).mean(TimeUnit.MILLISECONDS);
+        if (meanMs <= 0) {
+            meanMs = 250;
+        }
+        double waves = (double) executor.getQueue().size() / executor.getMaximumPoolSize() + 1;
+        long retryAfter = Math.max(1, (long) Math.ceil(waves * meanMs / 1000));
+
+        logger.warn("Password hashing overloaded: category={}, retryAfter={}s", category, retryAfter);
+        return new HashingOverloadException("Server is busy, please retry later", retryAfter);
+    }
+}
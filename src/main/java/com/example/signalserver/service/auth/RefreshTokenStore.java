@@ -0,0 +1,222 @@
+package com.example.signalserver.service.auth;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Хранилище refresh-токенов в Redis.
+ *
+ * Токен хранится только в виде SHA-256: rt:{hash} - hash с userId, ip и user agent,
+ * срок жизни задаёт TTL ключа. Для каждого пользователя ведётся индекс rt:user:{id} -
+ * sorted set хешей его устройств со временем последнего использования - для массового
+ * отзыва и ограничения числа устройств. Операции выполняются конвейером.
+ */
+@Service
+public class RefreshTokenStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(RefreshTokenStore.class);
+
+    private static final String TOKEN_KEY_PREFIX = "rt:";
+    private static final String USER_INDEX_PREFIX = "rt:user:";
+    private static final String FIELD_USER_ID = "uid";
+    private static final String FIELD_IP = "ip";
+    private static final String FIELD_USER_AGENT = "ua";
+    private static final String FIELD_CREATED_AT = "created";
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    @Value("${app.refresh-token.expiration:604800}")
+    private long refreshTokenDuration;
+
+    // Сверх этого числа устройств отзываются токены, которые дольше всех не использовались
+    @Value("${app.refresh-token.max-devices:10}")
+    private int maxDevices;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * Данные токена, найденного при обновлении
+     */
+    public record StoredRefreshToken(long userId, String clientIp, String userAgent) {
+    }
+
+    /**
+     * Выпускает новый токен для устройства пользователя и возвращает его значение
+     */
+    public String issue(long userId, String clientIp, String userAgent) {
+        byte[] random = new byte[32];
+        RANDOM.nextBytes(random);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(random);
+
+        String hash = hash(token);
+        String tokenKey = TOKEN_KEY_PREFIX + hash;
+        String indexKey = USER_INDEX_PREFIX + userId;
+
+        Map<String, String> fields = new HashMap<>(4);
+        fields.put(FIELD_USER_ID, Long.toString(userId));
+        fields.put(FIELD_CREATED_AT, Long.toString(System.currentTimeMillis()));
+        if (clientIp != null) {
+            fields.put(FIELD_IP, clientIp);
+        }
+        if (userAgent != null) {
+            fields.put(FIELD_USER_AGENT, userAgent);
+        }
+
+        long now = System.currentTimeMillis();
+        List<Object> results = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection redis = (StringRedisConnection) connection;
+            redis.hMSet(tokenKey, fields);
+            redis.expire(tokenKey, refreshTokenDuration);
+            redis.zAdd(indexKey, now, hash);
+            redis.expire(indexKey, refreshTokenDuration);
+            redis.zCard(indexKey);
+            return null;
+        });
+
+        Long devices = (Long) results.get(4);
+        if (devices != null && devices > maxDevices) {
+            enforceDeviceLimit(indexKey);
+        }
+
+        return token;
+    }
+
+    /**
+     * Находит токен и продлевает его срок жизни (скользящее истечение)
+     */
+    @SuppressWarnings("unchecked")
+    public Optional<StoredRefreshToken> findAndTouch(String token) {
+        if (token == null || token.isEmpty()) {
+            return Optional.empty();
+        }
+
+        String tokenKey = TOKEN_KEY_PREFIX + hash(token);
+        List<Object> results = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection redis = (StringRedisConnection) connection;
+            redis.hGetAll(tokenKey);
+            redis.expire(tokenKey, refreshTokenDuration);
+            return null;
+        });
+
+        Map<String, String> fields = (Map<String, String>) results.get(0);
+        if (fields == null || fields.isEmpty()) {
+            return Optional.empty();
+        }
+
+        long userId = Long.parseLong(fields.get(FIELD_USER_ID));
+        String indexKey = USER_INDEX_PREFIX + userId;
+        String hash = tokenKey.substring(TOKEN_KEY_PREFIX.length());
+        long now = System.currentTimeMillis();
+        // Индекс должен жить не меньше самого долгоживущего токена пользователя;
+        // отметка использования двигает устройство в конец очереди на вытеснение
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection redis = (StringRedisConnection) connection;
+            redis.zAdd(indexKey, now, hash);
+            redis.expire(indexKey, refreshTokenDuration);
+            return null;
+        });
+
+        return Optional.of(new StoredRefreshToken(userId, fields.get(FIELD_IP), fields.get(FIELD_USER_AGENT)));
+    }
+
+    /**
+     * Отзыв токенов всех устройств пользователя
+     */
+    public void revokeAll(long userId) {
+        String indexKey = USER_INDEX_PREFIX + userId;
+        Set<String> hashes = stringRedisTemplate.opsForZSet().range(indexKey, 0, -1);
+
+        List<String> keys = new ArrayList<>(hashes != null ? hashes.size() + 1 : 1);
+        if (hashes != null) {
+            for (String hash : hashes) {
+                keys.add(TOKEN_KEY_PREFIX + hash);
+            }
+        }
+        keys.add(indexKey);
+
+        stringRedisTemplate.delete(keys);
+        logger.debug("Revoked {} refresh tokens for user {}", keys.size() - 1, userId);
+    }
+
+    /**
+     * Удаляет из индекса хеши истёкших токенов, затем отзывает самые давно
+     * использованные живые токены, пока устройств не станет не больше maxDevices
+     */
+    private void enforceDeviceLimit(String indexKey) {
+        // От давно использованных к недавним
+        Set<String> hashes = stringRedisTemplate.opsForZSet().range(indexKey, 0, -1);
+        if (hashes == null || hashes.isEmpty()) {
+            return;
+        }
+
+        List<String> ordered = new ArrayList<>(hashes);
+        List<Object> exists = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection redis = (StringRedisConnection) connection;
+            for (String hash : ordered) {
+                redis.exists(TOKEN_KEY_PREFIX + hash);
+            }
+            return null;
+        });
+
+        List<String> stale = new ArrayList<>();
+        List<String> live = new ArrayList<>(ordered.size());
+        for (int i = 0; i < ordered.size(); i++) {
+            if (Boolean.TRUE.equals(exists.get(i))) {
+                live.add(ordered.get(i));
+            } else {
+                stale.add(ordered.get(i));
+            }
+        }
+
+        List<String> evicted = live.size() > maxDevices
+                ? live.subList(0, live.size() - maxDevices)
+                : List.of();
+        if (stale.isEmpty() && evicted.isEmpty()) {
+            return;
+        }
+
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection redis = (StringRedisConnection) connection;
+            for (String hash : evicted) {
+                redis.del(TOKEN_KEY_PREFIX + hash);
+            }
+            List<String> removed = new ArrayList<>(stale);
+            removed.addAll(evicted);
+            redis.zRem(indexKey, removed.toArray(new String[0]));
+            return null;
+        });
+
+        if (!evicted.isEmpty()) {
+            logger.debug("Evicted {} refresh tokens over the device limit from {}", evicted.size(), indexKey);
+        }
+    }
+
+    private static String hash(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.signalserver.service.auth;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.quartz.DisallowConcurrentExecution;
+import org.quartz.JobExecutionContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.quartz.QuartzJobBean;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Удаление истёкших refresh- и verification-токенов.
+ *
+ * Удаляет порциями по диапазону id (keyset), каждая порция - отдельный короткий
+ * оператор в автокоммите, между порциями пауза, чтобы не держать блокировки и не
+ * создавать отставание реплик. Порции таблиц идут по очереди в пределах общего
+ * max-run-ms. В кластере Quartz задача выполняется на одном узле.
+ */
+@DisallowConcurrentExecution
+public class TokenPurgeJob extends QuartzJobBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(TokenPurgeJob.class);
+
+    private static final List<String> TABLES = List.of("refresh_tokens", "verification_tokens");
+
+    @Value("${app.token-purge.chunk-size:1000}")
+    private int chunkSize;
+
+    @Value("${app.token-purge.pause-ms:100}")
+    private long pauseMs;
+
+    // Ограничение длительности одного запуска; остаток удалится при следующем
+    @Value("${app.token-purge.max-run-ms:300000}")
+    private long maxRunMs;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Override
+    protected void executeInternal(JobExecutionContext context) {
+        long deadline = System.currentTimeMillis() + maxRunMs;
+        Timestamp cutoff = Timestamp.valueOf(LocalDateTime.now());
+
+        List<Cursor> cursors = TABLES.stream().map(Cursor::new).toList();
+        // Порции таблиц чередуются, чтобы большой хвост одной не съедал бюджет другой
+        while (System.currentTimeMillis() < deadline) {
+            boolean pending = false;
+            for (Cursor cursor : cursors) {
+                if (!cursor.done) {
+                    purgeChunk(cursor, cutoff);
+                    pending |= !cursor.done;
+                }
+            }
+            if (!pending) {
+                break;
+            }
+
+            try {
+                Thread.sleep(pauseMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        for (Cursor cursor : cursors) {
+            Counter.builder("tokens.purged").tag("table", cursor.table).register(meterRegistry).increment(cursor.purged);
+            Timer.builder("tokens.purge.duration").tag("table", cursor.table).register(meterRegistry)
+                    .record(cursor.elapsedNanos, TimeUnit.NANOSECONDS);
+            logger.info("Token purge: table={}, rows={}, took={} ms, finished={}",
+                    cursor.table, cursor.purged, TimeUnit.NANOSECONDS.toMillis(cursor.elapsedNanos), cursor.done);
+        }
+    }
+
+    private void purgeChunk(Cursor cursor, Timestamp cutoff) {
+        String sql = "DELETE FROM " + cursor.table + " WHERE id IN ("
+                + "SELECT id FROM " + cursor.table + " WHERE id > ? AND expiry_date < ? ORDER BY id LIMIT ?"
+                + ") RETURNING id";
+
+        long startedAt = System.nanoTime();
+        List<Long> ids = jdbcTemplate.queryForList(sql, Long.class, cursor.lastId, cutoff, chunkSize);
+        cursor.elapsedNanos += System.nanoTime() - startedAt;
+
+        cursor.purged += ids.size();
+        for (Long id : ids) {
+            cursor.lastId = Math.max(cursor.lastId, id);
+        }
+        cursor.done = ids.size() < chunkSize;
+    }
+
+    /**
+     * Позиция удаления в одной таблице
+     */
+    private static final class Cursor {
+        final String table;
+        long lastId;
+        long purged;
+        long elapsedNanos;
+        boolean done;
+
+        Cursor(String table) {
+            this.table = table;
+        }
+    }
+}
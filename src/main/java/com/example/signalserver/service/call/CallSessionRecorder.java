@@ -0,0 +1,244 @@
+package com.example.signalserver.service.call;
+
+import com.example.signalserver.model.entity.CallSession;
+import com.example.signalserver.model.enums.ConnectionStatus;
+import com.example.signalserver.repository.call.CallSessionRepository;
+import com.example.signalserver.repository.room.RoomRepository;
+import com.example.signalserver.repository.user.UserRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind запись CallSession. Источник истины о составе комнаты -
+ * RoomRoster; строки в call_sessions пишутся асинхронно, в порядке событий.
+ *
+ * События копятся в ограниченной очереди (вызовы идут с loop'ов комнат и не
+ * блокируются) и пишутся одним потоком пачками: в одной транзакции сначала
+ * вставляются новые сессии (JDBC-батч Hibernate), затем закрываются ушедшие
+ * одним batchUpdate. Событие, не поместившееся в очередь, отбрасывается и учитывается.
+ *
+ * Строка каждого входа в комнату получает свой socket_id (peerId:номер входа), и
+ * выход закрывает именно её: участник сохраняет peerId при смене комнаты, повторном
+ * входе и возобновлении сессии.
+ */
+@Component
+public class CallSessionRecorder {
+
+    private static final Logger logger = LoggerFactory.getLogger(CallSessionRecorder.class);
+
+    private static final String CLOSE_SQL =
+            "UPDATE call_sessions SET is_active = false, left_at = ?, connection_status = ? " +
+            "WHERE socket_id = ? AND is_active = true";
+
+    @Value("${app.call-sessions.queue-capacity:16384}")
+    private int queueCapacity;
+
+    @Value("${app.call-sessions.batch-size:200}")
+    private int batchSize;
+
+    @Value("${app.call-sessions.flush-interval-ms:200}")
+    private long flushIntervalMs;
+
+    @Autowired
+    private CallSessionRepository callSessionRepository;
+
+    @Autowired
+    private RoomRepository roomRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private BlockingQueue<PendingWrite> queue;
+    private Thread writer;
+    private volatile boolean running;
+
+    private Counter writtenCounter;
+    private Counter overflowCounter;
+    private Counter failedCounter;
+    private Timer flushTimer;
+
+    @PostConstruct
+    public void start() {
+        open();
+
+        running = true;
+        writer = new Thread(this::drainLoop, "call-session-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Очередь и метрики без запуска потока записи
+     */
+    void open() {
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+
+        Gauge.builder("call.sessions.queue.size", queue, BlockingQueue::size)
+                .description("Call session writes waiting to be written")
+                .register(meterRegistry);
+        writtenCounter = Counter.builder("call.sessions.written").register(meterRegistry);
+        overflowCounter = Counter.builder("call.sessions.dropped").tag("reason", "overflow").register(meterRegistry);
+        failedCounter = Counter.builder("call.sessions.dropped").tag("reason", "write_failed").register(meterRegistry);
+        flushTimer = Timer.builder("call.sessions.flush").register(meterRegistry);
+    }
+
+    public void recordJoin(PeerSession peer, long roomId, String roomCode, String userAgent, String ipAddress) {
+        enqueue(new Join(peer.startCallSession(roomCode), roomId, peer.getUserId(), peer.getPeerId(),
+                userAgent, ipAddress, peer.isVideoEnabled(), peer.isAudioEnabled(), LocalDateTime.now()));
+    }
+
+    /**
+     * Сессия вытесненного медленного сокета закрывается как RECONNECTING:
+     * клиент ушёл не сам и, скорее всего, переподключится
+     */
+    public void recordLeave(PeerSession peer, String roomCode) {
+        String key = peer.endCallSession(roomCode);
+        if (key == null) {
+            return;
+        }
+        ConnectionStatus status = peer.isEvicted() ? ConnectionStatus.RECONNECTING : ConnectionStatus.DISCONNECTED;
+        enqueue(new Leave(key, LocalDateTime.now(), status));
+    }
+
+    private void enqueue(PendingWrite write) {
+        if (!queue.offer(write)) {
+            overflowCounter.increment();
+        }
+    }
+
+    private void drainLoop() {
+        List<PendingWrite> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingWrite first = queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, batchSize - batch.size());
+                }
+            } catch (InterruptedException e) {
+                running = false;
+                queue.drainTo(batch);
+            }
+
+            if (!batch.isEmpty()) {
+                flush(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Запись всего, что сейчас в очереди, одной пачкой на вызывающем потоке
+     */
+    void flushQueued() {
+        List<PendingWrite> batch = new ArrayList<>();
+        queue.drainTo(batch);
+        if (!batch.isEmpty()) {
+            flush(batch);
+        }
+    }
+
+    /**
+     * Вставки идут раньше закрытий: закрытие сессии, открытой в той же пачке, видит её строку
+     */
+    private void flush(List<PendingWrite> batch) {
+        List<Join> joins = new ArrayList<>();
+        List<Leave> leaves = new ArrayList<>();
+        for (PendingWrite write : batch) {
+            if (write instanceof Join join) {
+                joins.add(join);
+            } else if (write instanceof Leave leave) {
+                leaves.add(leave);
+            }
+        }
+
+        long start = System.nanoTime();
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                if (!joins.isEmpty()) {
+                    List<CallSession> sessions = new ArrayList<>(joins.size());
+                    for (Join join : joins) {
+                        sessions.add(toEntity(join));
+                    }
+                    callSessionRepository.saveAll(sessions);
+                    callSessionRepository.flush();
+                }
+                if (!leaves.isEmpty()) {
+                    jdbcTemplate.batchUpdate(CLOSE_SQL, leaves, leaves.size(), (ps, leave) -> {
+                        ps.setTimestamp(1, Timestamp.valueOf(leave.leftAt()));
+                        ps.setString(2, leave.status().name());
+                        ps.setString(3, leave.key());
+                    });
+                }
+            });
+            writtenCounter.increment(batch.size());
+        } catch (Exception e) {
+            logger.error("Failed to write {} call session events", batch.size(), e);
+            failedCounter.increment(batch.size());
+        } finally {
+            flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private CallSession toEntity(Join join) {
+        CallSession session = new CallSession(
+                roomRepository.getReferenceById(join.roomId()),
+                userRepository.getReferenceById(join.userId()),
+                join.key());
+        session.setPeerId(join.peerId());
+        session.setUserAgent(join.userAgent());
+        session.setIpAddress(join.ipAddress());
+        session.setConnectionStatus(ConnectionStatus.CONNECTED);
+        session.setVideoEnabled(join.videoEnabled());
+        session.setAudioEnabled(join.audioEnabled());
+        session.setJoinedAt(join.joinedAt());
+        return session;
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        writer.join(TimeUnit.SECONDS.toMillis(10));
+        if (writer.isAlive()) {
+            logger.warn("Call session writer did not drain in time");
+        }
+    }
+
+    private sealed interface PendingWrite permits Join, Leave {
+    }
+
+    private record Join(String key, long roomId, long userId, String peerId, String userAgent, String ipAddress,
+                        boolean videoEnabled, boolean audioEnabled, LocalDateTime joinedAt) implements PendingWrite {
+    }
+
+    private record Leave(String key, LocalDateTime leftAt, ConnectionStatus status) implements PendingWrite {
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.signalserver.service.call;
+
+import com.corundumstudio.socketio.SocketIOClient;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.QueryStringDecoder;
+import io.netty.util.AttributeKey;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Websocket-каналы Netty сервера Socket.IO.
+ *
+ * SocketIOClient не даёт доступа к каналу, поэтому обработчик добавляется в pipeline
+ * каждого соединения после HTTP-декодера (SocketIOConfig) и по запросу открытия
+ * websocket запоминает канал: по sid, если сессия переходит на websocket с polling,
+ * иначе по адресу клиента - для websocket без polling он совпадает с
+ * SocketIOClient.getRemoteAddress(). Polling-соединения не запоминаются: запросы
+ * сессии идут по разным соединениям, и записываемость одного из них ничего не говорит.
+ * Вместо этого для отслеживаемых сессий считаются GET-запросы polling: каждый из них
+ * забирает всё, что накопилось у netty-socketio для клиента.
+ */
+@Component
+@ChannelHandler.Sharable
+public class ChannelWritabilityTracker extends ChannelInboundHandlerAdapter {
+
+    private static final AttributeKey<Object> TRACKED_AS = AttributeKey.valueOf("writabilityTracker.key");
+
+    // sid или адрес клиента -> websocket-канал
+    private final Map<Object, Channel> channels = new ConcurrentHashMap<>();
+
+    // sid -> число GET-запросов polling
+    private final Map<String, AtomicLong> polls = new ConcurrentHashMap<>();
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (msg instanceof HttpRequest request && !ctx.channel().hasAttr(TRACKED_AS)) {
+            Map<String, List<String>> params = new QueryStringDecoder(request.uri()).parameters();
+            if (HttpMethod.GET.equals(request.method())) {
+                countPoll(params);
+            }
+            track(ctx.channel(), params);
+        }
+        super.channelRead(ctx, msg);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        Object key = ctx.channel().attr(TRACKED_AS).get();
+        if (key != null) {
+            channels.remove(key, ctx.channel());
+        }
+        super.channelInactive(ctx);
+    }
+
+    private void track(Channel channel, Map<String, List<String>> params) {
+        if (!"websocket".equals(first(params, "transport"))) {
+            return;
+        }
+        String sid = first(params, "sid");
+        Object key = sid != null ? sid : channel.remoteAddress();
+        if (key == null) {
+            return;
+        }
+        channel.attr(TRACKED_AS).set(key);
+        channels.put(key, channel);
+    }
+
+    private void countPoll(Map<String, List<String>> params) {
+        String sid = first(params, "sid");
+        if (sid != null && "polling".equals(first(params, "transport"))) {
+            AtomicLong counter = polls.get(sid);
+            if (counter != null) {
+                counter.incrementAndGet();
+            }
+        }
+    }
+
+    private static String first(Map<String, List<String>> params, String name) {
+        List<String> values = params.get(name);
+        return values == null || values.isEmpty() ? null : values.get(0);
+    }
+
+    /**
+     * Текущий websocket-канал клиента или null (polling, до upgrade, соединение закрыто).
+     * Канал меняется при upgrade и возобновлении сессии, поэтому его не кэшируют
+     */
+    public Channel channelOf(SocketIOClient client) {
+        UUID sessionId = client.getSessionId();
+        Channel channel = sessionId != null ? channels.get(sessionId.toString()) : null;
+        if (channel == null && client.getRemoteAddress() != null) {
+            channel = channels.get(client.getRemoteAddress());
+        }
+        return channel;
+    }
+
+    /**
+     * Начать счёт polling-запросов клиента. Считаются только сессии, для которых
+     * вызван этот метод, иначе запросы неаутентифицированных сокетов копились бы в карте
+     */
+    public AtomicLong watchPolls(SocketIOClient client) {
+        UUID sessionId = client.getSessionId();
+        return sessionId != null
+                ? polls.computeIfAbsent(sessionId.toString(), sid -> new AtomicLong())
+                : new AtomicLong();
+    }
+
+    public void unwatchPolls(SocketIOClient client) {
+        UUID sessionId = client.getSessionId();
+        if (sessionId != null) {
+            polls.remove(sessionId.toString());
+        }
+    }
+}
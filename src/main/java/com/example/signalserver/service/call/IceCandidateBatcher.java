@@ -0,0 +1,204 @@
+package com.example.signalserver.service.call;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Склейка trickle-ICE кандидатов по паре (отправитель, получатель).
+ *
+ * Склеиваются только кандидаты получателям, подключённым с iceBatch=1: старые
+ * клиенты не знают события ice-candidates и получают кандидаты по одному.
+ * Первый кандидат пары открывает окно window-ms; кандидаты, пришедшие в окне,
+ * уходят получателю одним событием ice-candidates. Одиночный кандидат
+ * отправляется как обычный ice-candidate. End-of-candidates (candidate пустой
+ * или отсутствует) закрывает окно сразу. Пакет отправляется под своим монитором
+ * и снимается с карты только после отправки, поэтому событие, отправленное после
+ * flush() пары, не обгоняет её кандидаты, и flush() не ждёт других потоков дольше
+ * отправки одного пакета. window-ms=0 выключает склейку.
+ */
+@Component
+public class IceCandidateBatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(IceCandidateBatcher.class);
+
+    private static final String FIELD_CANDIDATE = "candidate";
+
+    @Value("${app.ice-batch.window-ms:10}")
+    private long windowMs;
+
+    @Autowired
+    private OutboundDispatcher outbound;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final JsonNodeFactory nodeFactory = JsonNodeFactory.instance;
+
+    private final Map<Pair, Batch> batches = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService flusher;
+
+    private Counter candidateCounter;
+    private Counter emitCounter;
+    private Counter savedCounter;
+    private DistributionSummary batchSizeSummary;
+    private Timer delayTimer;
+
+    @PostConstruct
+    public void init() {
+        candidateCounter = Counter.builder("signaling.ice.candidates").register(meterRegistry);
+        emitCounter = Counter.builder("signaling.ice.emits").register(meterRegistry);
+        savedCounter = Counter.builder("signaling.ice.emits_saved")
+                .description("Socket emits avoided by batching candidates")
+                .register(meterRegistry);
+        batchSizeSummary = DistributionSummary.builder("signaling.ice.batch.size")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        delayTimer = Timer.builder("signaling.ice.batch.delay")
+                .description("Delay added to the first candidate of a batch")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+
+        flusher = Executors.newSingleThreadScheduledExecutor(new DefaultThreadFactory("ice-batcher", true));
+    }
+
+    /**
+     * Кандидат от fromPeerId для локального участника target
+     */
+    public void add(String fromPeerId, PeerSession target, JsonNode payload) {
+        candidateCounter.increment();
+        if (windowMs <= 0 || !target.isIceBatching()) {
+            emit(fromPeerId, target, List.of(payload), System.nanoTime());
+            return;
+        }
+
+        boolean last = isEndOfCandidates(payload);
+        Pair pair = new Pair(fromPeerId, target.getPeerId());
+        Batch batch;
+        while (true) {
+            batch = batches.computeIfAbsent(pair, key -> new Batch(target));
+            synchronized (batch) {
+                // Пакет уже отправлен - нужен новый
+                if (batch.closed) {
+                    continue;
+                }
+                batch.candidates.add(payload);
+                if (batch.candidates.size() == 1 && !last) {
+                    Batch scheduled = batch;
+                    flusher.schedule(() -> flush(pair, scheduled), windowMs, TimeUnit.MILLISECONDS);
+                }
+            }
+            break;
+        }
+
+        if (last) {
+            flush(pair, batch);
+        }
+    }
+
+    /**
+     * Немедленная отправка накопленного для пары на вызывающем потоке, например
+     * перед offer/answer, чтобы кандидаты не пришли после нового описания сессии.
+     * Если пакет в этот момент отправляет таймер, вызов дожидается конца отправки
+     */
+    public void flush(String fromPeerId, PeerSession target) {
+        if (windowMs <= 0 || !target.isIceBatching()) {
+            return;
+        }
+        Pair pair = new Pair(fromPeerId, target.getPeerId());
+        Batch batch = batches.get(pair);
+        if (batch != null) {
+            flush(pair, batch);
+        }
+    }
+
+    private void flush(Pair pair, Batch batch) {
+        synchronized (batch) {
+            if (batch.closed) {
+                return;
+            }
+            try {
+                emit(pair.from(), batch.target, batch.candidates, batch.createdAt);
+            } catch (Exception e) {
+                logger.warn("Failed to deliver ICE candidates from {} to {}: {}", pair.from(), pair.to(), e.getMessage());
+            } finally {
+                // С карты - только после отправки: не нашедший пакет flush() не обгонит его
+                batch.closed = true;
+                batches.remove(pair, batch);
+            }
+        }
+    }
+
+    private void emit(String fromPeerId, PeerSession target, List<JsonNode> candidates, long firstAt) {
+        delayTimer.record(System.nanoTime() - firstAt, TimeUnit.NANOSECONDS);
+        batchSizeSummary.record(candidates.size());
+        emitCounter.increment();
+        savedCounter.increment(candidates.size() - 1);
+
+        if (candidates.size() == 1) {
+            outbound.send(target, SignalingService.EVENT_ICE_CANDIDATE, candidates.get(0));
+            return;
+        }
+
+        ObjectNode frame = nodeFactory.objectNode();
+        frame.put("from", fromPeerId);
+        ArrayNode array = frame.putArray("candidates");
+        candidates.forEach(array::add);
+        outbound.send(target, SignalingService.EVENT_ICE_CANDIDATES, frame);
+    }
+
+    private static boolean isEndOfCandidates(JsonNode payload) {
+        JsonNode candidate = payload.path(FIELD_CANDIDATE);
+        if (candidate.isMissingNode() || candidate.isNull()) {
+            return true;
+        }
+        JsonNode value = candidate.isObject() ? candidate.path(FIELD_CANDIDATE) : candidate;
+        return value.isTextual() && value.asText().isEmpty();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private record Pair(String from, String to) {
+    }
+
+    private static final class Batch {
+        final PeerSession target;
+        final long createdAt = System.nanoTime();
+        final List<JsonNode> candidates = new ArrayList<>();
+        boolean closed;
+
+        Batch(PeerSession target) {
+            this.target = target;
+        }
+    }
+}
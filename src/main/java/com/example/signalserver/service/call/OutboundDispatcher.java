@@ -0,0 +1,293 @@
+package com.example.signalserver.service.call;
+
+import com.corundumstudio.socketio.SocketIOClient;
+import com.example.signalserver.util.ReplayRing;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Отправка событий сокетам через ограниченные очереди PeerOutbox.
+ *
+ * Непустые очереди дописываются отдельным потоком раз в drain-interval, пока
+ * канал Netty записываем (границы буфера канала задаются в SocketIOConfig).
+ * Сокет, очередь которого не продвигается slow-timeout-ms или переполнилась,
+ * считается медленным: он вытесняется (отключается), а его CallSession
+ * закрывается со статусом RECONNECTING.
+ *
+ * Каждое событие получает seq сессии и копию в её буфере повтора; при
+ * возобновлении сессии с нового сокета досылаются события после последнего
+ * полученного клиентом seq.
+ */
+@Component
+public class OutboundDispatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(OutboundDispatcher.class);
+
+    @Value("${app.outbox.low-watermark:64}")
+    private int lowWatermark;
+
+    @Value("${app.outbox.high-watermark:256}")
+    private int highWatermark;
+
+    @Value("${app.outbox.max-depth:1024}")
+    private int maxDepth;
+
+    @Value("${app.outbox.drain-batch:64}")
+    private int drainBatch;
+
+    @Value("${app.outbox.drain-interval-ms:20}")
+    private long drainIntervalMs;
+
+    // ICE-кандидат, простоявший в очереди дольше, клиенту уже не нужен
+    @Value("${app.outbox.stale-ice-ms:5000}")
+    private long staleIceMs;
+
+    // Событий polling-клиенту между его запросами; остальные ждут в очереди
+    @Value("${app.outbox.polling-in-flight:32}")
+    private int pollingInFlight;
+
+    @Value("${app.outbox.slow-timeout-ms:10000}")
+    private long slowTimeoutMs;
+
+    @Autowired
+    private ChannelWritabilityTracker writabilityTracker;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // Сессии с непустой очередью
+    private final Set<PeerSession> backlogged = ConcurrentHashMap.newKeySet();
+
+    private PeerOutbox.Limits limits;
+    private ScheduledExecutorService drainer;
+
+    private DistributionSummary depthSummary;
+    private Counter staleCounter;
+    private Counter congestedCounter;
+    private Counter coalescedCounter;
+    private Counter evictedCounter;
+    private Counter replayedCounter;
+
+    @PostConstruct
+    public void init() {
+        limits = new PeerOutbox.Limits(lowWatermark, highWatermark, maxDepth, drainBatch, staleIceMs, pollingInFlight);
+
+        depthSummary = DistributionSummary.builder("signaling.outbox.depth")
+                .description("Per-socket outbound queue depth seen by each outgoing event")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        staleCounter = Counter.builder("signaling.outbox.dropped").tag("reason", "stale").register(meterRegistry);
+        congestedCounter = Counter.builder("signaling.outbox.dropped").tag("reason", "congested").register(meterRegistry);
+        coalescedCounter = Counter.builder("signaling.outbox.coalesced").register(meterRegistry);
+        evictedCounter = Counter.builder("signaling.outbox.evicted").register(meterRegistry);
+        replayedCounter = Counter.builder("signaling.outbox.replayed").register(meterRegistry);
+        Gauge.builder("signaling.outbox.backlogged", backlogged, Set::size)
+                .description("Sockets with queued outbound events")
+                .register(meterRegistry);
+
+        drainer = Executors.newSingleThreadScheduledExecutor(new DefaultThreadFactory("outbox-drain", true));
+        drainer.scheduleWithFixedDelay(this::drain, drainIntervalMs, drainIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Очередь создаётся при подключении и возобновлении сессии; канал сокета
+     * она ищет сама при каждой записи
+     */
+    public void open(PeerSession peer) {
+        SocketIOClient client = peer.getClient();
+        AtomicLong polls = writabilityTracker.watchPolls(client);
+        peer.setOutbox(new PeerOutbox(client, () -> writabilityTracker.channelOf(client), polls::get,
+                limits, staleCounter, congestedCounter));
+    }
+
+    public void close(PeerSession peer) {
+        backlogged.remove(peer);
+        writabilityTracker.unwatchPolls(peer.getClient());
+        PeerOutbox outbox = peer.getOutbox();
+        if (outbox != null) {
+            peer.setOutbox(null);
+            outbox.clear();
+        }
+    }
+
+    /**
+     * Разрыв сокета client: очередь закрывается, а события продолжают копиться
+     * в буфере повтора до возобновления или окончания сессии
+     *
+     * @return false, если сессия уже перешла на другой сокет
+     */
+    public boolean detach(PeerSession peer, SocketIOClient client) {
+        synchronized (peer.getReplay()) {
+            if (peer.getClient() != client) {
+                return false;
+            }
+            close(peer);
+            return true;
+        }
+    }
+
+    /**
+     * Перенос сессии на новый сокет с досылкой событий после lastSeq
+     *
+     * @return false, если часть пропущенных событий уже вытеснена из буфера
+     */
+    public boolean resume(PeerSession peer, SocketIOClient client, long lastSeq) {
+        ReplayRing replay = peer.getReplay();
+        synchronized (replay) {
+            List<PendingReplay> missed = new ArrayList<>();
+            if (!replay.replayAfter(lastSeq, (seq, event, data) -> missed.add(new PendingReplay(seq, event, data)))) {
+                return false;
+            }
+
+            close(peer);
+            peer.rebind(client);
+            open(peer);
+
+            PeerOutbox outbox = peer.getOutbox();
+            long now = System.currentTimeMillis();
+            for (PendingReplay message : missed) {
+                Object payload;
+                try {
+                    payload = objectMapper.readTree(message.data());
+                } catch (IOException e) {
+                    logger.warn("Skipping unreadable replayed event {} of peer {}", message.event(), peer.getPeerId());
+                    continue;
+                }
+                PeerOutbox.Kind kind = kindOf(message.event());
+                if (outbox.offer(message.event(), payload, message.seq(), kind, keyOf(kind, payload), now)
+                        == PeerOutbox.Outcome.QUEUED) {
+                    backlogged.add(peer);
+                }
+            }
+            replayedCounter.increment(missed.size());
+        }
+        return true;
+    }
+
+    public void send(PeerSession peer, String event, Object payload) {
+        byte[] data;
+        try {
+            data = objectMapper.writeValueAsBytes(payload);
+        } catch (IOException e) {
+            logger.warn("Failed to serialize event {} for peer {}: {}", event, peer.getPeerId(), e.getMessage());
+            return;
+        }
+
+        PeerOutbox.Kind kind = kindOf(event);
+        PeerOutbox outbox;
+        PeerOutbox.Outcome outcome;
+        ReplayRing replay = peer.getReplay();
+        synchronized (replay) {
+            long seq = replay.append(event, data);
+            // Сокет разорван: событие ждёт в буфере повтора
+            outbox = peer.getOutbox();
+            if (outbox == null || peer.isEvicted()) {
+                return;
+            }
+            outcome = outbox.offer(event, payload, seq, kind, keyOf(kind, payload), System.currentTimeMillis());
+        }
+
+        switch (outcome) {
+            case SENT -> depthSummary.record(0);
+            case QUEUED -> {
+                depthSummary.record(outbox.size());
+                backlogged.add(peer);
+            }
+            case COALESCED -> coalescedCounter.increment();
+            case DROPPED -> {
+                // Учтено счётчиком в PeerOutbox
+            }
+            case OVERFLOW -> evict(peer, "outbound queue overflow");
+        }
+    }
+
+    private static String keyOf(PeerOutbox.Kind kind, Object payload) {
+        return kind == PeerOutbox.Kind.LATEST && payload instanceof JsonNode node
+                ? node.path("peerId").asText("")
+                : null;
+    }
+
+    private static PeerOutbox.Kind kindOf(String event) {
+        return switch (event) {
+            case SignalingService.EVENT_ICE_CANDIDATE, SignalingService.EVENT_ICE_CANDIDATES -> PeerOutbox.Kind.DROPPABLE;
+            case SignalingService.EVENT_PEER_MEDIA -> PeerOutbox.Kind.LATEST;
+            default -> PeerOutbox.Kind.CRITICAL;
+        };
+    }
+
+    private void drain() {
+        long now = System.currentTimeMillis();
+        for (PeerSession peer : backlogged) {
+            // Удаление до дописывания: событие, поставленное в очередь параллельно, вернёт сессию в набор
+            backlogged.remove(peer);
+            try {
+                PeerOutbox outbox = peer.getOutbox();
+                if (outbox == null || outbox.drain(now) == 0) {
+                    continue;
+                }
+                if (outbox.isStalled(now, slowTimeoutMs)) {
+                    evict(peer, "outbound queue stalled for " + slowTimeoutMs + " ms");
+                } else {
+                    backlogged.add(peer);
+                }
+            } catch (Exception e) {
+                logger.warn("Failed to drain outbound queue of peer {}: {}", peer.getPeerId(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Вытеснение медленного сокета; дальше - обычный разрыв, после которого
+     * клиент может возобновить сессию
+     */
+    private void evict(PeerSession peer, String reason) {
+        if (!peer.markEvicted()) {
+            return;
+        }
+        evictedCounter.increment();
+        logger.warn("Evicting slow peer {} ('{}'): {}", peer.getPeerId(), peer.getUsername(), reason);
+
+        synchronized (peer.getReplay()) {
+            close(peer);
+        }
+        peer.getClient().disconnect();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        drainer.shutdown();
+        try {
+            drainer.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private record PendingReplay(long seq, String event, byte[] data) {
+    }
+}
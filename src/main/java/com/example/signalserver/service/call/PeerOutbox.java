@@ -0,0 +1,205 @@
+package com.example.signalserver.service.call;
+
+import com.corundumstudio.socketio.SocketIOClient;
+import com.corundumstudio.socketio.Transport;
+import io.micrometer.core.instrument.Counter;
+import io.netty.channel.Channel;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Ограниченная очередь исходящих событий одного сокета.
+ *
+ * Пока очередь пуста и канал Netty записываем, события отправляются сразу.
+ * Иначе они копятся здесь, а не в буфере канала, и дописываются по мере
+ * освобождения канала (OutboundDispatcher). У polling-клиента канала нет:
+ * netty-socketio держит его события до следующего GET-запроса, поэтому между
+ * запросами ему отправляется не больше pollingInFlight событий, остальные ждут здесь. Вторым аргументом события
+ * клиент получает его seq - по нему сессия возобновляется после переподключения.
+ * При достижении верхней границы очередь считается перегруженной до спуска
+ * к нижней: ICE-кандидаты из неё выбрасываются и новые не принимаются. Все методы синхронизированы по очереди.
+ */
+class PeerOutbox {
+
+    enum Kind {
+        // offer/answer, состав комнаты, ошибки - не теряются
+        CRITICAL,
+        // Состояние (peer-media): новое значение заменяет неотправленное по тому же ключу
+        LATEST,
+        // ICE-кандидаты: отбрасываются первыми при перегрузке и по возрасту
+        DROPPABLE
+    }
+
+    enum Outcome { SENT, QUEUED, COALESCED, DROPPED, OVERFLOW }
+
+    record Limits(int lowWatermark, int highWatermark, int maxDepth, int drainBatch, long staleMs,
+                  int pollingInFlight) {
+    }
+
+    private static final class Entry {
+        final String event;
+        final Kind kind;
+        final String key;
+        final long seq;
+        final long queuedAt;
+        Object payload;
+
+        Entry(String event, Object payload, long seq, Kind kind, String key, long queuedAt) {
+            this.event = event;
+            this.payload = payload;
+            this.seq = seq;
+            this.kind = kind;
+            this.key = key;
+            this.queuedAt = queuedAt;
+        }
+    }
+
+    private final SocketIOClient client;
+    // Канал ищется при каждой записи: до upgrade его нет, после - он новый
+    private final Supplier<Channel> channel;
+    // Число GET-запросов polling-клиента (ChannelWritabilityTracker)
+    private final LongSupplier polls;
+    private final Limits limits;
+    private final Counter staleCounter;
+    private final Counter congestedCounter;
+
+    private final ArrayDeque<Entry> queue = new ArrayDeque<>();
+    private boolean congested;
+    // Время, с которого очередь непуста; 0 - пуста
+    private long backlogSince;
+    // Отправлено polling-клиенту после его последнего запроса
+    private long pollsSeen;
+    private int sentSincePoll;
+
+    PeerOutbox(SocketIOClient client, Supplier<Channel> channel, LongSupplier polls, Limits limits,
+               Counter staleCounter, Counter congestedCounter) {
+        this.client = client;
+        this.channel = channel;
+        this.polls = polls;
+        this.limits = limits;
+        this.staleCounter = staleCounter;
+        this.congestedCounter = congestedCounter;
+    }
+
+    /**
+     * Websocket - записываемость канала. Polling - лимит событий с последнего
+     * запроса клиента. Websocket, канал которого не найден (например, за прокси
+     * с другим адресом), не ограничивается ничем, кроме глубины очереди
+     */
+    private boolean isWritable() {
+        Channel current = channel.get();
+        if (current != null && current.isActive()) {
+            return current.isWritable();
+        }
+        if (client.getTransport() != Transport.POLLING) {
+            return true;
+        }
+        long seen = polls.getAsLong();
+        if (seen != pollsSeen) {
+            pollsSeen = seen;
+            sentSincePoll = 0;
+        }
+        return sentSincePoll < limits.pollingInFlight();
+    }
+
+    private void send(String event, Object payload, long seq) {
+        client.sendEvent(event, payload, seq);
+        sentSincePoll++;
+    }
+
+    synchronized Outcome offer(String event, Object payload, long seq, Kind kind, String key, long now) {
+        if (queue.isEmpty() && isWritable()) {
+            send(event, payload, seq);
+            return Outcome.SENT;
+        }
+
+        if (kind == Kind.LATEST) {
+            for (Entry entry : queue) {
+                if (entry.kind == Kind.LATEST && entry.event.equals(event) && entry.key.equals(key)) {
+                    // seq остаётся прежним, чтобы номера у клиента не шли назад
+                    entry.payload = payload;
+                    return Outcome.COALESCED;
+                }
+            }
+        }
+        if (kind == Kind.DROPPABLE && congested) {
+            congestedCounter.increment();
+            return Outcome.DROPPED;
+        }
+        if (queue.size() >= limits.maxDepth()) {
+            return Outcome.OVERFLOW;
+        }
+
+        if (queue.isEmpty()) {
+            backlogSince = now;
+        }
+        queue.add(new Entry(event, payload, seq, kind, key, now));
+        updateCongestion();
+        return Outcome.QUEUED;
+    }
+
+    /**
+     * Отправляет не больше drainBatch событий, пока канал записываем
+     *
+     * @return сколько осталось в очереди
+     */
+    synchronized int drain(long now) {
+        int sent = 0;
+        while (sent < limits.drainBatch() && !queue.isEmpty() && isWritable()) {
+            Entry entry = queue.poll();
+            if (entry.kind == Kind.DROPPABLE && now - entry.queuedAt > limits.staleMs()) {
+                staleCounter.increment();
+                continue;
+            }
+            send(entry.event, entry.payload, entry.seq);
+            sent++;
+        }
+
+        if (queue.isEmpty()) {
+            backlogSince = 0;
+        } else if (sent > 0) {
+            backlogSince = now;
+        }
+        updateCongestion();
+        return queue.size();
+    }
+
+    /**
+     * Очередь непуста и не продвигается дольше timeoutMs
+     */
+    synchronized boolean isStalled(long now, long timeoutMs) {
+        return backlogSince > 0 && now - backlogSince >= timeoutMs;
+    }
+
+    synchronized int size() {
+        return queue.size();
+    }
+
+    synchronized void clear() {
+        queue.clear();
+        congested = false;
+        backlogSince = 0;
+    }
+
+    private void updateCongestion() {
+        if (!congested && queue.size() >= limits.highWatermark()) {
+            congested = true;
+            // Устаревающие кандидаты уходят первыми, освобождая место для offer/answer
+            Iterator<Entry> iterator = queue.iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next().kind == Kind.DROPPABLE) {
+                    iterator.remove();
+                    congestedCounter.increment();
+                }
+            }
+            if (queue.isEmpty()) {
+                backlogSince = 0;
+            }
+        } else if (congested && queue.size() <= limits.lowWatermark()) {
+            congested = false;
+        }
+    }
+}
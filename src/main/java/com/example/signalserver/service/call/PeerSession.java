@@ -0,0 +1,166 @@
+package com.example.signalserver.service.call;
+
+import com.corundumstudio.socketio.SocketIOClient;
+import com.example.signalserver.util.ReplayRing;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Состояние подключённого участника сигнализации (одно на сокет)
+ */
+@Getter
+public class PeerSession {
+
+    // Меняется при возобновлении сессии с нового сокета
+    private volatile SocketIOClient client;
+    private final String peerId;
+    private final String resumeToken;
+    private final long userId;
+    private final String username;
+
+    // Комната, в которой участник находится; меняется на loop'е этой комнаты под монитором сессии
+    private volatile String roomCode;
+
+    // Комната последнего join-room; задаётся сразу в обработчике сокета,
+    // null - участник вышел или сессия завершена
+    @Getter(AccessLevel.NONE)
+    private String requestedRoom;
+
+    // Медиа-состояние меняется только на loop'е комнаты
+    @Setter
+    private volatile boolean videoEnabled = true;
+    @Setter
+    private volatile boolean audioEnabled = true;
+    @Setter
+    private volatile boolean screenSharing = false;
+
+    // Исходящие события с их seq для повтора после переподключения; доступ под его монитором
+    private final ReplayRing replay;
+
+    // Клиент понимает пакеты ice-candidates (параметр handshake iceBatch=1);
+    // задаётся при подключении и возобновлении сессии
+    @Setter
+    private volatile boolean iceBatching;
+
+    // Очередь исходящих событий; создаётся OutboundDispatcher при подключении
+    @Setter
+    private volatile PeerOutbox outbox;
+
+    // Ключ строки call_sessions (socket_id) текущего входа в комнату. При смене комнаты
+    // вход в новую происходит раньше выхода из старой, поэтому ключи хранятся по комнате
+    @Getter(AccessLevel.NONE)
+    private final Map<String, String> callSessionKeys = new ConcurrentHashMap<>();
+    @Getter(AccessLevel.NONE)
+    private final AtomicLong joins = new AtomicLong();
+
+    // Сокет вытеснен как медленный
+    @Getter(AccessLevel.NONE)
+    private final AtomicBoolean evicted = new AtomicBoolean();
+
+    public PeerSession(SocketIOClient client, long userId, String username, int replayBytes) {
+        this.client = client;
+        this.userId = userId;
+        this.username = username;
+        this.peerId = UUID.randomUUID().toString();
+        this.resumeToken = UUID.randomUUID().toString();
+        this.replay = new ReplayRing(replayBytes);
+    }
+
+    public boolean isInRoom(String code) {
+        String current = roomCode;
+        return current != null && current.equals(code);
+    }
+
+    /**
+     * Результат входа: admitted=false, если за время ожидания на loop'е участник
+     * запросил другую комнату, вышел или отключился
+     */
+    public record RoomEntry(boolean admitted, String previousRoom) {
+    }
+
+    /**
+     * Запрос входа в комнату; вызывается синхронно в обработчике join-room
+     */
+    public synchronized void requestRoom(String code) {
+        requestedRoom = code;
+    }
+
+    public synchronized boolean isRoomRequested(String code) {
+        return code.equals(requestedRoom);
+    }
+
+    /**
+     * Вход в комнату на её loop'е, если она всё ещё запрошена
+     */
+    public synchronized RoomEntry enterRoom(String code) {
+        if (!code.equals(requestedRoom)) {
+            return new RoomEntry(false, null);
+        }
+        String previous = roomCode;
+        roomCode = code;
+        return new RoomEntry(true, previous);
+    }
+
+    /**
+     * Выход или конец сессии: отменяет ожидающий вход
+     *
+     * @return комната, из которой нужно выйти, или null
+     */
+    public synchronized String releaseRoom() {
+        requestedRoom = null;
+        return roomCode;
+    }
+
+    /**
+     * Участник удалён из ростера комнаты code
+     */
+    public synchronized void leftRoom(String code) {
+        if (code.equals(roomCode)) {
+            roomCode = null;
+        }
+    }
+
+    /**
+     * Новый вход в комнату code: у каждого входа своя строка call_sessions
+     */
+    public String startCallSession(String code) {
+        String key = peerId + ":" + joins.incrementAndGet();
+        callSessionKeys.put(code, key);
+        return key;
+    }
+
+    /**
+     * Выход из комнаты code
+     *
+     * @return ключ строки входа или null, если вход не записывался
+     */
+    public String endCallSession(String code) {
+        return callSessionKeys.remove(code);
+    }
+
+    public boolean isEvicted() {
+        return evicted.get();
+    }
+
+    /**
+     * Привязка сессии к новому сокету; вызывается под монитором replay
+     */
+    void rebind(SocketIOClient client) {
+        this.client = client;
+        evicted.set(false);
+    }
+
+    /**
+     * @return false, если сессия уже была вытеснена
+     */
+    public boolean markEvicted() {
+        return evicted.compareAndSet(false, true);
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.signalserver.service.call;
+
+import io.netty.channel.DefaultEventLoop;
+import io.netty.channel.EventLoop;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import io.netty.util.concurrent.Future;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Модель "комната-актор": все изменения состояния комнаты выполняются
+ * на одном однопоточном event loop, выбранном по хэшу roomCode.
+ * Внутри задачи блокировки не нужны.
+ *
+ * Блокирующие вызовы (БД) выполняются на отдельном ограниченном пуле offload,
+ * а не на loop'ах комнат и не на IO-потоках Netty.
+ */
+public class RoomExecutor {
+
+    private static final Logger logger = LoggerFactory.getLogger(RoomExecutor.class);
+
+    private static final int DEFAULT_OFFLOAD_THREADS = 8;
+    private static final int DEFAULT_OFFLOAD_QUEUE = 1024;
+
+    private final EventLoop[] loops;
+    private final ThreadPoolExecutor offload;
+
+    public RoomExecutor(int loopCount) {
+        this(loopCount, DEFAULT_OFFLOAD_THREADS, DEFAULT_OFFLOAD_QUEUE);
+    }
+
+    public RoomExecutor(int loopCount, int offloadThreads, int offloadQueue) {
+        int size = loopCount > 0 ? loopCount : Runtime.getRuntime().availableProcessors();
+        DefaultThreadFactory threadFactory = new DefaultThreadFactory("room-loop", true);
+
+        this.loops = new EventLoop[size];
+        for (int i = 0; i < size; i++) {
+            loops[i] = new DefaultEventLoop(threadFactory);
+        }
+
+        this.offload = new ThreadPoolExecutor(offloadThreads, offloadThreads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(offloadQueue),
+                new DefaultThreadFactory("room-offload", true),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    public EventLoop loopFor(String roomCode) {
+        return loops[(roomCode.hashCode() & Integer.MAX_VALUE) % loops.length];
+    }
+
+    public boolean inLoop(String roomCode) {
+        return loopFor(roomCode).inEventLoop();
+    }
+
+    /**
+     * Выполняет задачу на loop'е комнаты; ошибки логируются и не убивают поток
+     */
+    public void execute(String roomCode, Runnable task) {
+        loopFor(roomCode).execute(() -> {
+            try {
+                task.run();
+            } catch (Exception e) {
+                logger.error("Room task failed for room {}", roomCode, e);
+            }
+        });
+    }
+
+    public <T> Future<T> submit(String roomCode, Callable<T> task) {
+        return loopFor(roomCode).submit(task);
+    }
+
+    /**
+     * Блокирующий вызов на пуле offload; продолжение, которому нужно состояние
+     * комнаты, возвращается на её loop через execute
+     *
+     * @throws RejectedExecutionException очередь пула переполнена
+     */
+    public <T> CompletableFuture<T> offload(Supplier<T> task) {
+        return CompletableFuture.supplyAsync(task, offload);
+    }
+
+    public int size() {
+        return loops.length;
+    }
+
+    public void shutdown() {
+        offload.shutdown();
+        for (EventLoop loop : loops) {
+            loop.shutdownGracefully(0, 5, TimeUnit.SECONDS);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.signalserver.service.call;
+
+import com.corundumstudio.socketio.SocketIOClient;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timeout;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сессии сигнализации по токену возобновления.
+ *
+ * После разрыва сокета сессия "паркуется" на grace-ms: участник остаётся в комнате,
+ * а адресованные ему события копятся в буфере повтора (ReplayRing). Переподключение
+ * с токеном в этом окне забирает сессию (claim); по истечении окна выполняется
+ * обычный выход. Захват и истечение сериализуются, поэтому сессию получает кто-то один.
+ */
+@Component
+public class SessionResumption {
+
+    @Value("${app.resume.grace-ms:15000}")
+    private long graceMs;
+
+    @Value("${app.resume.buffer-bytes:32768}")
+    private int bufferBytes;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // Токен -> сессия (подключённая или припаркованная)
+    private final Map<String, PeerSession> sessions = new ConcurrentHashMap<>();
+
+    // Токен -> таймаут припаркованной сессии
+    private final Map<String, Timeout> parked = new HashMap<>();
+
+    private HashedWheelTimer timer;
+
+    private Counter resumedCounter;
+    private Counter rejectedCounter;
+    private Counter expiredCounter;
+
+    @PostConstruct
+    public void init() {
+        timer = new HashedWheelTimer(new DefaultThreadFactory("resume-wheel", true),
+                100, TimeUnit.MILLISECONDS, 512);
+
+        resumedCounter = Counter.builder("signaling.resume").tag("result", "resumed").register(meterRegistry);
+        rejectedCounter = Counter.builder("signaling.resume").tag("result", "rejected").register(meterRegistry);
+        expiredCounter = Counter.builder("signaling.resume").tag("result", "expired").register(meterRegistry);
+        Gauge.builder("signaling.resume.parked", this, SessionResumption::getParkedCount)
+                .description("Disconnected sessions waiting for resume")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Новая сессия со своим токеном и буфером повтора
+     */
+    public PeerSession open(SocketIOClient client, long userId, String username) {
+        PeerSession peer = new PeerSession(client, userId, username, bufferBytes);
+        sessions.put(peer.getResumeToken(), peer);
+        return peer;
+    }
+
+    /**
+     * Захват сессии для возобновления; токен должен принадлежать тому же пользователю
+     *
+     * @return null, если сессии нет, она истекла или чужая
+     */
+    public synchronized PeerSession claim(String token, long userId) {
+        PeerSession peer = sessions.get(token);
+        if (peer == null || peer.getUserId() != userId) {
+            rejectedCounter.increment();
+            return null;
+        }
+
+        Timeout timeout = parked.remove(token);
+        if (timeout != null) {
+            timeout.cancel();
+        }
+        resumedCounter.increment();
+        return peer;
+    }
+
+    /**
+     * Разрыв сокета client: если за grace-ms сессия не возобновлена, выполняется onExpire
+     */
+    public synchronized void park(PeerSession peer, SocketIOClient client, Runnable onExpire) {
+        String token = peer.getResumeToken();
+        Timeout previous = parked.put(token, timer.newTimeout(
+                timeout -> expire(peer, client, timeout, onExpire), graceMs, TimeUnit.MILLISECONDS));
+        if (previous != null) {
+            previous.cancel();
+        }
+    }
+
+    /**
+     * Сессия завершена окончательно
+     */
+    public synchronized void close(PeerSession peer) {
+        sessions.remove(peer.getResumeToken(), peer);
+        Timeout timeout = parked.remove(peer.getResumeToken());
+        if (timeout != null) {
+            timeout.cancel();
+        }
+    }
+
+    private void expire(PeerSession peer, SocketIOClient client, Timeout timeout, Runnable onExpire) {
+        synchronized (this) {
+            // Сессия уже возобновлена или переприпаркована с другого сокета
+            if (!parked.remove(peer.getResumeToken(), timeout) || peer.getClient() != client) {
+                return;
+            }
+            sessions.remove(peer.getResumeToken(), peer);
+        }
+        expiredCounter.increment();
+        onExpire.run();
+    }
+
+    public synchronized int getParkedCount() {
+        return parked.size();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        timer.stop();
+    }
+}
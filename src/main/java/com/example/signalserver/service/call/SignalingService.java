@@ -0,0 +1,649 @@
+package com.example.signalserver.service.call;
+
+import com.corundumstudio.socketio.HandshakeData;
+import com.corundumstudio.socketio.SocketIOClient;
+import com.corundumstudio.socketio.SocketIOServer;
+import com.example.signalserver.model.entity.Room;
+import com.example.signalserver.model.entity.User;
+import com.example.signalserver.model.enums.EventType;
+import com.example.signalserver.repository.room.RoomRepository;
+import com.example.signalserver.repository.user.UserRepository;
+import com.example.signalserver.security.TokenRevocationService;
+import com.example.signalserver.service.auth.JWTService;
+import com.example.signalserver.service.room.RoomEventSink;
+import com.example.signalserver.service.room.RoomTransport;
+import com.example.signalserver.service.room.RoomRoster;
+import com.example.signalserver.service.room.RoomRosterRegistry;
+import com.example.signalserver.service.user.PresenceService;
+import com.fasterxml.jackson.databind.JsonNode;
+import io.jsonwebtoken.Claims;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+
+@Service
+public class SignalingService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SignalingService.class);
+
+    private static final String PEER_KEY = "peer";
+    private static final String TOKEN_PARAM = "token";
+    // Возобновление сессии: токен из события session и последний полученный seq
+    private static final String RESUME_PARAM = "resume";
+    private static final String LAST_SEQ_PARAM = "seq";
+    // Клиент принимает пакеты ice-candidates; без флага кандидаты приходят по одному
+    private static final String ICE_BATCH_PARAM = "iceBatch";
+    private static final String AUTHORIZATION_HEADER = "Authorization";
+    private static final String BEARER_PREFIX = "Bearer ";
+
+    // Входящие события
+    public static final String EVENT_JOIN = "join-room";
+    public static final String EVENT_LEAVE = "leave-room";
+    public static final String EVENT_OFFER = "offer";
+    public static final String EVENT_ANSWER = "answer";
+    public static final String EVENT_ICE_CANDIDATE = "ice-candidate";
+    public static final String EVENT_MEDIA_STATE = "media-state";
+    public static final String EVENT_HEARTBEAT = "heartbeat";
+
+    // Исходящие события
+    // Токен возобновления сессии; после возобновления приходит повторно с resumed=true
+    public static final String EVENT_SESSION = "session";
+    public static final String EVENT_ROOM_JOINED = "room-joined";
+    public static final String EVENT_PEER_JOINED = "peer-joined";
+    public static final String EVENT_PEER_LEFT = "peer-left";
+    public static final String EVENT_PEER_MEDIA = "peer-media";
+    // Пакет ICE-кандидатов одного отправителя: {from, candidates: [...]};
+    // только сокетам, подключённым с iceBatch=1
+    public static final String EVENT_ICE_CANDIDATES = "ice-candidates";
+    // Участники комнаты на других узлах, дополняет room-joined
+    public static final String EVENT_ROOM_PEERS = "room-peers";
+    public static final String EVENT_ERROR = "signal-error";
+
+    private static final String FIELD_TO = "to";
+    private static final String FIELD_FROM = "from";
+    private static final String FIELD_ROOM_CODE = "roomCode";
+
+    private final JsonNodeFactory nodeFactory = JsonNodeFactory.instance;
+
+    // peerId -> сессия; используется для адресной пересылки
+    private final Map<String, PeerSession> peers = new ConcurrentHashMap<>();
+
+    @Autowired
+    private SocketIOServer server;
+
+    @Autowired
+    private JWTService jwtService;
+
+    @Autowired
+    private TokenRevocationService revocationService;
+
+    @Autowired
+    private RoomRepository roomRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RoomExecutor roomExecutor;
+
+    @Autowired
+    private RoomRosterRegistry rosterRegistry;
+
+    @Autowired
+    private CallSessionRecorder callSessionRecorder;
+
+    @Autowired
+    private RoomEventSink roomEventSink;
+
+    @Autowired
+    private PresenceService presenceService;
+
+    @Autowired
+    private RoomTransport roomTransport;
+
+    @Autowired
+    private OutboundDispatcher outbound;
+
+    @Autowired
+    private SessionResumption sessionResumption;
+
+    @Autowired
+    private IceCandidateBatcher iceCandidateBatcher;
+
+    @PostConstruct
+    public void start() {
+        roomTransport.setInboundHandler(this::onRelayed);
+
+        server.addConnectListener(this::onConnect);
+        server.addDisconnectListener(this::onDisconnect);
+
+        server.addEventListener(EVENT_JOIN, JsonNode.class, (client, data, ack) -> onJoin(client, data));
+        server.addEventListener(EVENT_LEAVE, JsonNode.class, (client, data, ack) -> onLeave(client));
+        server.addEventListener(EVENT_MEDIA_STATE, JsonNode.class, (client, data, ack) -> onMediaState(client, data));
+        server.addEventListener(EVENT_HEARTBEAT, JsonNode.class, (client, data, ack) -> onHeartbeat(client));
+        // Живость по ping/pong Engine.IO: их шлёт любой клиент без отдельного события
+        // (v3 - ping от клиента, v4 - pong на ping сервера)
+        server.addPingListener(this::onHeartbeat);
+        server.addPongListener(this::onHeartbeat);
+
+        // Payload пересылается как есть - без маппинга в DTO
+        server.addEventListener(EVENT_OFFER, JsonNode.class, (client, data, ack) -> relay(client, EVENT_OFFER, data));
+        server.addEventListener(EVENT_ANSWER, JsonNode.class, (client, data, ack) -> relay(client, EVENT_ANSWER, data));
+        server.addEventListener(EVENT_ICE_CANDIDATE, JsonNode.class, (client, data, ack) -> relay(client, EVENT_ICE_CANDIDATE, data));
+
+        server.start();
+        logger.info("Socket.IO signaling server started on port {}", server.getConfiguration().getPort());
+    }
+
+    @PreDestroy
+    public void stop() {
+        server.stop();
+        logger.info("Socket.IO signaling server stopped");
+    }
+
+    /**
+     * Аутентификация сокета по JWT из handshake
+     */
+    private void onConnect(SocketIOClient client) {
+        String token = extractToken(client.getHandshakeData());
+        Claims claims = token != null ? jwtService.parseToken(token) : null;
+
+        if (claims == null || claims.getSubject() == null || revocationService.isRevoked(claims)) {
+            logger.debug("Rejecting socket {} - missing or invalid token", client.getSessionId());
+            client.disconnect();
+            return;
+        }
+
+        String username = claims.getSubject();
+        Number userId = claims.get(JWTService.USER_ID_KEY, Number.class);
+        if (userId != null) {
+            completeConnect(client, userId.longValue(), username);
+            return;
+        }
+
+        // Токен старого формата без uid: пользователь ищется в БД вне IO-потока Netty.
+        // События сокета до прихода session такой клиент отправляет впустую
+        CompletableFuture<Optional<User>> lookup;
+        try {
+            lookup = roomExecutor.offload(() -> userRepository.findByUsername(username));
+        } catch (RejectedExecutionException e) {
+            logger.warn("Rejecting socket {} - user lookup queue is full", client.getSessionId());
+            client.disconnect();
+            return;
+        }
+        lookup.whenComplete((user, error) -> {
+            if (error != null) {
+                logger.warn("User lookup failed for socket {}: {}", client.getSessionId(), error.getMessage());
+            }
+            if (error != null || user.isEmpty()) {
+                client.disconnect();
+            } else if (client.isChannelOpen()) {
+                completeConnect(client, user.get().getId(), username);
+            }
+        });
+    }
+
+    private void completeConnect(SocketIOClient client, long userId, String username) {
+        if (resume(client, userId)) {
+            return;
+        }
+
+        PeerSession peer = sessionResumption.open(client, userId, username);
+        peer.setIceBatching(acceptsIceBatches(client.getHandshakeData()));
+        client.set(PEER_KEY, peer);
+        outbound.open(peer);
+        peers.put(peer.getPeerId(), peer);
+        presenceService.connected(peer.getUserId());
+        outbound.send(peer, EVENT_SESSION, describeSession(peer, false));
+
+        logger.debug("Peer {} connected as '{}'", peer.getPeerId(), peer.getUsername());
+    }
+
+    /**
+     * Возобновление сессии по токену из handshake: сокет привязывается к прежнему
+     * PeerSession и получает только пропущенные события. Участник не покидал комнату,
+     * поэтому другие участники ничего не замечают, а ростер и БД не меняются.
+     */
+    private boolean resume(SocketIOClient client, long userId) {
+        HandshakeData handshake = client.getHandshakeData();
+        String token = handshake.getSingleUrlParam(RESUME_PARAM);
+        if (!StringUtils.hasText(token)) {
+            return false;
+        }
+
+        PeerSession peer = sessionResumption.claim(token, userId);
+        if (peer == null) {
+            return false;
+        }
+
+        // Прежний сокет (например, Wi-Fi при переходе на LTE) может быть ещё не закрыт
+        SocketIOClient previous = peer.getClient();
+        if (previous != client) {
+            previous.del(PEER_KEY);
+            if (previous.isChannelOpen()) {
+                previous.disconnect();
+            }
+        }
+
+        long lastSeq = parseSeq(handshake.getSingleUrlParam(LAST_SEQ_PARAM));
+        if (lastSeq < 0 || !outbound.resume(peer, client, lastSeq)) {
+            // Пропущенные события уже вытеснены из буфера - обычный новый вход
+            logger.debug("Peer {} cannot be resumed from seq {}", peer.getPeerId(), lastSeq);
+            endSession(peer);
+            return false;
+        }
+
+        // Новый сокет может быть другим клиентом той же сессии
+        peer.setIceBatching(acceptsIceBatches(handshake));
+        client.set(PEER_KEY, peer);
+        outbound.send(peer, EVENT_SESSION, describeSession(peer, true));
+
+        logger.debug("Peer {} resumed from seq {}", peer.getPeerId(), lastSeq);
+        return true;
+    }
+
+    private static boolean acceptsIceBatches(HandshakeData handshake) {
+        return "1".equals(handshake.getSingleUrlParam(ICE_BATCH_PARAM));
+    }
+
+    /**
+     * Разрыв сокета не выводит участника из комнаты сразу: сессия ждёт
+     * возобновления grace-окно, затем выполняется обычный выход
+     */
+    private void onDisconnect(SocketIOClient client) {
+        PeerSession peer = client.get(PEER_KEY);
+        client.del(PEER_KEY);
+        // Сессия уже перешла на другой сокет
+        if (peer == null || !outbound.detach(peer, client)) {
+            return;
+        }
+
+        sessionResumption.park(peer, client, () -> endSession(peer));
+    }
+
+    private void endSession(PeerSession peer) {
+        sessionResumption.close(peer);
+        outbound.close(peer);
+
+        peers.remove(peer.getPeerId());
+        String roomCode = peer.releaseRoom();
+        if (roomCode != null) {
+            roomExecutor.execute(roomCode, () -> leaveRoom(peer, roomCode));
+        }
+        presenceService.disconnected(peer.getUserId());
+    }
+
+    /**
+     * Ping/pong Engine.IO или heartbeat клиента продлевает онлайн-статус; в БД не пишется
+     */
+    private void onHeartbeat(SocketIOClient client) {
+        PeerSession peer = client.get(PEER_KEY);
+        if (peer != null) {
+            presenceService.heartbeat(peer.getUserId());
+        }
+    }
+
+    /**
+     * Вход в комнату. Проверка заполненности и добавление выполняются
+     * на loop'е комнаты, поэтому конкурентные входы не могут превысить лимит.
+     * Запрошенная комната запоминается сразу: вход, устаревший к моменту
+     * выполнения на loop'е (другая комната, выход, отключение), отбрасывается,
+     * а прежняя комната покидается из задачи входа.
+     */
+    private void onJoin(SocketIOClient client, JsonNode data) {
+        PeerSession peer = client.get(PEER_KEY);
+        if (peer == null) {
+            return;
+        }
+
+        String roomCode = data.path(FIELD_ROOM_CODE).asText(null);
+        if (!StringUtils.hasText(roomCode)) {
+            sendError(peer, "Room code is required");
+            return;
+        }
+
+        peer.requestRoom(roomCode);
+
+        // БД читается только при первом входе в комнату на этом узле
+        RoomRoster roster = rosterRegistry.getByCode(roomCode);
+        if (roster != null) {
+            long roomId = roster.getRoomId();
+            int maxParticipants = roster.getMaxParticipants();
+            roomExecutor.execute(roomCode, () -> admit(peer, roomId, roomCode, maxParticipants));
+            return;
+        }
+
+        // Чтение комнаты - на пуле offload, вход - как обычно на loop'е комнаты
+        CompletableFuture<Optional<Room>> lookup;
+        try {
+            lookup = roomExecutor.offload(() -> roomRepository.findByRoomCode(roomCode));
+        } catch (RejectedExecutionException e) {
+            sendError(peer, "Server is busy, try again later");
+            return;
+        }
+        lookup.whenComplete((roomOpt, error) -> roomExecutor.execute(roomCode, () -> {
+            if (error != null) {
+                logger.warn("Room lookup failed for {}: {}", roomCode, error.getMessage());
+                sendError(peer, "Failed to join room: " + roomCode);
+                return;
+            }
+            if (roomOpt.isEmpty() || !roomOpt.get().isActive()) {
+                sendError(peer, "Room not found: " + roomCode);
+                return;
+            }
+            Room room = roomOpt.get();
+            admit(peer, room.getId(), roomCode, room.getMaxParticipants());
+        }));
+    }
+
+    private void admit(PeerSession peer, long roomId, String roomCode, int maxParticipants) {
+        if (peers.get(peer.getPeerId()) != peer || !peer.isRoomRequested(roomCode)) {
+            return;
+        }
+
+        RoomRoster roster = rosterRegistry.getOrCreate(roomId, roomCode, maxParticipants);
+        PeerSession previous = roster.get(peer.getUserId());
+
+        RoomRoster.Admission admission = roster.admit(peer);
+        if (admission == RoomRoster.Admission.FULL) {
+            rosterRegistry.removeIfEmpty(roster);
+            sendError(peer, "Room is full: " + roomCode);
+            return;
+        }
+        if (admission == RoomRoster.Admission.ALREADY_PRESENT) {
+            return;
+        }
+
+        if (admission == RoomRoster.Admission.REPLACED) {
+            // Тот же пользователь с нового сокета - старая сессия закрывается
+            previous.leftRoom(roomCode);
+            callSessionRecorder.recordLeave(previous, roomCode);
+            roomEventSink.publish(roomId, previous.getUserId(), EventType.USER_LEFT, previous.getPeerId());
+            broadcast(roster, EVENT_PEER_LEFT, describeLeft(previous), peer);
+        }
+
+        // Проверка и вход атомарны относительно releaseRoom/requestRoom на других потоках
+        PeerSession.RoomEntry entry = peer.enterRoom(roomCode);
+        if (!entry.admitted()) {
+            roster.remove(peer);
+            rosterRegistry.removeIfEmpty(roster);
+            return;
+        }
+        String previousRoom = entry.previousRoom();
+        if (previousRoom != null && !previousRoom.equals(roomCode)) {
+            roomExecutor.execute(previousRoom, () -> leaveRoom(peer, previousRoom));
+        }
+
+        ObjectNode joined = nodeFactory.objectNode();
+        joined.put(FIELD_ROOM_CODE, roomCode);
+        joined.put("peerId", peer.getPeerId());
+        joined.set("peers", listPeers(roster, peer));
+        outbound.send(peer, EVENT_ROOM_JOINED, joined);
+
+        broadcast(roster, EVENT_PEER_JOINED, describePeer(peer), peer);
+
+        HandshakeData handshake = peer.getClient().getHandshakeData();
+        callSessionRecorder.recordJoin(peer, roomId, roomCode,
+                handshake.getHttpHeaders().get("User-Agent"),
+                handshake.getAddress() != null ? handshake.getAddress().getHostString() : null);
+        roomEventSink.publish(roomId, peer.getUserId(), EventType.USER_JOINED, peer.getPeerId());
+
+        logger.debug("Peer {} joined room {}", peer.getPeerId(), roomCode);
+    }
+
+    private void onLeave(SocketIOClient client) {
+        PeerSession peer = client.get(PEER_KEY);
+        if (peer == null) {
+            return;
+        }
+
+        String roomCode = peer.releaseRoom();
+        if (roomCode != null) {
+            roomExecutor.execute(roomCode, () -> leaveRoom(peer, roomCode));
+        }
+    }
+
+    /**
+     * Выход из комнаты; выполняется на loop'е комнаты
+     */
+    private void leaveRoom(PeerSession peer, String roomCode) {
+        RoomRoster roster = rosterRegistry.getByCode(roomCode);
+        if (roster == null || !roster.remove(peer)) {
+            return;
+        }
+
+        peer.leftRoom(roomCode);
+        callSessionRecorder.recordLeave(peer, roomCode);
+        roomEventSink.publish(roster.getRoomId(), peer.getUserId(), EventType.USER_LEFT, peer.getPeerId());
+
+        // Рассылка нужна и для пустого ростера: участники на других узлах
+        broadcast(roster, EVENT_PEER_LEFT, describeLeft(peer), null);
+        rosterRegistry.removeIfEmpty(roster);
+
+        logger.debug("Peer {} left room {}", peer.getPeerId(), roomCode);
+    }
+
+    /**
+     * Переключение камеры/микрофона/демонстрации экрана
+     */
+    private void onMediaState(SocketIOClient client, JsonNode data) {
+        PeerSession peer = client.get(PEER_KEY);
+        if (peer == null || peer.getRoomCode() == null) {
+            return;
+        }
+
+        String roomCode = peer.getRoomCode();
+        roomExecutor.execute(roomCode, () -> {
+            RoomRoster roster = rosterRegistry.getByCode(roomCode);
+            if (roster == null || !peer.isInRoom(roomCode)) {
+                return;
+            }
+
+            boolean video = data.path("video").asBoolean(peer.isVideoEnabled());
+            boolean audio = data.path("audio").asBoolean(peer.isAudioEnabled());
+            boolean screenSharing = data.path("screenSharing").asBoolean(peer.isScreenSharing());
+
+            if (video != peer.isVideoEnabled()) {
+                roomEventSink.publish(roster.getRoomId(), peer.getUserId(), EventType.VIDEO_TOGGLED, String.valueOf(video));
+            }
+            if (audio != peer.isAudioEnabled()) {
+                roomEventSink.publish(roster.getRoomId(), peer.getUserId(), EventType.AUDIO_TOGGLED, String.valueOf(audio));
+            }
+            if (screenSharing != peer.isScreenSharing()) {
+                roomEventSink.publish(roster.getRoomId(), peer.getUserId(),
+                        screenSharing ? EventType.SCREEN_SHARE_STARTED : EventType.SCREEN_SHARE_STOPPED, null);
+            }
+
+            peer.setVideoEnabled(video);
+            peer.setAudioEnabled(audio);
+            peer.setScreenSharing(screenSharing);
+
+            broadcast(roster, EVENT_PEER_MEDIA, describePeer(peer), peer);
+        });
+    }
+
+    /**
+     * Пересылка offer/answer/ICE конкретному участнику той же комнаты.
+     * Дерево JSON не копируется: добавляется только поле "from".
+     * Адресат, которого нет на этом узле, ищется на других через RoomTransport.
+     */
+    private void relay(SocketIOClient client, String event, JsonNode data) {
+        PeerSession sender = client.get(PEER_KEY);
+        String roomCode = sender != null ? sender.getRoomCode() : null;
+        if (roomCode == null || !(data instanceof ObjectNode payload)) {
+            return;
+        }
+
+        String targetPeerId = payload.path(FIELD_TO).asText("");
+        if (!StringUtils.hasText(targetPeerId)) {
+            sendError(sender, "Target peer is required");
+            return;
+        }
+        PeerSession target = peers.get(targetPeerId);
+        if (target != null && !target.isInRoom(roomCode)) {
+            sendError(sender, "Target peer is not in the room");
+            return;
+        }
+
+        payload.remove(FIELD_TO);
+        payload.put(FIELD_FROM, sender.getPeerId());
+        if (target != null) {
+            deliver(sender.getPeerId(), target, event, payload);
+        } else {
+            roomTransport.publish(roomCode, event, targetPeerId, null, payload);
+        }
+    }
+
+    /**
+     * Сообщения комнаты от других узлов; доставляются на loop'е комнаты
+     */
+    private void onRelayed(String roomCode, List<RoomTransport.RelayedMessage> messages) {
+        roomExecutor.execute(roomCode, () -> {
+            RoomRoster roster = rosterRegistry.getByCode(roomCode);
+            if (roster == null) {
+                return;
+            }
+
+            for (RoomTransport.RelayedMessage message : messages) {
+                if (message.to() != null) {
+                    PeerSession target = peers.get(message.to());
+                    if (target != null && target.isInRoom(roomCode)) {
+                        deliver(message.payload().path(FIELD_FROM).asText(""), target, message.event(), message.payload());
+                    }
+                    continue;
+                }
+
+                for (PeerSession member : roster.getParticipants()) {
+                    if (!member.getPeerId().equals(message.excluded())) {
+                        outbound.send(member, message.event(), message.payload());
+                    }
+                }
+
+                // Новый участник на другом узле получает список участников этого узла
+                String joinedPeerId = message.payload().path("peerId").asText(null);
+                if (EVENT_PEER_JOINED.equals(message.event()) && joinedPeerId != null) {
+                    ObjectNode known = nodeFactory.objectNode();
+                    known.put(FIELD_ROOM_CODE, roomCode);
+                    known.set("peers", listPeers(roster, null));
+                    roomTransport.publish(roomCode, EVENT_ROOM_PEERS, joinedPeerId, null, known);
+                }
+            }
+        });
+    }
+
+    /**
+     * Адресная доставка локальному участнику: ICE-кандидаты склеиваются по паре
+     * (если получатель принимает пакеты), остальные события сначала выталкивают
+     * накопленные кандидаты пары
+     */
+    private void deliver(String fromPeerId, PeerSession target, String event, JsonNode payload) {
+        if (EVENT_ICE_CANDIDATE.equals(event)) {
+            iceCandidateBatcher.add(fromPeerId, target, payload);
+            return;
+        }
+        iceCandidateBatcher.flush(fromPeerId, target);
+        outbound.send(target, event, payload);
+    }
+
+    private JsonNode listPeers(RoomRoster roster, PeerSession self) {
+        var array = nodeFactory.arrayNode();
+        for (PeerSession other : roster.getParticipants()) {
+            if (other != self) {
+                array.add(describePeer(other));
+            }
+        }
+        return array;
+    }
+
+    /**
+     * Рассылка участникам комнаты: локальным - напрямую, остальным - через RoomTransport
+     */
+    private void broadcast(RoomRoster roster, String event, JsonNode payload, PeerSession excluded) {
+        for (PeerSession member : roster.getParticipants()) {
+            if (member != excluded) {
+                outbound.send(member, event, payload);
+            }
+        }
+        roomTransport.publish(roster.getRoomCode(), event, null,
+                excluded != null ? excluded.getPeerId() : null, payload);
+    }
+
+    private ObjectNode describeSession(PeerSession peer, boolean resumed) {
+        ObjectNode node = nodeFactory.objectNode();
+        node.put("peerId", peer.getPeerId());
+        node.put("resumeToken", peer.getResumeToken());
+        node.put("resumed", resumed);
+        if (peer.getRoomCode() != null) {
+            node.put(FIELD_ROOM_CODE, peer.getRoomCode());
+        }
+        return node;
+    }
+
+    private ObjectNode describeLeft(PeerSession peer) {
+        ObjectNode node = nodeFactory.objectNode();
+        node.put("peerId", peer.getPeerId());
+        return node;
+    }
+
+    private ObjectNode describePeer(PeerSession peer) {
+        ObjectNode node = nodeFactory.objectNode();
+        node.put("peerId", peer.getPeerId());
+        node.put("userId", peer.getUserId());
+        node.put("username", peer.getUsername());
+        node.put("video", peer.isVideoEnabled());
+        node.put("audio", peer.isAudioEnabled());
+        node.put("screenSharing", peer.isScreenSharing());
+        return node;
+    }
+
+    private void sendError(PeerSession peer, String message) {
+        ObjectNode error = nodeFactory.objectNode();
+        error.put("message", message);
+        outbound.send(peer, EVENT_ERROR, error);
+    }
+
+    private static long parseSeq(String value) {
+        if (!StringUtils.hasText(value)) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private String extractToken(HandshakeData handshake) {
+        String token = handshake.getSingleUrlParam(TOKEN_PARAM);
+        if (StringUtils.hasText(token)) {
+            return token;
+        }
+
+        String header = handshake.getHttpHeaders().get(AUTHORIZATION_HEADER);
+        if (StringUtils.hasText(header) && header.startsWith(BEARER_PREFIX)) {
+            return header.substring(BEARER_PREFIX.length());
+        }
+        return null;
+    }
+
+    public int getConnectedPeers() {
+        return peers.size();
+    }
+
+    public int getActiveRooms() {
+        return rosterRegistry.getActiveRooms();
+    }
+}
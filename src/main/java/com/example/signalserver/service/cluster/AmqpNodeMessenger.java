@@ -0,0 +1,30 @@
+package com.example.signalserver.service.cluster;
+
+import com.example.signalserver.config.SignalingQueueConfig;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageDeliveryMode;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Отправка через direct-обменник signaling: ключ маршрутизации - id узла-получателя.
+ * Сообщения не персистентные - сигналинг после рестарта узла не восстанавливается.
+ */
+@Component
+@ConditionalOnProperty(name = "app.room-transport", havingValue = "owner")
+public class AmqpNodeMessenger implements NodeMessenger {
+
+    @Autowired
+    private RabbitTemplate rabbitTemplate;
+
+    @Override
+    public void send(String nodeId, byte[] body) {
+        MessageProperties properties = new MessageProperties();
+        properties.setContentType(MessageProperties.CONTENT_TYPE_JSON);
+        properties.setDeliveryMode(MessageDeliveryMode.NON_PERSISTENT);
+        rabbitTemplate.send(SignalingQueueConfig.SIGNALING_EXCHANGE, nodeId, new Message(body, properties));
+    }
+}
@@ -0,0 +1,149 @@
+package com.example.signalserver.service.cluster;
+
+import com.example.signalserver.service.user.PresenceService;
+import com.example.signalserver.util.ConsistentHashRing;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BiConsumer;
+
+/**
+ * Состав кластера сигналинга и кольцо владельцев комнат.
+ *
+ * Каждый узел раз в heartbeat-ms записывает в Redis-хэш cluster:nodes свой вес
+ * и время, читает остальных и убирает узлы, не обновлявшиеся node-timeout-ms.
+ * Вес зависит от нагрузки: базовый вес уменьшается четвертями по мере заполнения
+ * узла, поэтому кольцо перестраивается только при переходе между уровнями.
+ */
+@Component
+@ConditionalOnProperty(name = "app.room-transport", havingValue = "owner")
+public class ClusterMembership {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClusterMembership.class);
+
+    private static final String NODES_KEY = "cluster:nodes";
+    private static final int LOAD_LEVELS = 4;
+
+    @Value("${app.cluster.weight:4}")
+    private int baseWeight;
+
+    // Число онлайн-пользователей, при котором узел считается заполненным
+    @Value("${app.cluster.capacity:10000}")
+    private long capacity;
+
+    @Value("${app.cluster.vnodes-per-weight:40}")
+    private int vnodesPerWeight;
+
+    @Value("${app.cluster.node-timeout-ms:10000}")
+    private long nodeTimeoutMs;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private PresenceService presenceService;
+
+    private final String nodeId = UUID.randomUUID().toString();
+
+    // Слушатели смены кольца: (прежнее, новое)
+    private final List<BiConsumer<ConsistentHashRing, ConsistentHashRing>> listeners = new CopyOnWriteArrayList<>();
+
+    private volatile ConsistentHashRing ring;
+
+    @PostConstruct
+    public void init() {
+        ring = ConsistentHashRing.of(Map.of(nodeId, currentWeight()), vnodesPerWeight);
+        heartbeat();
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public ConsistentHashRing getRing() {
+        return ring;
+    }
+
+    public String ownerOf(String roomCode) {
+        return ring.ownerOf(roomCode);
+    }
+
+    public void addListener(BiConsumer<ConsistentHashRing, ConsistentHashRing> listener) {
+        listeners.add(listener);
+    }
+
+    @Scheduled(fixedDelayString = "${app.cluster.heartbeat-ms:2000}")
+    public void heartbeat() {
+        long now = System.currentTimeMillis();
+        int weight = currentWeight();
+
+        Map<String, Integer> alive = new HashMap<>();
+        alive.put(nodeId, weight);
+        try {
+            stringRedisTemplate.opsForHash().put(NODES_KEY, nodeId, weight + "|" + now);
+
+            List<Object> expired = new ArrayList<>();
+            for (Map.Entry<Object, Object> entry : stringRedisTemplate.opsForHash().entries(NODES_KEY).entrySet()) {
+                String[] parts = entry.getValue().toString().split("\\|", 2);
+                if (parts.length != 2) {
+                    continue;
+                }
+                if (now - Long.parseLong(parts[1]) > nodeTimeoutMs) {
+                    expired.add(entry.getKey());
+                } else {
+                    alive.put(entry.getKey().toString(), Integer.parseInt(parts[0]));
+                }
+            }
+            if (!expired.isEmpty()) {
+                stringRedisTemplate.opsForHash().delete(NODES_KEY, expired.toArray());
+                logger.info("Removed {} expired signaling nodes from the ring", expired.size());
+            }
+        } catch (Exception e) {
+            // Без Redis кольцо не меняется: узел продолжает работать с последним известным составом
+            logger.warn("Failed to refresh cluster membership: {}", e.getMessage());
+            return;
+        }
+
+        ConsistentHashRing previous = ring;
+        if (!alive.equals(previous.getWeights())) {
+            ConsistentHashRing updated = ConsistentHashRing.of(alive, vnodesPerWeight);
+            ring = updated;
+            logger.info("Signaling ring changed: {}", alive);
+            for (BiConsumer<ConsistentHashRing, ConsistentHashRing> listener : listeners) {
+                listener.accept(previous, updated);
+            }
+        }
+    }
+
+    /**
+     * Базовый вес, уменьшенный по свободной доле ёмкости (четвертями, не ниже одной)
+     */
+    private int currentWeight() {
+        double load = capacity > 0 ? Math.min(1.0, (double) presenceService.getOnlineCount() / capacity) : 0;
+        int freeLevels = Math.max(1, (int) Math.ceil((1 - load) * LOAD_LEVELS));
+        return Math.max(1, (int) Math.round((double) baseWeight * freeLevels / LOAD_LEVELS));
+    }
+
+    @PreDestroy
+    public void leave() {
+        try {
+            stringRedisTemplate.opsForHash().delete(NODES_KEY, nodeId);
+        } catch (Exception e) {
+            logger.warn("Failed to leave cluster: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package com.example.signalserver.service.cluster;
+
+/**
+ * Адресная отправка сообщения конкретному узлу кластера
+ */
+public interface NodeMessenger {
+
+    void send(String nodeId, byte[] body);
+}
@@ -0,0 +1,31 @@
+package com.example.signalserver.service.mail;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Задание на отправку письма. В очередь кладутся только данные для шаблона,
+ * рендеринг выполняется на стороне потребителя.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class EmailJob {
+
+    public enum Type {
+        EMAIL_VERIFICATION, PASSWORD_RESET
+    }
+
+    private Type type;
+    private String to;
+    private String firstName;
+    private String token;
+
+    // Номер попытки отправки, начиная с 0
+    private int attempt;
+
+    public static EmailJob of(Type type, String to, String firstName, String token) {
+        return new EmailJob(type, to, firstName, token, 0);
+    }
+}
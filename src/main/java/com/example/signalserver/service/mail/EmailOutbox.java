@@ -0,0 +1,145 @@
+package com.example.signalserver.service.mail;
+
+import com.example.signalserver.config.MailQueueConfig;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+/**
+ * Постановка писем в очередь через таблицу mail_outbox (см. db/mail-outbox.sql).
+ *
+ * Задание записывается в текущей транзакции, поэтому по откатившейся регистрации
+ * письмо не уйдёт, а по зафиксированной - не потеряется. Ретранслятор пересылает
+ * строки в RabbitMQ пачками и удаляет их только после подтверждения брокера; при
+ * ошибке пачка откладывается с экспоненциальной задержкой. Строки выбираются с
+ * FOR UPDATE SKIP LOCKED, так что ретрансляторы разных узлов не мешают друг другу.
+ * Доставка - не менее одного раза: при сбое после подтверждения письмо может повториться.
+ */
+@Service
+public class EmailOutbox {
+
+    private static final Logger logger = LoggerFactory.getLogger(EmailOutbox.class);
+
+    private static final String INSERT_SQL =
+            "INSERT INTO mail_outbox (type, recipient, first_name, token) VALUES (?, ?, ?, ?)";
+    private static final String SELECT_DUE_SQL =
+            "SELECT id, type, recipient, first_name, token, attempts FROM mail_outbox "
+                    + "WHERE next_attempt_at <= now() ORDER BY id LIMIT ? FOR UPDATE SKIP LOCKED";
+    private static final String DELETE_SQL = "DELETE FROM mail_outbox WHERE id = ?";
+    private static final String RESCHEDULE_SQL =
+            "UPDATE mail_outbox SET attempts = attempts + 1, next_attempt_at = ? WHERE id = ?";
+
+    private static final RowMapper<OutboxRow> ROW_MAPPER = (rs, rowNum) -> new OutboxRow(
+            rs.getLong("id"),
+            EmailJob.of(EmailJob.Type.valueOf(rs.getString("type")), rs.getString("recipient"),
+                    rs.getString("first_name"), rs.getString("token")),
+            rs.getInt("attempts"));
+
+    @Value("${app.mail.outbox.batch-size:100}")
+    private int batchSize;
+
+    @Value("${app.mail.outbox.confirm-timeout-ms:5000}")
+    private long confirmTimeoutMs;
+
+    @Value("${app.mail.outbox.backoff-initial-ms:1000}")
+    private long backoffInitialMs;
+
+    @Value("${app.mail.outbox.backoff-max-ms:300000}")
+    private long backoffMaxMs;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private RabbitTemplate rabbitTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private TransactionTemplate transactionTemplate;
+    private Counter publishedCounter;
+    private Counter failedCounter;
+
+    private record OutboxRow(long id, EmailJob job, int attempts) {
+    }
+
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        publishedCounter = Counter.builder("mail.outbox.published").register(meterRegistry);
+        failedCounter = Counter.builder("mail.outbox.publish.failed").register(meterRegistry);
+    }
+
+    public void enqueue(EmailJob job) {
+        jdbcTemplate.update(INSERT_SQL, job.getType().name(), job.getTo(), job.getFirstName(), job.getToken());
+    }
+
+    /**
+     * Пересылает в RabbitMQ все задания, срок которых наступил
+     */
+    @Scheduled(fixedDelayString = "${app.mail.outbox.poll-interval-ms:1000}")
+    public void relay() {
+        Integer relayed;
+        do {
+            relayed = transactionTemplate.execute(status -> relayBatch());
+        } while (relayed != null && relayed == batchSize);
+    }
+
+    /**
+     * Одна пачка в одной транзакции: строки заблокированы, пока брокер не подтвердит приём
+     */
+    private int relayBatch() {
+        List<OutboxRow> rows = jdbcTemplate.query(SELECT_DUE_SQL, ROW_MAPPER, batchSize);
+        if (rows.isEmpty()) {
+            return 0;
+        }
+
+        try {
+            rabbitTemplate.invoke(operations -> {
+                for (OutboxRow row : rows) {
+                    operations.convertAndSend(MailQueueConfig.MAIL_EXCHANGE,
+                            MailQueueConfig.OUTBOUND_ROUTING_KEY, row.job());
+                }
+                operations.waitForConfirmsOrDie(confirmTimeoutMs);
+                return null;
+            });
+        } catch (AmqpException e) {
+            failedCounter.increment(rows.size());
+            logger.warn("Failed to relay {} emails to RabbitMQ, will retry: {}", rows.size(), e.getMessage());
+
+            long now = System.currentTimeMillis();
+            jdbcTemplate.batchUpdate(RESCHEDULE_SQL, rows, rows.size(), (ps, row) -> {
+                ps.setTimestamp(1, new Timestamp(now + backoff(row.attempts())));
+                ps.setLong(2, row.id());
+            });
+            return 0;
+        }
+
+        jdbcTemplate.batchUpdate(DELETE_SQL, rows, rows.size(), (ps, row) -> ps.setLong(1, row.id()));
+        publishedCounter.increment(rows.size());
+        return rows.size();
+    }
+
+    private long backoff(int attempts) {
+        long delay = backoffInitialMs << Math.min(attempts, 20);
+        return Math.min(delay, backoffMaxMs);
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.signalserver.service.mail;
+
+import com.example.signalserver.config.MailQueueConfig;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.stereotype.Component;
+import org.thymeleaf.TemplateEngine;
+import org.thymeleaf.context.Context;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Year;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Потребитель очереди писем: получает задания пачкой, рендерит шаблоны Thymeleaf
+ * и отправляет всю пачку через одно SMTP-соединение. Неотправленные письма уходят
+ * в очередь повторов с задержкой, после исчерпания попыток - в DLQ.
+ */
+@Component
+public class EmailWorker {
+
+    private static final Logger logger = LoggerFactory.getLogger(EmailWorker.class);
+
+    @Value("${app.mail.from:no-reply@signalserver.local}")
+    private String from;
+
+    @Value("${app.mail.base-url:http://localhost:8080}")
+    private String baseUrl;
+
+    @Value("${app.mail.support-email:support@signalserver.local}")
+    private String supportEmail;
+
+    @Value("${app.mail.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${spring.application.name:SignalServer}")
+    private String appName;
+
+    @Autowired
+    private JavaMailSender mailSender;
+
+    @Autowired
+    private TemplateEngine mailTemplateEngine;
+
+    @Autowired
+    private RabbitTemplate rabbitTemplate;
+
+    @RabbitListener(queues = MailQueueConfig.OUTBOUND_QUEUE, containerFactory = "mailListenerContainerFactory")
+    public void onBatch(List<EmailJob> jobs) {
+        // Порядок очереди; MimeMessage сравнивается по ссылке (equals не переопределён)
+        Map<MimeMessage, EmailJob> messages = new LinkedHashMap<>();
+        for (EmailJob job : jobs) {
+            try {
+                messages.put(render(job), job);
+            } catch (MessagingException | RuntimeException e) {
+                // Ошибка шаблона не исправится повтором
+                logger.error("Failed to render {} email to {}", job.getType(), job.getTo(), e);
+                deadLetter(job);
+            }
+        }
+
+        if (messages.isEmpty()) {
+            return;
+        }
+
+        try {
+            mailSender.send(messages.keySet().toArray(new MimeMessage[0]));
+        } catch (MailSendException e) {
+            List<EmailJob> failed = new ArrayList<>();
+            e.getFailedMessages().keySet().forEach(message -> {
+                EmailJob job = messages.get(message);
+                if (job != null) {
+                    failed.add(job);
+                }
+            });
+            // Без списка неудачных сообщений (например, нет соединения) повторяем всю пачку
+            retry(failed.isEmpty() ? new ArrayList<>(messages.values()) : failed, e);
+        } catch (MailException e) {
+            retry(new ArrayList<>(messages.values()), e);
+        }
+    }
+
+    private MimeMessage render(EmailJob job) throws MessagingException {
+        Context context = new Context();
+        context.setVariable("appName", appName);
+        context.setVariable("user", Map.of("firstName", job.getFirstName() != null ? job.getFirstName() : ""));
+        context.setVariable("year", Year.now().getValue());
+        context.setVariable("supportEmail", supportEmail);
+
+        String template;
+        String subject;
+        switch (job.getType()) {
+            case EMAIL_VERIFICATION -> {
+                template = "email-verification";
+                subject = "Verify your email address";
+                context.setVariable("verificationUrl", baseUrl + "/api/auth/verify-email?token=" + job.getToken());
+            }
+            case PASSWORD_RESET -> {
+                template = "password-reset";
+                subject = "Reset your password";
+                context.setVariable("resetUrl", baseUrl + "/reset-password?token=" + job.getToken());
+            }
+            default -> throw new IllegalArgumentException("Unknown email type: " + job.getType());
+        }
+
+        MimeMessage message = mailSender.createMimeMessage();
+        MimeMessageHelper helper = new MimeMessageHelper(message, StandardCharsets.UTF_8.name());
+        helper.setFrom(from);
+        helper.setTo(job.getTo());
+        helper.setSubject(subject);
+        helper.setText(mailTemplateEngine.process(template, context), true);
+        return message;
+    }
+
+    private void retry(List<EmailJob> failed, Exception cause) {
+        logger.warn("Failed to send {} emails: {}", failed.size(), cause.getMessage());
+        for (EmailJob job : failed) {
+            job.setAttempt(job.getAttempt() + 1);
+            if (job.getAttempt() >= maxAttempts) {
+                deadLetter(job);
+            } else {
+                rabbitTemplate.convertAndSend(MailQueueConfig.MAIL_EXCHANGE, MailQueueConfig.RETRY_ROUTING_KEY, job);
+            }
+        }
+    }
+
+    private void deadLetter(EmailJob job) {
+        logger.error("Giving up on {} email to {} after {} attempts", job.getType(), job.getTo(), job.getAttempt());
+        rabbitTemplate.convertAndSend(MailQueueConfig.MAIL_EXCHANGE, MailQueueConfig.DEAD_ROUTING_KEY, job);
+    }
+}
@@ -0,0 +1,379 @@
+package com.example.signalserver.service.room;
+
+import com.example.signalserver.service.cluster.ClusterMembership;
+import com.example.signalserver.service.cluster.NodeMessenger;
+import com.example.signalserver.util.ConsistentHashRing;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * Доставка событий комнаты через узел-владелец.
+ *
+ * Владелец roomCode определяется кольцом ClusterMembership. Узлы с участниками
+ * комнаты регистрируются у владельца (ATTACH/DETACH), события отправляют ему же
+ * (ROUTE), а владелец пересылает их только узлам комнаты (DELIVER) адресно через
+ * RabbitMQ. Если владелец - этот узел, сообщение обрабатывается без брокера.
+ *
+ * При смене кольца узлы заново регистрируют свои комнаты у новых владельцев;
+ * консистентное хеширование ограничивает это комнатами, сменившими владельца.
+ * Узлы видят новое кольцо не одновременно, поэтому:
+ * - прежний владелец передаёт новому известный ему состав комнаты (HANDOFF);
+ * - новый владелец settle-ms после смены кольца запоминает ROUTE впервые увиденных
+ *   комнат и досылает их узлам, зарегистрировавшимся позже;
+ * - ROUTE, пришедший не владельцу, пересылается дальше не более MAX_HOPS раз.
+ */
+@Component
+@ConditionalOnProperty(name = "app.room-transport", havingValue = "owner")
+public class OwnerRoutedRoomTransport implements RoomTransport {
+
+    private static final Logger logger = LoggerFactory.getLogger(OwnerRoutedRoomTransport.class);
+
+    private static final int MAX_HOPS = 2;
+
+    // Предел запомненных ROUTE на комнату в окне после смены кольца
+    private static final int MAX_RECENT_ROUTES = 256;
+
+    private static final String FIELD_KIND = "k";
+    private static final String FIELD_ROOM = "r";
+    private static final String FIELD_ORIGIN = "n";
+    private static final String FIELD_SENT_AT = "t";
+    private static final String FIELD_HOPS = "h";
+    private static final String FIELD_EVENT = "e";
+    private static final String FIELD_TO = "to";
+    private static final String FIELD_EXCLUDED = "x";
+    private static final String FIELD_DATA = "d";
+    private static final String FIELD_NODES = "m";
+
+    private enum Kind { ATTACH, DETACH, ROUTE, DELIVER, HANDOFF }
+
+    // Сколько после смены кольца новый владелец досылает ROUTE опоздавшим узлам;
+    // должно покрывать разброс обновления кольца между узлами (heartbeat-ms)
+    @Value("${app.cluster.settle-ms:6000}")
+    private long settleMs;
+
+    @Autowired
+    private ClusterMembership clusterMembership;
+
+    @Autowired
+    private NodeMessenger nodeMessenger;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // Комнаты с участниками на этом узле
+    private final Set<String> attached = ConcurrentHashMap.newKeySet();
+
+    // Для комнат, которыми владеет этот узел: roomCode -> узлы с участниками
+    private final Map<String, Set<String>> members = new ConcurrentHashMap<>();
+
+    // ROUTE комнат, впервые появившихся у этого узла вскоре после смены кольца
+    private final Map<String, RecentRoutes> recent = new ConcurrentHashMap<>();
+
+    private volatile long ringChangedAt;
+
+    private volatile BiConsumer<String, List<RelayedMessage>> inboundHandler = (roomCode, messages) -> { };
+
+    private Timer hopTimer;
+    private Counter sentCounter;
+    private Counter localCounter;
+    private Counter rerouteCounter;
+
+    @PostConstruct
+    public void init() {
+        hopTimer = Timer.builder("room.transport.hop")
+                .description("Time from publish on the sending node to delivery on this node")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        sentCounter = Counter.builder("room.transport.messages").tag("path", "broker").register(meterRegistry);
+        localCounter = Counter.builder("room.transport.messages").tag("path", "local").register(meterRegistry);
+        rerouteCounter = Counter.builder("room.transport.rerouted").register(meterRegistry);
+        Gauge.builder("room.transport.owned", members, Map::size)
+                .description("Rooms owned by this node")
+                .register(meterRegistry);
+
+        clusterMembership.addListener(this::onRingChanged);
+    }
+
+    /**
+     * Вызывается на потоке потребителя RabbitMQ
+     */
+    @Override
+    public void setInboundHandler(BiConsumer<String, List<RelayedMessage>> inboundHandler) {
+        this.inboundHandler = inboundHandler;
+    }
+
+    @Override
+    public void attach(String roomCode) {
+        if (attached.add(roomCode)) {
+            sendToOwner(envelope(Kind.ATTACH, roomCode));
+        }
+    }
+
+    @Override
+    public void detach(String roomCode) {
+        if (attached.remove(roomCode)) {
+            sendToOwner(envelope(Kind.DETACH, roomCode));
+        }
+    }
+
+    @Override
+    public void publish(String roomCode, String event, String to, String excluded, JsonNode payload) {
+        ObjectNode envelope = envelope(Kind.ROUTE, roomCode);
+        envelope.put(FIELD_SENT_AT, System.currentTimeMillis());
+        envelope.put(FIELD_EVENT, event);
+        if (to != null) {
+            envelope.put(FIELD_TO, to);
+        }
+        if (excluded != null) {
+            envelope.put(FIELD_EXCLUDED, excluded);
+        }
+        envelope.set(FIELD_DATA, payload);
+        sendToOwner(envelope);
+    }
+
+    @RabbitListener(queues = "#{signalingNodeQueue.name}")
+    public void onNodeMessage(Message message) {
+        receive(message.getBody());
+    }
+
+    /**
+     * Входящее сообщение другого узла
+     */
+    public void receive(byte[] body) {
+        try {
+            handle((ObjectNode) objectMapper.readTree(body));
+        } catch (Exception e) {
+            logger.warn("Failed to handle signaling message: {}", e.getMessage());
+        }
+    }
+
+    private void handle(ObjectNode envelope) {
+        String roomCode = envelope.path(FIELD_ROOM).asText();
+        String origin = envelope.path(FIELD_ORIGIN).asText();
+
+        switch (Kind.valueOf(envelope.path(FIELD_KIND).asText())) {
+            case ATTACH -> addMember(roomCode, origin);
+            case HANDOFF -> {
+                for (JsonNode node : envelope.path(FIELD_NODES)) {
+                    addMember(roomCode, node.asText());
+                }
+            }
+            case DETACH -> members.computeIfPresent(roomCode, (code, nodes) -> {
+                nodes.remove(origin);
+                return nodes.isEmpty() ? null : nodes;
+            });
+            case ROUTE -> route(roomCode, origin, envelope);
+            case DELIVER -> deliver(roomCode, envelope);
+        }
+    }
+
+    /**
+     * Владелец рассылает событие узлам комнаты, кроме отправителя
+     */
+    private void route(String roomCode, String origin, ObjectNode envelope) {
+        String self = clusterMembership.getNodeId();
+        String owner = clusterMembership.ownerOf(roomCode);
+        if (!self.equals(owner)) {
+            int hops = envelope.path(FIELD_HOPS).asInt(0);
+            if (hops < MAX_HOPS) {
+                envelope.put(FIELD_HOPS, hops + 1);
+                rerouteCounter.increment();
+                send(owner, envelope);
+            }
+            return;
+        }
+
+        envelope.put(FIELD_KIND, Kind.DELIVER.name());
+
+        RecentRoutes window = window(roomCode);
+        if (window == null) {
+            forwardToMembers(roomCode, origin, envelope);
+            return;
+        }
+        // Под монитором окна: узел, регистрирующийся параллельно, получит событие
+        // либо здесь, либо из окна, но не дважды
+        synchronized (window) {
+            if (window.envelopes.size() < MAX_RECENT_ROUTES) {
+                window.envelopes.add(envelope);
+            }
+            forwardToMembers(roomCode, origin, envelope);
+        }
+    }
+
+    private void forwardToMembers(String roomCode, String origin, ObjectNode envelope) {
+        Set<String> nodes = members.get(roomCode);
+        if (nodes == null) {
+            return;
+        }
+        for (String node : nodes) {
+            if (!node.equals(origin)) {
+                forward(node, roomCode, envelope);
+            }
+        }
+    }
+
+    private void forward(String node, String roomCode, ObjectNode envelope) {
+        if (node.equals(clusterMembership.getNodeId())) {
+            deliver(roomCode, envelope);
+        } else {
+            send(node, envelope);
+        }
+    }
+
+    /**
+     * Регистрация узла в комнате. Новому узлу комнаты, открытой в окне после
+     * смены кольца, досылаются ROUTE, пришедшие до его регистрации
+     */
+    private void addMember(String roomCode, String node) {
+        RecentRoutes window = window(roomCode);
+        if (window == null) {
+            members.computeIfAbsent(roomCode, code -> ConcurrentHashMap.newKeySet()).add(node);
+            return;
+        }
+
+        synchronized (window) {
+            if (!members.computeIfAbsent(roomCode, code -> ConcurrentHashMap.newKeySet()).add(node)) {
+                return;
+            }
+            for (ObjectNode envelope : window.envelopes) {
+                if (!node.equals(envelope.path(FIELD_ORIGIN).asText())) {
+                    forward(node, roomCode, envelope);
+                }
+            }
+        }
+    }
+
+    /**
+     * Окно комнаты: открывается, если комната впервые появилась у узла не позже
+     * settle-ms после смены кольца, и действует settle-ms
+     */
+    private RecentRoutes window(String roomCode) {
+        long now = System.currentTimeMillis();
+        RecentRoutes window = recent.get(roomCode);
+        if (window != null) {
+            if (now - window.openedAt < settleMs) {
+                return window;
+            }
+            recent.remove(roomCode, window);
+            return null;
+        }
+
+        if (members.containsKey(roomCode) || now - ringChangedAt >= settleMs) {
+            return null;
+        }
+        recent.values().removeIf(other -> now - other.openedAt >= settleMs);
+        return recent.computeIfAbsent(roomCode, code -> new RecentRoutes(now));
+    }
+
+    private void deliver(String roomCode, ObjectNode envelope) {
+        if (!attached.contains(roomCode)) {
+            return;
+        }
+
+        long sentAt = envelope.path(FIELD_SENT_AT).asLong(0);
+        if (sentAt > 0) {
+            hopTimer.record(Math.max(0, System.currentTimeMillis() - sentAt), TimeUnit.MILLISECONDS);
+        }
+
+        inboundHandler.accept(roomCode, List.of(new RelayedMessage(
+                envelope.path(FIELD_EVENT).asText(),
+                envelope.hasNonNull(FIELD_TO) ? envelope.get(FIELD_TO).asText() : null,
+                envelope.hasNonNull(FIELD_EXCLUDED) ? envelope.get(FIELD_EXCLUDED).asText() : null,
+                envelope.path(FIELD_DATA))));
+    }
+
+    /**
+     * Смена кольца: комнаты, сменившие владельца, регистрируются у нового,
+     * а владелец передаёт новому состав комнат, которые ему больше не принадлежат
+     */
+    void onRingChanged(ConsistentHashRing previous, ConsistentHashRing updated) {
+        String self = clusterMembership.getNodeId();
+        ringChangedAt = System.currentTimeMillis();
+
+        Iterator<Map.Entry<String, Set<String>>> owned = members.entrySet().iterator();
+        while (owned.hasNext()) {
+            Map.Entry<String, Set<String>> entry = owned.next();
+            String owner = updated.ownerOf(entry.getKey());
+            if (self.equals(owner)) {
+                continue;
+            }
+            ObjectNode handoff = envelope(Kind.HANDOFF, entry.getKey());
+            ArrayNode nodes = handoff.putArray(FIELD_NODES);
+            entry.getValue().forEach(nodes::add);
+            owned.remove();
+            recent.remove(entry.getKey());
+            send(owner, handoff);
+        }
+
+        for (String roomCode : attached) {
+            String owner = updated.ownerOf(roomCode);
+            if (!owner.equals(previous.ownerOf(roomCode))) {
+                sendToOwner(envelope(Kind.ATTACH, roomCode));
+            }
+        }
+    }
+
+    private static final class RecentRoutes {
+        final long openedAt;
+        // Под монитором RecentRoutes
+        final List<ObjectNode> envelopes = new ArrayList<>();
+
+        RecentRoutes(long openedAt) {
+            this.openedAt = openedAt;
+        }
+    }
+
+    private ObjectNode envelope(Kind kind, String roomCode) {
+        ObjectNode envelope = objectMapper.createObjectNode();
+        envelope.put(FIELD_KIND, kind.name());
+        envelope.put(FIELD_ROOM, roomCode);
+        envelope.put(FIELD_ORIGIN, clusterMembership.getNodeId());
+        return envelope;
+    }
+
+    private void sendToOwner(ObjectNode envelope) {
+        String owner = clusterMembership.ownerOf(envelope.path(FIELD_ROOM).asText());
+        if (clusterMembership.getNodeId().equals(owner)) {
+            localCounter.increment();
+            handle(envelope);
+        } else {
+            send(owner, envelope);
+        }
+    }
+
+    private void send(String nodeId, ObjectNode envelope) {
+        try {
+            nodeMessenger.send(nodeId, objectMapper.writeValueAsBytes(envelope));
+            sentCounter.increment();
+        } catch (Exception e) {
+            logger.warn("Failed to send signaling message to node {}: {}", nodeId, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package com.example.signalserver.service.room;
+
+import com.example.signalserver.model.enums.EventType;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Асинхронная запись RoomEvent: ограниченная очередь (много производителей,
+ * один писатель), которая сбрасывается в БД JDBC-батчами по размеру или интервалу.
+ *
+ * При переполнении некритичные события (переключение медиа, сообщения) отбрасываются
+ * сразу после порога заполнения, а критичные (вход/выход, жизненный цикл комнаты)
+ * уходят в небольшой список переполнения, который разбирает тот же писатель.
+ * publish вызывается с loop'ов комнат и никогда не блокируется.
+ */
+@Component
+public class RoomEventSink {
+
+    private static final Logger logger = LoggerFactory.getLogger(RoomEventSink.class);
+
+    private static final String INSERT_SQL =
+            "INSERT INTO room_events (room_id, user_id, event_type, event_data, timestamp) VALUES (?, ?, ?, ?, ?)";
+
+    private static final Set<EventType> CRITICAL_EVENTS = EnumSet.of(
+            EventType.USER_JOINED, EventType.USER_LEFT,
+            EventType.ROOM_CREATED, EventType.ROOM_ENDED,
+            EventType.RECORDING_STARTED, EventType.RECORDING_STOPPED);
+
+    @Value("${app.room-events.queue-capacity:65536}")
+    private int queueCapacity;
+
+    @Value("${app.room-events.batch-size:500}")
+    private int batchSize;
+
+    @Value("${app.room-events.flush-interval-ms:200}")
+    private long flushIntervalMs;
+
+    // Доля заполнения, после которой некритичные события отбрасываются
+    @Value("${app.room-events.shed-threshold:0.8}")
+    private double shedThreshold;
+
+    // Критичные события сверх очереди; дальше они отбрасываются с учётом в метрике
+    @Value("${app.room-events.overflow-capacity:4096}")
+    private int overflowCapacity;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private BlockingQueue<PendingEvent> queue;
+    private final Queue<PendingEvent> overflow = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger overflowSize = new AtomicInteger();
+    private Thread writer;
+    private volatile boolean running;
+    private int shedLevel;
+
+    private Counter writtenCounter;
+    private Counter shedCounter;
+    private Counter overflowCounter;
+    private Counter failedCounter;
+    private Timer lagTimer;
+    private Timer flushTimer;
+
+    @PostConstruct
+    public void start() {
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        shedLevel = (int) (queueCapacity * shedThreshold);
+
+        Gauge.builder("room.events.queue.size", queue, BlockingQueue::size)
+                .description("Room events waiting to be written")
+                .register(meterRegistry);
+        Gauge.builder("room.events.overflow.size", overflowSize, AtomicInteger::get)
+                .description("Critical room events parked beyond the queue")
+                .register(meterRegistry);
+        writtenCounter = Counter.builder("room.events.written").register(meterRegistry);
+        shedCounter = Counter.builder("room.events.dropped").tag("reason", "shed").register(meterRegistry);
+        overflowCounter = Counter.builder("room.events.dropped").tag("reason", "overflow").register(meterRegistry);
+        failedCounter = Counter.builder("room.events.dropped").tag("reason", "write_failed").register(meterRegistry);
+        lagTimer = Timer.builder("room.events.lag")
+                .description("Time from enqueue to database write")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        flushTimer = Timer.builder("room.events.flush").register(meterRegistry);
+
+        running = true;
+        writer = new Thread(this::drainLoop, "room-event-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Ставит событие в очередь на запись. Не блокирует.
+     */
+    public void publish(long roomId, Long userId, EventType eventType, String eventData) {
+        PendingEvent event = new PendingEvent(roomId, userId, eventType, eventData,
+                LocalDateTime.now(), System.nanoTime());
+
+        boolean critical = CRITICAL_EVENTS.contains(eventType);
+        if (!critical && queue.size() >= shedLevel) {
+            shedCounter.increment();
+            return;
+        }
+
+        // Пока список переполнения не разобран, критичные события идут за ним, сохраняя порядок
+        if ((!critical || overflowSize.get() == 0) && queue.offer(event)) {
+            return;
+        }
+
+        if (critical && overflowSize.incrementAndGet() <= overflowCapacity) {
+            overflow.add(event);
+            return;
+        }
+        if (critical) {
+            overflowSize.decrementAndGet();
+        }
+        overflowCounter.increment();
+    }
+
+    private void drainOverflow(List<PendingEvent> batch) {
+        PendingEvent event;
+        while (batch.size() < batchSize && (event = overflow.poll()) != null) {
+            overflowSize.decrementAndGet();
+            batch.add(event);
+        }
+    }
+
+    private void drainLoop() {
+        List<PendingEvent> batch = new ArrayList<>(batchSize);
+        long lastFlush = System.nanoTime();
+        long flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+
+        while (running || !queue.isEmpty() || !overflow.isEmpty()) {
+            try {
+                // Пока есть переполнение, очередь не ждём
+                PendingEvent first = overflow.isEmpty()
+                        ? queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS)
+                        : queue.poll();
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, batchSize - batch.size());
+                }
+                drainOverflow(batch);
+            } catch (InterruptedException e) {
+                running = false;
+                queue.drainTo(batch);
+                drainOverflow(batch);
+            }
+
+            long now = System.nanoTime();
+            if (batch.size() >= batchSize || (!batch.isEmpty() && now - lastFlush >= flushIntervalNanos)
+                    || (!running && !batch.isEmpty())) {
+                flush(batch);
+                batch.clear();
+                lastFlush = now;
+            }
+        }
+    }
+
+    private void flush(List<PendingEvent> batch) {
+        long start = System.nanoTime();
+        try {
+            jdbcTemplate.batchUpdate(INSERT_SQL, batch, batch.size(), (ps, event) -> {
+                ps.setLong(1, event.roomId);
+                if (event.userId != null) {
+                    ps.setLong(2, event.userId);
+                } else {
+                    ps.setNull(2, Types.BIGINT);
+                }
+                ps.setString(3, event.eventType.name());
+                ps.setString(4, event.eventData);
+                ps.setTimestamp(5, Timestamp.valueOf(event.timestamp));
+            });
+
+            long writtenAt = System.nanoTime();
+            for (PendingEvent event : batch) {
+                lagTimer.record(writtenAt - event.enqueuedNanos, TimeUnit.NANOSECONDS);
+            }
+            writtenCounter.increment(batch.size());
+        } catch (Exception e) {
+            logger.error("Failed to write {} room events", batch.size(), e);
+            failedCounter.increment(batch.size());
+        } finally {
+            flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        writer.join(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    private static final class PendingEvent {
+        private final long roomId;
+        private final Long userId;
+        private final EventType eventType;
+        private final String eventData;
+        private final LocalDateTime timestamp;
+        private final long enqueuedNanos;
+
+        private PendingEvent(long roomId, Long userId, EventType eventType, String eventData,
+                             LocalDateTime timestamp, long enqueuedNanos) {
+            this.roomId = roomId;
+            this.userId = userId;
+            this.eventType = eventType;
+            this.eventData = eventData;
+            this.timestamp = timestamp;
+            this.enqueuedNanos = enqueuedNanos;
+        }
+    }
+}
@@ -0,0 +1,332 @@
+package com.example.signalserver.service.room;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+/**
+ * Межузловая доставка событий комнаты через Redis pub/sub (канал room:{roomCode}).
+ *
+ * Узел подписан только на каналы комнат, в которых у него есть участники: подписка
+ * появляется с первым локальным участником и снимается с последним. Локальные
+ * участники получают события напрямую, в Redis уходят только копии для других узлов -
+ * все сообщения комнаты за тик собираются в одну публикацию. Если PUBLISH показывает,
+ * что кроме этого узла подписчиков нет, комната считается локальной и публикации
+ * пропускаются до сообщения от другого узла (при подписке узел отправляет hello).
+ *
+ * attach/detach вызываются на loop'е комнаты, поэтому SUBSCRIBE/UNSUBSCRIBE и hello
+ * выполняются на отдельном потоке relay'я в порядке вызовов и не задерживают loop.
+ */
+@Component
+@ConditionalOnProperty(name = "app.room-transport", havingValue = "redis", matchIfMissing = true)
+public class RoomRelay implements RoomTransport, MessageListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(RoomRelay.class);
+
+    private static final String CHANNEL_PREFIX = "room:";
+
+    private static final String FIELD_NODE = "n";
+    private static final String FIELD_SENT_AT = "t";
+    private static final String FIELD_HELLO = "h";
+    private static final String FIELD_MESSAGES = "m";
+    private static final String FIELD_EVENT = "e";
+    private static final String FIELD_TO = "to";
+    private static final String FIELD_EXCLUDED = "x";
+    private static final String FIELD_DATA = "d";
+
+    @Value("${app.room-relay.flush-interval-ms:10}")
+    private long flushIntervalMs;
+
+    // Через сколько локальная комната снова пробует публиковать без hello от других узлов
+    @Value("${app.room-relay.solo-recheck-ms:5000}")
+    private long soloRecheckMs;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private RedisMessageListenerContainer listenerContainer;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final String nodeId = UUID.randomUUID().toString();
+
+    // roomCode -> канал комнаты, пока на узле есть её участники
+    private final Map<String, RoomChannel> channels = new ConcurrentHashMap<>();
+    private final Queue<RoomChannel> dirty = new ConcurrentLinkedQueue<>();
+
+    private volatile BiConsumer<String, List<RelayedMessage>> inboundHandler = (roomCode, messages) -> { };
+
+    private ScheduledExecutorService flusher;
+
+    // Подписки и hello: один поток сохраняет порядок attach/detach одной комнаты
+    private ExecutorService subscriber;
+
+    private Timer hopTimer;
+    private DistributionSummary publishedBytes;
+    private Counter outboundCounter;
+    private Counter inboundCounter;
+    private Counter localOnlyCounter;
+
+    @PostConstruct
+    public void init() {
+        hopTimer = Timer.builder("room.relay.hop")
+                .description("Time from publish on the sending node to receipt on this node")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        publishedBytes = DistributionSummary.builder("room.relay.published")
+                .description("Bytes published per room per flush")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        outboundCounter = Counter.builder("room.relay.messages").tag("direction", "out").register(meterRegistry);
+        inboundCounter = Counter.builder("room.relay.messages").tag("direction", "in").register(meterRegistry);
+        localOnlyCounter = Counter.builder("room.relay.local_only").register(meterRegistry);
+        Gauge.builder("room.relay.subscriptions", channels, Map::size).register(meterRegistry);
+
+        subscriber = Executors.newSingleThreadExecutor(new DefaultThreadFactory("room-relay-subscriber", true));
+        flusher = Executors.newSingleThreadScheduledExecutor(new DefaultThreadFactory("room-relay", true));
+        flusher.scheduleWithFixedDelay(this::flush, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Вызывается на потоке подписки Redis
+     */
+    @Override
+    public void setInboundHandler(BiConsumer<String, List<RelayedMessage>> inboundHandler) {
+        this.inboundHandler = inboundHandler;
+    }
+
+    /**
+     * Подписка на канал комнаты - при появлении первого локального участника.
+     * Публикации доступны сразу, подписка и hello выполняются асинхронно
+     */
+    @Override
+    public void attach(String roomCode) {
+        RoomChannel channel = new RoomChannel(roomCode);
+        if (channels.putIfAbsent(roomCode, channel) != null) {
+            return;
+        }
+
+        submitSubscription(roomCode, () -> {
+            listenerContainer.addMessageListener(this, channel.topic);
+            ObjectNode hello = objectMapper.createObjectNode();
+            hello.put(FIELD_NODE, nodeId);
+            hello.put(FIELD_HELLO, true);
+            stringRedisTemplate.convertAndSend(channel.topic.getTopic(), hello.toString());
+        });
+    }
+
+    /**
+     * Отписка после ухода последнего локального участника
+     */
+    @Override
+    public void detach(String roomCode) {
+        RoomChannel channel = channels.remove(roomCode);
+        if (channel != null) {
+            submitSubscription(roomCode, () -> listenerContainer.removeMessageListener(this, channel.topic));
+        }
+    }
+
+    private void submitSubscription(String roomCode, Runnable task) {
+        try {
+            subscriber.execute(() -> {
+                try {
+                    task.run();
+                } catch (Exception e) {
+                    logger.warn("Failed to update subscription of room {}: {}", roomCode, e.getMessage());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Узел останавливается
+            logger.debug("Subscription change of room {} skipped on shutdown", roomCode);
+        }
+    }
+
+    @Override
+    public void publish(String roomCode, String event, String to, String excluded, JsonNode payload) {
+        RoomChannel channel = channels.get(roomCode);
+        if (channel == null) {
+            return;
+        }
+        if (channel.isSolo()) {
+            localOnlyCounter.increment();
+            return;
+        }
+
+        channel.pending.add(new RelayedMessage(event, to, excluded, payload));
+        if (channel.scheduled.compareAndSet(false, true)) {
+            dirty.add(channel);
+        }
+    }
+
+    private void flush() {
+        RoomChannel channel;
+        while ((channel = dirty.poll()) != null) {
+            channel.scheduled.set(false);
+            try {
+                publishBatch(channel);
+            } catch (Exception e) {
+                logger.warn("Failed to relay messages of room {}: {}", channel.roomCode, e.getMessage());
+            }
+        }
+    }
+
+    private void publishBatch(RoomChannel channel) {
+        List<RelayedMessage> batch = new ArrayList<>();
+        RelayedMessage message;
+        while ((message = channel.pending.poll()) != null) {
+            batch.add(message);
+        }
+        // После detach() канал уже не в channels, но накопленное (например, peer-left
+        // последнего локального участника) всё равно отправляется
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        ObjectNode envelope = objectMapper.createObjectNode();
+        envelope.put(FIELD_NODE, nodeId);
+        envelope.put(FIELD_SENT_AT, System.currentTimeMillis());
+        ArrayNode messages = envelope.putArray(FIELD_MESSAGES);
+        for (RelayedMessage relayed : batch) {
+            ObjectNode node = messages.addObject();
+            node.put(FIELD_EVENT, relayed.event());
+            if (relayed.to() != null) {
+                node.put(FIELD_TO, relayed.to());
+            }
+            if (relayed.excluded() != null) {
+                node.put(FIELD_EXCLUDED, relayed.excluded());
+            }
+            node.set(FIELD_DATA, relayed.payload());
+        }
+
+        byte[] body = envelope.toString().getBytes(StandardCharsets.UTF_8);
+        long inboundBefore = channel.inbound.get();
+        Long receivers = stringRedisTemplate.execute(
+                connection -> connection.publish(channel.channelBytes, body), true);
+
+        publishedBytes.record(body.length);
+        outboundCounter.increment(batch.size());
+
+        // Подписчик только этот узел и за время публикации никто не отозвался
+        if (receivers != null && receivers <= 1 && channel.inbound.get() == inboundBefore) {
+            channel.soloSince = System.currentTimeMillis();
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String roomCode = new String(message.getChannel(), StandardCharsets.UTF_8).substring(CHANNEL_PREFIX.length());
+        RoomChannel channel = channels.get(roomCode);
+        if (channel == null) {
+            return;
+        }
+
+        try {
+            JsonNode envelope = objectMapper.readTree(message.getBody());
+            if (nodeId.equals(envelope.path(FIELD_NODE).asText())) {
+                return;
+            }
+
+            // В комнате есть другой узел - публикации снова нужны
+            channel.inbound.incrementAndGet();
+            channel.soloSince = 0;
+            if (envelope.path(FIELD_HELLO).asBoolean(false)) {
+                return;
+            }
+
+            long sentAt = envelope.path(FIELD_SENT_AT).asLong(0);
+            if (sentAt > 0) {
+                hopTimer.record(Math.max(0, System.currentTimeMillis() - sentAt), TimeUnit.MILLISECONDS);
+            }
+
+            List<RelayedMessage> messages = new ArrayList<>();
+            for (JsonNode node : envelope.path(FIELD_MESSAGES)) {
+                messages.add(new RelayedMessage(
+                        node.path(FIELD_EVENT).asText(),
+                        node.hasNonNull(FIELD_TO) ? node.get(FIELD_TO).asText() : null,
+                        node.hasNonNull(FIELD_EXCLUDED) ? node.get(FIELD_EXCLUDED).asText() : null,
+                        node.path(FIELD_DATA)));
+            }
+            inboundCounter.increment(messages.size());
+            inboundHandler.accept(roomCode, messages);
+        } catch (Exception e) {
+            logger.warn("Failed to handle relayed messages for room {}: {}", roomCode, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        subscriber.shutdown();
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    private final class RoomChannel {
+        final String roomCode;
+        final ChannelTopic topic;
+        final byte[] channelBytes;
+        final Queue<RelayedMessage> pending = new ConcurrentLinkedQueue<>();
+        final AtomicBoolean scheduled = new AtomicBoolean();
+        final AtomicLong inbound = new AtomicLong();
+
+        // Время, с которого комната считается локальной; 0 - публикации нужны
+        volatile long soloSince;
+
+        RoomChannel(String roomCode) {
+            this.roomCode = roomCode;
+            this.topic = new ChannelTopic(CHANNEL_PREFIX + roomCode);
+            this.channelBytes = topic.getTopic().getBytes(StandardCharsets.UTF_8);
+        }
+
+        boolean isSolo() {
+            long since = soloSince;
+            return since != 0 && System.currentTimeMillis() - since < soloRecheckMs;
+        }
+    }
+}
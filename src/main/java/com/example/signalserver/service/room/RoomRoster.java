@@ -0,0 +1,96 @@
+package com.example.signalserver.service.room;
+
+import com.example.signalserver.service.call.PeerSession;
+import io.netty.util.collection.LongObjectHashMap;
+
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * Авторитетный состав активной комнаты (участники по userId).
+ * Изменяется только с loop'а комнаты (см. RoomExecutor); количество,
+ * проверка членства и обход - без обращения к БД и lazy-коллекциям Room.
+ */
+public class RoomRoster {
+
+    private final long roomId;
+    private final String roomCode;
+    private final int maxParticipants;
+    private final LongObjectHashMap<PeerSession> participants;
+
+    public RoomRoster(long roomId, String roomCode, int maxParticipants) {
+        this.roomId = roomId;
+        this.roomCode = roomCode;
+        this.maxParticipants = maxParticipants;
+        this.participants = new LongObjectHashMap<>(Math.max(4, maxParticipants * 2));
+    }
+
+    /**
+     * Результат попытки добавить участника
+     */
+    public enum Admission { ADMITTED, REPLACED, ALREADY_PRESENT, FULL }
+
+    /**
+     * Проверка лимита и добавление одной операцией. Повторный вход того же
+     * пользователя с другого сокета вытесняет старую сессию.
+     */
+    public Admission admit(PeerSession peer) {
+        PeerSession existing = participants.get(peer.getUserId());
+        if (existing == peer) {
+            return Admission.ALREADY_PRESENT;
+        }
+        if (existing == null && participants.size() >= maxParticipants) {
+            return Admission.FULL;
+        }
+
+        participants.put(peer.getUserId(), peer);
+        return existing == null ? Admission.ADMITTED : Admission.REPLACED;
+    }
+
+    /**
+     * Удаляет участника, только если в составе именно эта сессия
+     */
+    public boolean remove(PeerSession peer) {
+        if (participants.get(peer.getUserId()) != peer) {
+            return false;
+        }
+        participants.remove(peer.getUserId());
+        return true;
+    }
+
+    public PeerSession get(long userId) {
+        return participants.get(userId);
+    }
+
+    public boolean contains(long userId) {
+        return participants.containsKey(userId);
+    }
+
+    public int size() {
+        return participants.size();
+    }
+
+    public boolean isEmpty() {
+        return participants.isEmpty();
+    }
+
+    public boolean isFull() {
+        return participants.size() >= maxParticipants;
+    }
+
+    public Collection<PeerSession> getParticipants() {
+        return Collections.unmodifiableCollection(participants.values());
+    }
+
+    public long getRoomId() {
+        return roomId;
+    }
+
+    public String getRoomCode() {
+        return roomCode;
+    }
+
+    public int getMaxParticipants() {
+        return maxParticipants;
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.signalserver.service.room;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Реестр составов активных комнат на этом узле.
+ * Ростер создаётся и удаляется только с loop'а своей комнаты; вместе с ним
+ * узел подписывается на межузловой канал комнаты и отписывается от него.
+ */
+@Component
+public class RoomRosterRegistry {
+
+    private final Map<Long, RoomRoster> rostersById = new ConcurrentHashMap<>();
+    private final Map<String, RoomRoster> rostersByCode = new ConcurrentHashMap<>();
+
+    @Autowired
+    private RoomTransport roomTransport;
+
+    public RoomRoster get(long roomId) {
+        return rostersById.get(roomId);
+    }
+
+    public RoomRoster getByCode(String roomCode) {
+        return rostersByCode.get(roomCode);
+    }
+
+    public RoomRoster getOrCreate(long roomId, String roomCode, int maxParticipants) {
+        RoomRoster roster = rostersById.get(roomId);
+        if (roster == null) {
+            roster = new RoomRoster(roomId, roomCode, maxParticipants);
+            rostersById.put(roomId, roster);
+            rostersByCode.put(roomCode, roster);
+            roomTransport.attach(roomCode);
+        }
+        return roster;
+    }
+
+    public void removeIfEmpty(RoomRoster roster) {
+        if (roster.isEmpty() && rostersById.remove(roster.getRoomId(), roster)) {
+            rostersByCode.remove(roster.getRoomCode());
+            roomTransport.detach(roster.getRoomCode());
+        }
+    }
+
+    public int getCurrentParticipants(long roomId) {
+        RoomRoster roster = rostersById.get(roomId);
+        return roster != null ? roster.size() : 0;
+    }
+
+    public int getActiveRooms() {
+        return rostersById.size();
+    }
+}
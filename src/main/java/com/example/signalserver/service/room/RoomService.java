@@ -0,0 +1,38 @@
+package com.example.signalserver.service.room;
+
+import com.example.signalserver.exception.room.RoomNotFoundException;
+import com.example.signalserver.model.entity.Room;
+import com.example.signalserver.repository.room.RoomRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+@Service
+@Transactional(readOnly = true)
+public class RoomService {
+
+    @Autowired
+    private RoomRepository roomRepository;
+
+    @Autowired
+    private RoomRosterRegistry rosterRegistry;
+
+    public Room findByCode(String roomCode) {
+        return roomRepository.findByRoomCode(roomCode)
+                .orElseThrow(() -> RoomNotFoundException.byCode(roomCode));
+    }
+
+    /**
+     * Текущее количество участников по in-memory ростеру (без загрузки сессий).
+     * Ростер знает только участников, подключённых к этому узлу: когда комната
+     * распределена по нескольким узлам (RoomTransport), число занижено, и isFull
+     * ограничивает заполнение комнаты на каждом узле отдельно.
+     */
+    public int getCurrentParticipants(Room room) {
+        return rosterRegistry.getCurrentParticipants(room.getId());
+    }
+
+    public boolean isFull(Room room) {
+        return getCurrentParticipants(room) >= room.getMaxParticipants();
+    }
+}
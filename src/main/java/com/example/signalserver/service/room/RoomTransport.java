@@ -0,0 +1,45 @@
+package com.example.signalserver.service.room;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * Доставка событий комнаты участникам на других узлах.
+ *
+ * Реализация выбирается свойством app.room-transport: redis - рассылка через
+ * Redis pub/sub всем узлам комнаты (RoomRelay), owner - пересылка через RabbitMQ
+ * узлу-владельцу комнаты по кольцу консистентного хеширования (OwnerRoutedRoomTransport).
+ */
+public interface RoomTransport {
+
+    /**
+     * Обработчик сообщений других узлов: roomCode и сообщения в порядке отправки
+     */
+    void setInboundHandler(BiConsumer<String, List<RelayedMessage>> inboundHandler);
+
+    /**
+     * На узле появился первый участник комнаты
+     */
+    void attach(String roomCode);
+
+    /**
+     * Последний участник комнаты на узле вышел
+     */
+    void detach(String roomCode);
+
+    /**
+     * Отправка события участникам комнаты на других узлах
+     *
+     * @param to       peerId адресата или null для рассылки всем
+     * @param excluded peerId, которому рассылка не доставляется, или null
+     */
+    void publish(String roomCode, String event, String to, String excluded, JsonNode payload);
+
+    /**
+     * Событие комнаты для участников на других узлах
+     */
+    record RelayedMessage(String event, String to, String excluded, JsonNode payload) {
+    }
+}
@@ -20,12 +20,19 @@ public class CustomUserDetailsService implements UserDetailsService {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private UserCache userCache;
+
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new UsernameNotFoundException("User not found: " + username));
-
-        return new CustomUserDetails(user);
+        UserAuthView view = userCache.getAuth(username, () -> userRepository.findByUsername(username)
+                .map(UserAuthView::fromUser)
+                .orElse(null));
+        if (view == null) {
+            throw new UsernameNotFoundException("User not found: " + username);
+        }
+
+        return new CustomUserDetails(view.toUser());
     }
 
     // Дополнительный метод для загрузки по email
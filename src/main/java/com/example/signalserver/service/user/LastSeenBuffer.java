@@ -0,0 +1,128 @@
+package com.example.signalserver.service.user;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Буфер last_seen_at: для пользователя хранится только последнее время активности,
+ * а в БД оно уходит одним UPDATE ... FROM (VALUES ...) на пачку раз в flush-interval.
+ *
+ * Отставание last_seen_at в БД ограничено интервалом сброса плюс временем записи;
+ * при остановке узла буфер сбрасывается. Более старое значение не затирает
+ * более новое, записанное другим узлом.
+ */
+@Component
+public class LastSeenBuffer {
+
+    private static final Logger logger = LoggerFactory.getLogger(LastSeenBuffer.class);
+
+    @Value("${app.last-seen.batch-size:500}")
+    private int batchSize;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // userId -> время последней активности (epoch millis)
+    private final Map<Long, Long> latest = new ConcurrentHashMap<>();
+
+    private Counter touchCounter;
+    private Counter writtenCounter;
+    private Timer flushTimer;
+
+    @PostConstruct
+    public void init() {
+        Gauge.builder("users.last_seen.pending", latest, Map::size)
+                .description("Users with last_seen_at waiting to be written")
+                .register(meterRegistry);
+        touchCounter = Counter.builder("users.last_seen.touches").register(meterRegistry);
+        writtenCounter = Counter.builder("users.last_seen.written").register(meterRegistry);
+        flushTimer = Timer.builder("users.last_seen.flush").register(meterRegistry);
+    }
+
+    public void touch(long userId) {
+        touch(userId, System.currentTimeMillis());
+    }
+
+    public void touch(long userId, long at) {
+        latest.merge(userId, at, Math::max);
+        touchCounter.increment();
+    }
+
+    @Scheduled(fixedDelayString = "${app.last-seen.flush-interval-ms:30000}")
+    public void flush() {
+        if (latest.isEmpty()) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        List<Long> userIds = new ArrayList<>(batchSize);
+        List<Long> timestamps = new ArrayList<>(batchSize);
+
+        for (Long userId : latest.keySet()) {
+            Long at = latest.remove(userId);
+            if (at == null) {
+                continue;
+            }
+            userIds.add(userId);
+            timestamps.add(at);
+
+            if (userIds.size() >= batchSize) {
+                write(userIds, timestamps);
+                userIds.clear();
+                timestamps.clear();
+            }
+        }
+        if (!userIds.isEmpty()) {
+            write(userIds, timestamps);
+        }
+
+        flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    private void write(List<Long> userIds, List<Long> timestamps) {
+        StringBuilder sql = new StringBuilder("UPDATE users u SET last_seen_at = v.ts FROM (VALUES ");
+        Object[] args = new Object[userIds.size() * 2];
+        for (int i = 0; i < userIds.size(); i++) {
+            sql.append(i == 0 ? "(CAST(? AS BIGINT), CAST(? AS TIMESTAMP))" : ", (?, ?)");
+            args[i * 2] = userIds.get(i);
+            args[i * 2 + 1] = new Timestamp(timestamps.get(i));
+        }
+        sql.append(") AS v(id, ts) WHERE u.id = v.id AND (u.last_seen_at IS NULL OR u.last_seen_at < v.ts)");
+
+        try {
+            jdbcTemplate.update(sql.toString(), args);
+            writtenCounter.increment(userIds.size());
+        } catch (Exception e) {
+            logger.warn("Failed to write last_seen_at for {} users, will retry: {}", userIds.size(), e.getMessage());
+            for (int i = 0; i < userIds.size(); i++) {
+                latest.merge(userIds.get(i), timestamps.get(i), Math::max);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+}
@@ -0,0 +1,393 @@
+package com.example.signalserver.service.user;
+
+import com.example.signalserver.util.ConcurrentBitmap;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timeout;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Онлайн-статус пользователей в памяти узла.
+ *
+ * Источник - сокеты сигналинга: подключение, активность (ping/pong Engine.IO) и
+ * отключение. Активность только обновляет время последнего сигнала; истечение
+ * отслеживает таймер HashedWheelTimer, который при срабатывании переносит таймаут,
+ * если сигнал был, иначе снимает пользователя с онлайна. Текущее состояние узла
+ * хранится в битовой карте по id, а в БД попадают только переходы online/offline -
+ * пакетами раз в flush-interval; last_seen_at пишет LastSeenBuffer. Поток сигналов
+ * активности до Postgres не доходит.
+ *
+ * Пользователь может быть подключён к нескольким узлам, поэтому узел пишет не
+ * users.online, а свою строку в user_presence (см. db/user-presence.sql), и
+ * users.online пересчитывается по всем узлам под блокировкой строки пользователя.
+ * Узлы отмечаются в presence_nodes; строки узла, переставшего отмечаться, снимает
+ * любой живой узел.
+ */
+@Component
+public class PresenceService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PresenceService.class);
+
+    private static final String LOCK_USERS_SQL =
+            "SELECT id FROM users WHERE id = ANY(?) ORDER BY id FOR UPDATE";
+    private static final String INSERT_PRESENCE_SQL =
+            "INSERT INTO user_presence (user_id, node_id) VALUES (?, ?) ON CONFLICT DO NOTHING";
+    private static final String DELETE_PRESENCE_SQL =
+            "DELETE FROM user_presence WHERE user_id = ? AND node_id = ?";
+    private static final String RECOMPUTE_SQL =
+            "UPDATE users u SET online = EXISTS (SELECT 1 FROM user_presence p WHERE p.user_id = u.id) " +
+                    "WHERE u.id = ANY(?)";
+    private static final String NODE_HEARTBEAT_SQL =
+            "INSERT INTO presence_nodes (node_id, heartbeat_at) VALUES (?, now()) " +
+                    "ON CONFLICT (node_id) DO UPDATE SET heartbeat_at = now()";
+    private static final String DELETE_DEAD_NODES_SQL =
+            "DELETE FROM presence_nodes WHERE heartbeat_at < now() - ? * INTERVAL '1 millisecond' RETURNING node_id";
+    private static final String DELETE_NODE_PRESENCE_SQL =
+            "DELETE FROM user_presence WHERE node_id = ANY(?) RETURNING user_id";
+
+    @Value("${app.presence.heartbeat-timeout-ms:45000}")
+    private long heartbeatTimeoutMs;
+
+    @Value("${app.presence.tick-ms:1000}")
+    private long tickMs;
+
+    @Value("${app.presence.batch-size:500}")
+    private int batchSize;
+
+    // Узел, не отмечавшийся дольше этого, считается остановленным
+    @Value("${app.presence.node-timeout-ms:60000}")
+    private long nodeTimeoutMs;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private UserCache userCache;
+
+    @Autowired
+    private LastSeenBuffer lastSeenBuffer;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private final ConcurrentBitmap online = new ConcurrentBitmap();
+
+    // userId -> подключения пользователя на этом узле
+    private final Map<Long, Presence> sessions = new ConcurrentHashMap<>();
+
+    // Переходы, ещё не записанные в БД; для пользователя хранится только последний
+    private final Map<Long, Boolean> pending = new ConcurrentHashMap<>();
+
+    private HashedWheelTimer timer;
+
+    private Counter expiredCounter;
+    private Timer flushTimer;
+
+    @PostConstruct
+    public void init() {
+        nodeHeartbeat();
+        timer = new HashedWheelTimer(new DefaultThreadFactory("presence-wheel", true),
+                tickMs, TimeUnit.MILLISECONDS, 512);
+
+        Gauge.builder("presence.online", online, ConcurrentBitmap::cardinality)
+                .description("Users online on this node")
+                .register(meterRegistry);
+        Gauge.builder("presence.pending", pending, Map::size)
+                .description("Presence changes waiting to be written")
+                .register(meterRegistry);
+        expiredCounter = Counter.builder("presence.expired").register(meterRegistry);
+        flushTimer = Timer.builder("presence.flush").register(meterRegistry);
+    }
+
+    /**
+     * Новое подключение пользователя к узлу
+     */
+    public void connected(long userId) {
+        Presence presence = sessions.compute(userId, (id, current) -> {
+            Presence p = current != null ? current : new Presence(id);
+            p.connections++;
+            return p;
+        });
+        beat(presence);
+    }
+
+    /**
+     * Сигнал активности сокета (ping/pong Engine.IO, heartbeat): volatile-запись
+     * и обновление буфера last_seen_at, без таймеров и БД
+     */
+    public void heartbeat(long userId) {
+        Presence presence = sessions.get(userId);
+        if (presence != null) {
+            beat(presence);
+            lastSeenBuffer.touch(userId);
+        }
+    }
+
+    /**
+     * Закрытие подключения; последнее подключение снимает пользователя с онлайна
+     */
+    public void disconnected(long userId) {
+        sessions.computeIfPresent(userId, (id, p) -> {
+            if (--p.connections > 0) {
+                return p;
+            }
+            synchronized (p) {
+                if (p.timeout != null) {
+                    p.timeout.cancel();
+                    p.timeout = null;
+                }
+                goOffline(id, System.currentTimeMillis());
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Принудительная смена статуса без сокета (выход из аккаунта, администрирование)
+     */
+    public void setOnline(long userId, boolean value) {
+        long now = System.currentTimeMillis();
+        if (value) {
+            if (online.set(userId)) {
+                markChanged(userId, true, now);
+            }
+        } else {
+            goOffline(userId, now);
+        }
+    }
+
+    public boolean isOnline(long userId) {
+        return online.get(userId);
+    }
+
+    public long getOnlineCount() {
+        return online.cardinality();
+    }
+
+    private void beat(Presence presence) {
+        long now = System.currentTimeMillis();
+        presence.lastBeat = now;
+        if (presence.timeout != null && online.get(presence.userId)) {
+            return;
+        }
+
+        synchronized (presence) {
+            if (online.set(presence.userId)) {
+                markChanged(presence.userId, true, now);
+            }
+            if (presence.timeout == null) {
+                presence.timeout = timer.newTimeout(t -> expire(presence), heartbeatTimeoutMs, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * Срабатывание таймера на потоке колеса: без heartbeat'а за таймаут
+     * пользователь снимается с онлайна, иначе таймаут переносится на остаток
+     */
+    private void expire(Presence presence) {
+        synchronized (presence) {
+            if (presence.timeout == null) {
+                return;
+            }
+
+            long lastBeat = presence.lastBeat;
+            long idle = System.currentTimeMillis() - lastBeat;
+            if (idle < heartbeatTimeoutMs) {
+                presence.timeout = timer.newTimeout(t -> expire(presence),
+                        heartbeatTimeoutMs - idle, TimeUnit.MILLISECONDS);
+                return;
+            }
+
+            // Подключение остаётся в sessions: следующий heartbeat вернёт пользователя в онлайн
+            presence.timeout = null;
+            if (goOffline(presence.userId, lastBeat)) {
+                expiredCounter.increment();
+            }
+        }
+    }
+
+    private boolean goOffline(long userId, long lastSeen) {
+        if (online.clear(userId)) {
+            markChanged(userId, false, lastSeen);
+            return true;
+        }
+        return false;
+    }
+
+    private void markChanged(long userId, boolean isOnline, long at) {
+        pending.put(userId, isOnline);
+        lastSeenBuffer.touch(userId, at);
+    }
+
+    /**
+     * Запись накопленных переходов пакетами UPDATE и сброс профилей в кэше
+     */
+    @Scheduled(fixedDelayString = "${app.presence.flush-interval-ms:5000}")
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        List<Long> userIds = new ArrayList<>(batchSize);
+        List<Boolean> changes = new ArrayList<>(batchSize);
+
+        for (Long userId : pending.keySet()) {
+            Boolean change = pending.remove(userId);
+            if (change == null) {
+                continue;
+            }
+            userIds.add(userId);
+            changes.add(change);
+
+            if (userIds.size() >= batchSize) {
+                write(userIds, changes);
+                userIds.clear();
+                changes.clear();
+            }
+        }
+        if (!userIds.isEmpty()) {
+            write(userIds, changes);
+        }
+
+        flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    private void write(List<Long> userIds, List<Boolean> changes) {
+        List<Long> joined = new ArrayList<>();
+        List<Long> left = new ArrayList<>();
+        for (int i = 0; i < userIds.size(); i++) {
+            (changes.get(i) ? joined : left).add(userIds.get(i));
+        }
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                Long[] ids = userIds.toArray(new Long[0]);
+                // Строки пользователей блокируются в порядке id: переходы одного пользователя
+                // на разных узлах выполняются по очереди, и пересчёт видит изменения всех узлов
+                jdbcTemplate.queryForList(LOCK_USERS_SQL, Long.class, (Object) ids);
+                updatePresence(INSERT_PRESENCE_SQL, joined);
+                updatePresence(DELETE_PRESENCE_SQL, left);
+                jdbcTemplate.update(RECOMPUTE_SQL, (Object) ids);
+            });
+            userCache.invalidateProfiles(userIds);
+        } catch (Exception e) {
+            logger.warn("Failed to write {} presence changes, will retry: {}", userIds.size(), e.getMessage());
+            // Более новый переход, пришедший во время записи, не затирается
+            for (int i = 0; i < userIds.size(); i++) {
+                pending.putIfAbsent(userIds.get(i), changes.get(i));
+            }
+        }
+    }
+
+    private void updatePresence(String sql, List<Long> userIds) {
+        if (userIds.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(sql, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                ps.setLong(1, userIds.get(i));
+                ps.setString(2, nodeId);
+            }
+
+            @Override
+            public int getBatchSize() {
+                return userIds.size();
+            }
+        });
+    }
+
+    /**
+     * Отметка узла и снятие строк узлов, переставших отмечаться (остановлены аварийно)
+     */
+    @Scheduled(initialDelayString = "${app.presence.node-heartbeat-ms:15000}",
+            fixedDelayString = "${app.presence.node-heartbeat-ms:15000}")
+    public void nodeHeartbeat() {
+        try {
+            jdbcTemplate.update(NODE_HEARTBEAT_SQL, nodeId);
+
+            List<Long> orphaned = transactionTemplate.execute(status -> {
+                List<String> deadNodes = jdbcTemplate.queryForList(DELETE_DEAD_NODES_SQL, String.class, nodeTimeoutMs);
+                if (deadNodes.isEmpty()) {
+                    return List.of();
+                }
+                List<Long> userIds = jdbcTemplate.queryForList(DELETE_NODE_PRESENCE_SQL, Long.class,
+                        (Object) deadNodes.toArray(new String[0]));
+                if (!userIds.isEmpty()) {
+                    Long[] ids = userIds.stream().distinct().toArray(Long[]::new);
+                    jdbcTemplate.queryForList(LOCK_USERS_SQL, Long.class, (Object) ids);
+                    jdbcTemplate.update(RECOMPUTE_SQL, (Object) ids);
+                }
+                logger.info("Removed presence of {} stopped nodes ({} connections)", deadNodes.size(), userIds.size());
+                return userIds;
+            });
+            if (orphaned != null && !orphaned.isEmpty()) {
+                userCache.invalidateProfiles(orphaned.stream().distinct().toList());
+            }
+        } catch (Exception e) {
+            logger.warn("Failed to refresh presence node {}: {}", nodeId, e.getMessage());
+        }
+    }
+
+    /**
+     * Пользователи этого узла уходят в offline одной записью при остановке
+     */
+    @PreDestroy
+    public void shutdown() {
+        timer.stop();
+        long now = System.currentTimeMillis();
+        for (Long userId : sessions.keySet()) {
+            goOffline(userId, now);
+        }
+        sessions.clear();
+        flush();
+        try {
+            jdbcTemplate.update("DELETE FROM presence_nodes WHERE node_id = ?", nodeId);
+        } catch (Exception e) {
+            logger.warn("Failed to remove presence node {}: {}", nodeId, e.getMessage());
+        }
+    }
+
+    private static final class Presence {
+        private final long userId;
+        // Изменяется только внутри sessions.compute*
+        private int connections;
+        private volatile long lastBeat;
+        // Изменяется под монитором Presence
+        private volatile Timeout timeout;
+
+        private Presence(long userId) {
+            this.userId = userId;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.signalserver.service.user;
+
+import com.example.signalserver.model.entity.User;
+import com.example.signalserver.model.enums.UserStatus;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Проекция пользователя для аутентификации, хранится в кэше вместо сущности
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserAuthView {
+
+    private Long id;
+    private String username;
+    private String email;
+    private String password;
+    private UserStatus status;
+    private boolean emailVerified;
+
+    public static UserAuthView fromUser(User user) {
+        return new UserAuthView(user.getId(), user.getUsername(), user.getEmail(),
+                user.getPassword(), user.getStatus(), user.isEmailVerified());
+    }
+
+    /**
+     * Отсоединённая сущность только с полями проекции
+     */
+    public User toUser() {
+        User user = new User(username, email, password);
+        user.setId(id);
+        user.setStatus(status);
+        user.setEmailVerified(emailVerified);
+        return user;
+    }
+}
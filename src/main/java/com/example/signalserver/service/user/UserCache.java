@@ -0,0 +1,296 @@
+package com.example.signalserver.service.user;
+
+import com.example.signalserver.dto.response.UserProfile;
+import com.example.signalserver.util.NearCache;
+import com.example.signalserver.util.VersionedCborRedisSerializer;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.StringJoiner;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+/**
+ * Двухуровневый кэш пользователей: ограниченный near-кэш в памяти узла, за ним Redis.
+ *
+ * Хранит проекции, а не JPA-сущности: профиль (по id) и данные для аутентификации
+ * (по username), в Redis - в формате VersionedCborRedisSerializer. Любая запись пользователя вызывает invalidate(): ключи Redis удаляются,
+ * остальные узлы сбрасывают near-кэш по сообщению в users:cache. Внутри транзакции
+ * сброс повторяется после коммита.
+ *
+ * У каждого ключа есть счётчик версий (user:ver:...), который сброс увеличивает. Читатель
+ * запоминает версию до загрузки из БД и записывает результат в Redis скриптом только при
+ * неизменной версии: загрузка, начатая до сброса, не оставит в Redis старые данные.
+ */
+@Component
+public class UserCache implements MessageListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserCache.class);
+
+    private static final String CHANNEL = "users:cache";
+    private static final String PROFILE_KEY_PREFIX = "user:profile:";
+    private static final String AUTH_KEY_PREFIX = "user:auth:";
+    private static final String VERSION_KEY_PREFIX = "user:ver:";
+
+    // KEYS[1] - значение, KEYS[2] - версия; ARGV[1] - данные, ARGV[2] - версия до загрузки, ARGV[3] - TTL
+    private static final RedisScript<Long> WRITE_IF_VERSION_SCRIPT = new DefaultRedisScript<>(
+            "local current = redis.call('GET', KEYS[2]) or '0' " +
+                    "if current == ARGV[2] then " +
+                    "  redis.call('SET', KEYS[1], ARGV[1], 'EX', ARGV[3]) " +
+                    "  return 1 " +
+                    "end " +
+                    "return 0",
+            Long.class);
+
+    @Value("${app.user-cache.near.max-size:10000}")
+    private int nearMaxSize;
+
+    @Value("${app.user-cache.near.ttl-ms:30000}")
+    private long nearTtlMs;
+
+    @Value("${app.user-cache.redis.ttl-seconds:600}")
+    private long redisTtlSeconds;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private RedisMessageListenerContainer listenerContainer;
+
+    @Autowired
+    private RedisTemplate<String, byte[]> binaryRedisTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private Region<Long, UserProfile> profiles;
+    private Region<String, UserAuthView> auth;
+
+    @PostConstruct
+    public void init() {
+        profiles = new Region<>("profile", PROFILE_KEY_PREFIX, UserProfile.class);
+        auth = new Region<>("auth", AUTH_KEY_PREFIX, UserAuthView.class);
+        listenerContainer.addMessageListener(this, new ChannelTopic(CHANNEL));
+    }
+
+    public UserProfile getProfile(long userId, Supplier<UserProfile> loader) {
+        return profiles.get(userId, loader);
+    }
+
+    public UserAuthView getAuth(String username, Supplier<UserAuthView> loader) {
+        return auth.get(username, loader);
+    }
+
+    /**
+     * Сброс всех проекций пользователя на всех узлах
+     */
+    public void invalidate(Long userId, String username) {
+        evict(userId, username);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evict(userId, username);
+                }
+            });
+        }
+    }
+
+    /**
+     * Сброс профилей пачкой: одно удаление в Redis и одно сообщение на всех
+     */
+    public void invalidateProfiles(Collection<Long> userIds) {
+        if (userIds.isEmpty()) {
+            return;
+        }
+
+        List<String> keys = new ArrayList<>(userIds.size());
+        StringJoiner ids = new StringJoiner(",");
+        for (Long userId : userIds) {
+            profiles.near.invalidate(userId);
+            keys.add(PROFILE_KEY_PREFIX + userId);
+            ids.add(userId.toString());
+        }
+
+        try {
+            deleteAndBumpVersions(keys);
+            stringRedisTemplate.convertAndSend(CHANNEL, nodeId + "|" + ids + "|");
+        } catch (Exception e) {
+            logger.warn("Failed to invalidate {} cached profiles: {}", userIds.size(), e.getMessage());
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        String[] parts = body.split("\\|", 3);
+        if (parts.length != 3 || nodeId.equals(parts[0])) {
+            return;
+        }
+
+        if (!parts[1].isEmpty()) {
+            for (String userId : parts[1].split(",")) {
+                profiles.near.invalidate(Long.parseLong(userId));
+            }
+        }
+        if (!parts[2].isEmpty()) {
+            auth.near.invalidate(parts[2]);
+        }
+    }
+
+    private void evict(Long userId, String username) {
+        if (userId != null) {
+            profiles.near.invalidate(userId);
+        }
+        if (username != null) {
+            auth.near.invalidate(username);
+        }
+
+        List<String> keys = new ArrayList<>(2);
+        if (userId != null) {
+            keys.add(PROFILE_KEY_PREFIX + userId);
+        }
+        if (username != null) {
+            keys.add(AUTH_KEY_PREFIX + username);
+        }
+
+        try {
+            deleteAndBumpVersions(keys);
+            stringRedisTemplate.convertAndSend(CHANNEL, nodeId + "|"
+                    + (userId != null ? userId : "") + "|" + (username != null ? username : ""));
+        } catch (Exception e) {
+            logger.warn("Failed to invalidate cached user {}: {}", userId != null ? userId : username, e.getMessage());
+        }
+    }
+
+    /**
+     * Удаление значений и увеличение их версий одним конвейером. Версия живёт дольше
+     * значения, чтобы пережить любую загрузку, начатую до сброса
+     */
+    private void deleteAndBumpVersions(List<String> keys) {
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection redis = (StringRedisConnection) connection;
+            for (String key : keys) {
+                redis.del(key);
+                redis.incr(VERSION_KEY_PREFIX + key);
+                redis.expire(VERSION_KEY_PREFIX + key, redisTtlSeconds * 2);
+            }
+            return null;
+        });
+    }
+
+    private final class Region<K, V> {
+        final NearCache<K, V> near;
+        final String keyPrefix;
+        final VersionedCborRedisSerializer<V> serializer;
+
+        final Counter nearHits;
+        final Counter redisHits;
+        final Counter misses;
+        final Timer loadTimer;
+
+        Region(String name, String keyPrefix, Class<V> type) {
+            this.near = new NearCache<>(nearMaxSize, nearTtlMs);
+            this.keyPrefix = keyPrefix;
+            this.serializer = new VersionedCborRedisSerializer<>(type);
+
+            nearHits = Counter.builder("user.cache.requests")
+                    .tag("region", name).tag("result", "near_hit").register(meterRegistry);
+            redisHits = Counter.builder("user.cache.requests")
+                    .tag("region", name).tag("result", "redis_hit").register(meterRegistry);
+            misses = Counter.builder("user.cache.requests")
+                    .tag("region", name).tag("result", "miss").register(meterRegistry);
+            loadTimer = Timer.builder("user.cache.load")
+                    .tag("region", name)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry);
+        }
+
+        V get(K key, Supplier<V> loader) {
+            V value = near.get(key);
+            if (value != null) {
+                nearHits.increment();
+                return value;
+            }
+
+            value = readRedis(key).orElse(null);
+            if (value != null) {
+                redisHits.increment();
+                near.put(key, value);
+                return value;
+            }
+
+            misses.increment();
+            String version = readVersion(key);
+            value = loadTimer.record(loader);
+            // Если за время загрузки ключ сбросили, значение могло устареть: не кэшируем его
+            if (value != null && version != null && writeRedis(key, value, version)) {
+                near.put(key, value);
+            }
+            return value;
+        }
+
+        /**
+         * Текущая версия ключа; null - Redis недоступен, кэшировать нельзя
+         */
+        private String readVersion(K key) {
+            try {
+                String version = stringRedisTemplate.opsForValue().get(VERSION_KEY_PREFIX + keyPrefix + key);
+                return version != null ? version : "0";
+            } catch (Exception e) {
+                logger.warn("Failed to read cache version {}{}: {}", keyPrefix, key, e.getMessage());
+                return null;
+            }
+        }
+
+        private Optional<V> readRedis(K key) {
+            try {
+                return Optional.ofNullable(serializer.deserialize(binaryRedisTemplate.opsForValue().get(keyPrefix + key)));
+            } catch (Exception e) {
+                logger.warn("Failed to read cached user {}{}: {}", keyPrefix, key, e.getMessage());
+                return Optional.empty();
+            }
+        }
+
+        private boolean writeRedis(K key, V value, String version) {
+            try {
+                Long written = binaryRedisTemplate.execute(WRITE_IF_VERSION_SCRIPT,
+                        List.of(keyPrefix + key, VERSION_KEY_PREFIX + keyPrefix + key),
+                        serializer.serialize(value),
+                        version.getBytes(StandardCharsets.UTF_8),
+                        Long.toString(redisTtlSeconds).getBytes(StandardCharsets.UTF_8));
+                return written != null && written == 1L;
+            } catch (Exception e) {
+                logger.warn("Failed to write cached user {}{}: {}", keyPrefix, key, e.getMessage());
+                return false;
+            }
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.example.signalserver.service.user;
+
+import com.example.signalserver.util.CountingBloomFilter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.util.UUID;
+
+/**
+ * Фильтр существующих username и email для проверок доступности.
+ *
+ * Отрицательный ответ фильтра точен, и запрос в БД не выполняется; положительный
+ * (возможно ложный) проверяется по Postgres. Фильтр строится при старте потоковым
+ * чтением таблицы users, обновляется при регистрации, а другие узлы получают
+ * изменения через Redis pub/sub. Периодическая перестройка восстанавливает
+ * изменения, потерянные pub/sub.
+ *
+ * Удаления пользователей в приложении нет, и фильтр их не отслеживает: запись,
+ * удалённая из users вручную, даёт лишь ложноположительный ответ (проверку по БД)
+ * и исчезает при следующей перестройке.
+ */
+@Component
+public class UserExistenceFilter implements MessageListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserExistenceFilter.class);
+
+    private static final String CHANNEL = "users:registry";
+    private static final String TYPE_ADDED = "A";
+
+    @Value("${app.user-filter.expected-users:1000000}")
+    private int expectedUsers;
+
+    @Value("${app.user-filter.fetch-size:5000}")
+    private int fetchSize;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private RedisMessageListenerContainer listenerContainer;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // Свои сообщения из канала пропускаются, иначе счётчики удвоятся
+    private final String nodeId = UUID.randomUUID().toString();
+
+    // null, пока фильтр не построен: все проверки идут в БД
+    private volatile Filters filters;
+    private volatile Filters building;
+
+    private Counter skippedCounter;
+    private Counter fallthroughCounter;
+
+    @PostConstruct
+    public void init() {
+        skippedCounter = Counter.builder("users.exists.check").tag("source", "filter").register(meterRegistry);
+        fallthroughCounter = Counter.builder("users.exists.check").tag("source", "database").register(meterRegistry);
+
+        listenerContainer.addMessageListener(this, new ChannelTopic(CHANNEL));
+        rebuild();
+    }
+
+    public boolean mightContainUsername(String username) {
+        Filters current = filters;
+        return record(current == null || current.usernames.mightContain(username));
+    }
+
+    public boolean mightContainEmail(String email) {
+        Filters current = filters;
+        return record(current == null || current.emails.mightContain(email));
+    }
+
+    public void onUserCreated(String username, String email) {
+        applyAdded(username, email);
+        publish(TYPE_ADDED, username, email);
+    }
+
+    /**
+     * Полная перестройка потоковым чтением users (курсор Postgres работает только вне автокоммита)
+     */
+    @Scheduled(initialDelayString = "${app.user-filter.rebuild-interval-ms:21600000}",
+            fixedDelayString = "${app.user-filter.rebuild-interval-ms:21600000}")
+    public void rebuild() {
+        long startedAt = System.currentTimeMillis();
+        try {
+            Long total = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM users", Long.class);
+            int capacity = (int) Math.min(Integer.MAX_VALUE / 2, Math.max(expectedUsers, (total != null ? total : 0) * 2));
+
+            Filters next = new Filters(capacity);
+            building = next;
+
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.query(connection -> {
+                PreparedStatement statement = connection.prepareStatement("SELECT username, email FROM users");
+                statement.setFetchSize(fetchSize);
+                return statement;
+            }, row -> {
+                next.usernames.add(row.getString(1));
+                next.emails.add(row.getString(2));
+            }));
+
+            filters = next;
+            building = null;
+
+            logger.info("User existence filter built: {} users in {} ms",
+                    total, System.currentTimeMillis() - startedAt);
+        } catch (Exception e) {
+            building = null;
+            logger.error("Failed to build user existence filter", e);
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        String[] parts = body.split("\\|", 4);
+        if (parts.length != 4) {
+            logger.warn("Malformed user registry message: {}", body);
+            return;
+        }
+
+        if (nodeId.equals(parts[1])) {
+            return;
+        }
+        if (TYPE_ADDED.equals(parts[0])) {
+            applyAdded(parts[2], parts[3]);
+        }
+    }
+
+    private void applyAdded(String username, String email) {
+        // Во время перестройки добавление попадает и в новый фильтр
+        for (Filters target : new Filters[]{filters, building}) {
+            if (target != null) {
+                target.usernames.add(username);
+                target.emails.add(email);
+            }
+        }
+    }
+
+    private void publish(String type, String username, String email) {
+        try {
+            stringRedisTemplate.convertAndSend(CHANNEL, type + "|" + nodeId + "|" + username + "|" + email);
+        } catch (Exception e) {
+            logger.warn("Failed to publish user registry change: {}", e.getMessage());
+        }
+    }
+
+    private boolean record(boolean mightContain) {
+        (mightContain ? fallthroughCounter : skippedCounter).increment();
+        return mightContain;
+    }
+
+    private static final class Filters {
+        final CountingBloomFilter usernames;
+        final CountingBloomFilter emails;
+
+        Filters(int capacity) {
+            usernames = new CountingBloomFilter(capacity, 0.01);
+            emails = new CountingBloomFilter(capacity, 0.01);
+        }
+    }
+}
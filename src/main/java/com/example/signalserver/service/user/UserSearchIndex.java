@@ -0,0 +1,196 @@
+package com.example.signalserver.service.user;
+
+import com.example.signalserver.model.entity.User;
+import com.example.signalserver.model.enums.UserStatus;
+import com.example.signalserver.repository.user.UserRepository;
+import com.example.signalserver.util.TrigramIndex;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Поиск пользователей по username, имени, фамилии и email через триграммный индекс
+ * в памяти вместо LIKE '%...%' по всей таблице. В индексе только пользователи,
+ * не удалённые и не заблокированные. Изменения с других узлов приходят через Redis pub/sub;
+ * пропущенные сообщения исправляет периодическая полная перестройка. Запросы короче
+ * TrigramIndex.MIN_QUERY_LENGTH дают пустой результат.
+ */
+@Component
+public class UserSearchIndex implements MessageListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserSearchIndex.class);
+
+    private static final String CHANNEL = "users:search";
+
+    @Value("${app.user-search.fetch-size:5000}")
+    private int fetchSize;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private RedisMessageListenerContainer listenerContainer;
+
+    private final String nodeId = UUID.randomUUID().toString();
+    private volatile TrigramIndex index = new TrigramIndex();
+
+    // Индекс, который строится сейчас, и пользователи, изменённые за время перестройки:
+    // их строки из снимка БД могут быть старее уже применённого изменения
+    private volatile TrigramIndex building;
+    private final Set<Long> changedDuringBuild = ConcurrentHashMap.newKeySet();
+
+    @PostConstruct
+    public void init() {
+        listenerContainer.addMessageListener(this, new ChannelTopic(CHANNEL));
+        rebuild();
+    }
+
+    /**
+     * Полная перестройка потоковым чтением users; до её окончания поиск идёт по прежнему индексу
+     */
+    @Scheduled(initialDelayString = "${app.user-search.rebuild-interval-ms:21600000}",
+            fixedDelayString = "${app.user-search.rebuild-interval-ms:21600000}")
+    public void rebuild() {
+        long startedAt = System.currentTimeMillis();
+        TrigramIndex next = new TrigramIndex();
+        changedDuringBuild.clear();
+        building = next;
+        try {
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.query(connection -> {
+                PreparedStatement statement = connection.prepareStatement(
+                        "SELECT id, username, first_name, last_name, email FROM users " +
+                                "WHERE status NOT IN ('DELETED', 'BANNED')");
+                statement.setFetchSize(fetchSize);
+                return statement;
+            }, row -> {
+                long id = row.getLong(1);
+                if (!changedDuringBuild.contains(id)) {
+                    next.upsert(id, row.getString(2), row.getString(3), row.getString(4), row.getString(5));
+                }
+            }));
+
+            index = next;
+            logger.info("User search index built: {} users in {} ms",
+                    next.size(), System.currentTimeMillis() - startedAt);
+        } catch (Exception e) {
+            logger.error("Failed to build user search index", e);
+        } finally {
+            building = null;
+            changedDuringBuild.clear();
+        }
+    }
+
+    /**
+     * Ранжированный поиск: совпадения в username выше, чем в имени, в имени выше, чем в email
+     */
+    public Page<User> search(String query, Pageable pageable) {
+        TrigramIndex.SearchResult result = index.search(query, (int) pageable.getOffset(), pageable.getPageSize());
+        if (result.keys().length == 0) {
+            return new PageImpl<>(List.of(), pageable, result.total());
+        }
+
+        List<Long> ids = new ArrayList<>(result.keys().length);
+        for (long id : result.keys()) {
+            ids.add(id);
+        }
+
+        Map<Long, User> byId = new HashMap<>();
+        for (User user : userRepository.findByIdIn(ids)) {
+            byId.put(user.getId(), user);
+        }
+
+        List<User> ordered = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            User user = byId.get(id);
+            if (user != null) {
+                ordered.add(user);
+            }
+        }
+        return new PageImpl<>(ordered, pageable, result.total());
+    }
+
+    /**
+     * Вызывается после создания или изменения пользователя
+     */
+    public void onUserChanged(User user) {
+        apply(user);
+        try {
+            stringRedisTemplate.convertAndSend(CHANNEL, nodeId + "|" + user.getId());
+        } catch (Exception e) {
+            logger.warn("Failed to publish user search update: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        String[] parts = body.split("\\|", 2);
+        if (parts.length != 2 || nodeId.equals(parts[0])) {
+            return;
+        }
+
+        try {
+            long userId = Long.parseLong(parts[1]);
+            userRepository.findById(userId).ifPresentOrElse(this::apply, () -> removeFromIndex(userId));
+        } catch (NumberFormatException e) {
+            logger.warn("Malformed user search message: {}", body);
+        }
+    }
+
+    private void apply(User user) {
+        if (user.getStatus() == UserStatus.DELETED || user.getStatus() == UserStatus.BANNED) {
+            removeFromIndex(user.getId());
+            return;
+        }
+
+        // Во время перестройки изменение попадает и в новый индекс
+        TrigramIndex next = building;
+        if (next != null) {
+            changedDuringBuild.add(user.getId());
+            next.upsert(user.getId(), user.getUsername(), user.getFirstName(), user.getLastName(), user.getEmail());
+        }
+        index.upsert(user.getId(), user.getUsername(), user.getFirstName(), user.getLastName(), user.getEmail());
+    }
+
+    private void removeFromIndex(long userId) {
+        TrigramIndex next = building;
+        if (next != null) {
+            changedDuringBuild.add(userId);
+            next.remove(userId);
+        }
+        index.remove(userId);
+    }
+}
@@ -7,14 +7,14 @@ import com.example.signalserver.exception.user.UserNotFoundException;
 import com.example.signalserver.model.entity.User;
 import com.example.signalserver.model.enums.UserStatus;
 import com.example.signalserver.repository.user.UserRepository;
+import com.example.signalserver.security.TokenRevocationService;
+import com.example.signalserver.service.auth.PasswordHashingService;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.redis.core.RedisTemplate;
-import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.time.Duration;
-import java.time.LocalDateTime;
 
 @Service
 @Transactional
@@ -24,33 +24,47 @@ public class UserService {
     private UserRepository userRepository;
 
     @Autowired
-    private PasswordEncoder passwordEncoder;
+    private PasswordHashingService passwordHashingService;
 
     @Autowired
-    private RedisTemplate<String, Object> redisTemplate;
+    private PresenceService presenceService;
 
-    private static final String USER_CACHE_PREFIX = "user:";
-    private static final String ONLINE_USERS_KEY = "online_users";
+    @Autowired
+    private LastSeenBuffer lastSeenBuffer;
+
+    @Autowired
+    private TokenRevocationService revocationService;
+
+    @Autowired
+    private UserExistenceFilter userExistenceFilter;
+
+    @Autowired
+    private UserSearchIndex userSearchIndex;
+
+    @Autowired
+    private UserCache userCache;
 
     public User createUser(RegisterRequest request) {
-        if (userRepository.existsByUsername(request.getUsername())) {
+        if (existsByUsername(request.getUsername())) {
             throw new UserAlreadyExistsException("Username already exists");
         }
 
-        if (userRepository.existsByEmail(request.getEmail())) {
+        if (existsByEmail(request.getEmail())) {
             throw new UserAlreadyExistsException("Email already exists");
         }
 
         User user = new User();
         user.setUsername(request.getUsername());
         user.setEmail(request.getEmail());
-        user.setPassword(passwordEncoder.encode(request.getPassword()));
+        user.setPassword(passwordHashingService.encode(
+                PasswordHashingService.Category.REGISTER, request.getPassword()));
         user.setFirstName(request.getFirstName());
         user.setLastName(request.getLastName());
         user.setStatus(UserStatus.OFFLINE);
 
         user = userRepository.save(user);
-
+        userExistenceFilter.onUserCreated(user.getUsername(), user.getEmail());
+        userSearchIndex.onUserChanged(user);
 
         return user;
     }
@@ -60,62 +74,49 @@ public class UserService {
                 .orElseThrow(() -> new UserNotFoundException("User not found"));
     }
 
+    /**
+     * Поиск пользователей по подстроке в username, имени, фамилии или email
+     */
+    @Transactional(readOnly = true)
+    public Page<User> searchUsers(String query, Pageable pageable) {
+        return userSearchIndex.search(query, pageable);
+    }
+
+    /**
+     * Точно отрицательный ответ фильтра не требует запроса в БД
+     */
     public boolean existsByUsername(String username) {
-        return userRepository.existsByUsername(username);
+        return userExistenceFilter.mightContainUsername(username) && userRepository.existsByUsername(username);
     }
 
     public boolean existsByEmail(String email) {
-        return userRepository.existsByEmail(email);
+        return userExistenceFilter.mightContainEmail(email) && userRepository.existsByEmail(email);
     }
 
     /**
-     * Обновление онлайн статуса пользователя
+     * Обновление онлайн статуса пользователя. Запись в БД выполняет PresenceService пакетами
      */
     public void updateUserOnlineStatus(Long userId, boolean online) {
-        try {
-            LocalDateTime now = LocalDateTime.now();
-            // Используем оптимизированный запрос из репозитория
-            userRepository.updateUserOnlineStatus(userId, online, now);
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to update user online status", e);
-        }
+        presenceService.setOnline(userId, online);
     }
 
     public void setUserOnline(Long userId) {
-        User user = findById(userId);
-        user.setOnline(true);
-        user.setStatus(UserStatus.ONLINE);
-        user.setLastSeenAt(LocalDateTime.now());
-        userRepository.save(user);
-
-        redisTemplate.opsForSet().add(ONLINE_USERS_KEY, userId.toString());
-        cacheUser(user);
+        presenceService.setOnline(userId, true);
     }
 
     public void setUserOffline(Long userId) {
-        User user = findById(userId);
-        user.setOnline(false);
-        user.setStatus(UserStatus.OFFLINE);
-        user.setLastSeenAt(LocalDateTime.now());
-        userRepository.save(user);
-
-        redisTemplate.opsForSet().remove(ONLINE_USERS_KEY, userId.toString());
-        cacheUser(user);
+        presenceService.setOnline(userId, false);
     }
 
     public void banUser(Long userId) {
         User user = findById(userId);
         user.setStatus(UserStatus.OFFLINE);
         userRepository.save(user);
+        userSearchIndex.onUserChanged(user);
+        userCache.invalidate(user.getId(), user.getUsername());
 
-    }
+        revocationService.revokeAllForUser(user.getUsername());
 
-    private void cacheUser(User user) {
-        redisTemplate.opsForValue().set(
-                USER_CACHE_PREFIX + user.getId(),
-                user,
-                Duration.ofHours(1)
-        );
     }
 
     public int getTotalUsersCount() {
@@ -123,8 +124,10 @@ public class UserService {
     }
 
     public UserProfile getUserProfile(Long userId) {
-        User user = findById(userId);
+        return userCache.getProfile(userId, () -> toProfile(findById(userId)));
+    }
 
+    private UserProfile toProfile(User user) {
         UserProfile profile = new UserProfile();
         profile.setId(user.getId());
         profile.setUsername(user.getUsername());
@@ -139,9 +142,10 @@ public class UserService {
         return profile;
     }
 
-    public User updateLastActivity(String username) {
-        User user = userRepository.findByUsername(username).orElseThrow(() -> new UserNotFoundException("User not found"));
-        user.setLastSeenAt(LocalDateTime.now());
-        return user;
+    /**
+     * Отметка активности без загрузки сущности: время попадает в БД пакетом через LastSeenBuffer
+     */
+    public void updateLastActivity(Long userId) {
+        lastSeenBuffer.touch(userId);
     }
 }
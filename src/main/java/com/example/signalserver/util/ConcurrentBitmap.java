@@ -0,0 +1,124 @@
+package com.example.signalserver.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Потокобезопасный битовый набор по неотрицательным long-ключам (id пользователей).
+ * Память выделяется блоками по 65536 бит (8 КБ) только для занятых диапазонов id,
+ * поэтому миллион пользователей с плотными id занимает около 128 КБ.
+ */
+public class ConcurrentBitmap {
+
+    private static final int CHUNK_BITS = 16;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int WORDS_PER_CHUNK = CHUNK_SIZE >>> 6;
+    private static final int DIRECTORY_GROWTH = 64;
+
+    private volatile AtomicReferenceArray<AtomicLongArray> chunks = new AtomicReferenceArray<>(DIRECTORY_GROWTH);
+
+    /**
+     * @return true, если бит был сброшен и установлен этим вызовом
+     */
+    public boolean set(long key) {
+        AtomicLongArray chunk = chunk(key, true);
+        int index = (int) (key & (CHUNK_SIZE - 1));
+        long mask = 1L << (index & 63);
+
+        long current;
+        do {
+            current = chunk.get(index >>> 6);
+            if ((current & mask) != 0) {
+                return false;
+            }
+        } while (!chunk.compareAndSet(index >>> 6, current, current | mask));
+        return true;
+    }
+
+    /**
+     * @return true, если бит был установлен и сброшен этим вызовом
+     */
+    public boolean clear(long key) {
+        AtomicLongArray chunk = chunk(key, false);
+        if (chunk == null) {
+            return false;
+        }
+        int index = (int) (key & (CHUNK_SIZE - 1));
+        long mask = 1L << (index & 63);
+
+        long current;
+        do {
+            current = chunk.get(index >>> 6);
+            if ((current & mask) == 0) {
+                return false;
+            }
+        } while (!chunk.compareAndSet(index >>> 6, current, current & ~mask));
+        return true;
+    }
+
+    public boolean get(long key) {
+        AtomicLongArray chunk = chunk(key, false);
+        if (chunk == null) {
+            return false;
+        }
+        int index = (int) (key & (CHUNK_SIZE - 1));
+        return (chunk.get(index >>> 6) & (1L << (index & 63))) != 0;
+    }
+
+    /**
+     * Число установленных бит; при параллельных изменениях - приблизительное
+     */
+    public long cardinality() {
+        AtomicReferenceArray<AtomicLongArray> directory = chunks;
+        long count = 0;
+        for (int i = 0; i < directory.length(); i++) {
+            AtomicLongArray chunk = directory.get(i);
+            if (chunk == null) {
+                continue;
+            }
+            for (int w = 0; w < WORDS_PER_CHUNK; w++) {
+                count += Long.bitCount(chunk.get(w));
+            }
+        }
+        return count;
+    }
+
+    private AtomicLongArray chunk(long key, boolean create) {
+        if (key < 0 || (key >>> CHUNK_BITS) >= Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Key out of range: " + key);
+        }
+        int chunkIndex = (int) (key >>> CHUNK_BITS);
+
+        AtomicReferenceArray<AtomicLongArray> directory = chunks;
+        AtomicLongArray chunk = chunkIndex < directory.length() ? directory.get(chunkIndex) : null;
+        if (chunk == null && create) {
+            chunk = createChunk(chunkIndex);
+        }
+        return chunk;
+    }
+
+    /**
+     * Создание блока и расширение каталога - редкий путь под блокировкой.
+     * Блоки переносятся в новый каталог по ссылке, поэтому запись в блок
+     * через старый каталог не теряется
+     */
+    private synchronized AtomicLongArray createChunk(int chunkIndex) {
+        AtomicReferenceArray<AtomicLongArray> directory = chunks;
+        if (chunkIndex >= directory.length()) {
+            int length = Math.max(directory.length() * 2, chunkIndex + DIRECTORY_GROWTH);
+            AtomicReferenceArray<AtomicLongArray> grown = new AtomicReferenceArray<>(length);
+            for (int i = 0; i < directory.length(); i++) {
+                grown.set(i, directory.get(i));
+            }
+            chunks = grown;
+            directory = grown;
+        }
+
+        AtomicLongArray chunk = directory.get(chunkIndex);
+        if (chunk == null) {
+            chunk = new AtomicLongArray(WORDS_PER_CHUNK);
+            directory.set(chunkIndex, chunk);
+        }
+        return chunk;
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.signalserver.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Неизменяемое кольцо консистентного хеширования с виртуальными узлами.
+ *
+ * Узел с весом w получает w * vnodesPerWeight точек; точки узла зависят только
+ * от его id и номера, поэтому добавление узла или рост веса забирают ключи
+ * только у соседей новых точек, а удаление отдаёт соседям только ключи удалённого узла.
+ */
+public final class ConsistentHashRing {
+
+    private final long[] points;
+    private final String[] owners;
+    private final Map<String, Integer> weights;
+
+    private ConsistentHashRing(long[] points, String[] owners, Map<String, Integer> weights) {
+        this.points = points;
+        this.owners = owners;
+        this.weights = weights;
+    }
+
+    /**
+     * @param weights         id узла -> вес (не меньше 1)
+     * @param vnodesPerWeight число виртуальных узлов на единицу веса
+     */
+    public static ConsistentHashRing of(Map<String, Integer> weights, int vnodesPerWeight) {
+        List<Point> all = new ArrayList<>();
+        Map<String, Integer> normalized = new TreeMap<>();
+        for (Map.Entry<String, Integer> entry : weights.entrySet()) {
+            int weight = Math.max(1, entry.getValue());
+            normalized.put(entry.getKey(), weight);
+            for (int i = 0; i < weight * vnodesPerWeight; i++) {
+                all.add(new Point(Hashing.fnv1a64(entry.getKey() + "#" + i), entry.getKey()));
+            }
+        }
+        // Совпадения хешей разрешаются по id, чтобы кольцо было одинаковым на всех узлах
+        all.sort(Comparator.comparingLong(Point::hash).thenComparing(Point::node));
+
+        long[] points = new long[all.size()];
+        String[] owners = new String[all.size()];
+        for (int i = 0; i < all.size(); i++) {
+            points[i] = all.get(i).hash();
+            owners[i] = all.get(i).node();
+        }
+        return new ConsistentHashRing(points, owners, Collections.unmodifiableMap(normalized));
+    }
+
+    /**
+     * Узел-владелец ключа: первая точка по часовой стрелке от хеша ключа
+     */
+    public String ownerOf(String key) {
+        if (points.length == 0) {
+            return null;
+        }
+        int index = Arrays.binarySearch(points, Hashing.fnv1a64(key));
+        if (index < 0) {
+            index = -index - 1;
+        }
+        return owners[index == points.length ? 0 : index];
+    }
+
+    public Map<String, Integer> getWeights() {
+        return weights;
+    }
+
+    public boolean isEmpty() {
+        return points.length == 0;
+    }
+
+    private record Point(long hash, String node) {
+    }
+}
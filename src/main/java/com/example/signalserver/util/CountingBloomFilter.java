@@ -0,0 +1,74 @@
+package com.example.signalserver.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Потокобезопасный считающий фильтр Блума с 4-битными счётчиками (16 в одном long).
+ * В отличие от BloomFilter поддерживает удаление. Счётчик, дошедший до 15,
+ * больше не уменьшается, чтобы удаление не порождало ложноотрицательных ответов.
+ */
+public class CountingBloomFilter {
+
+    private static final long MAX_COUNT = 15;
+
+    private final AtomicLongArray counters;
+    private final int counterCount;
+    private final int hashCount;
+
+    public CountingBloomFilter(int expectedInsertions, double falsePositiveRate) {
+        int n = Math.max(1, expectedInsertions);
+        long m = (long) Math.ceil(-n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        this.counterCount = (int) Math.max(16, Math.min(Integer.MAX_VALUE - 15, m));
+        this.hashCount = Math.max(1, (int) Math.round((double) counterCount / n * Math.log(2)));
+        this.counters = new AtomicLongArray((counterCount + 15) >>> 4);
+    }
+
+    public void add(String key) {
+        update(key, 1);
+    }
+
+    public void remove(String key) {
+        update(key, -1);
+    }
+
+    public boolean mightContain(String key) {
+        long hash = Hashing.fnv1a64(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+
+        for (int i = 0; i < hashCount; i++) {
+            int slot = ((h1 + i * h2) & Integer.MAX_VALUE) % counterCount;
+            if (count(counters.get(slot >>> 4), slot) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void update(String key, int delta) {
+        long hash = Hashing.fnv1a64(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+
+        for (int i = 0; i < hashCount; i++) {
+            int slot = ((h1 + i * h2) & Integer.MAX_VALUE) % counterCount;
+            int index = slot >>> 4;
+            int shift = (slot & 15) << 2;
+
+            long current;
+            long next;
+            do {
+                current = counters.get(index);
+                long count = (current >>> shift) & MAX_COUNT;
+                if (count == MAX_COUNT || (delta < 0 && count == 0)) {
+                    break;
+                }
+                next = current + ((long) delta << shift);
+            } while (!counters.compareAndSet(index, current, next));
+        }
+    }
+
+    private static long count(long word, int slot) {
+        return (word >>> ((slot & 15) << 2)) & MAX_COUNT;
+    }
+}
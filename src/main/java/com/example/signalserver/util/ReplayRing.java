@@ -0,0 +1,150 @@
+package com.example.signalserver.util;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Кольцевой буфер последних исходящих сообщений фиксированного размера вне кучи.
+ *
+ * Каждое сообщение получает следующий номер (seq, начиная с 1) и хранится записью
+ * [seq:8][длина события:4][длина данных:4][событие][данные]. Если места не хватает,
+ * вытесняются самые старые записи; сообщение больше всего буфера не хранится,
+ * и повтор до него становится невозможным. Не потокобезопасен.
+ */
+public final class ReplayRing {
+
+    private static final int HEADER_SIZE = 16;
+
+    @FunctionalInterface
+    public interface Visitor {
+        void accept(long seq, String event, byte[] data);
+    }
+
+    private final ByteBuffer buffer;
+    private final int capacity;
+    private final byte[] header = new byte[HEADER_SIZE];
+    private final ByteBuffer headerView = ByteBuffer.wrap(header);
+
+    // Начало самой старой записи и число занятых байт
+    private int head;
+    private int used;
+    private int count;
+    // seq самой старой хранимой записи; при пустом буфере равен nextSeq
+    private long oldestSeq = 1;
+    private long nextSeq = 1;
+
+    public ReplayRing(int capacity) {
+        this.capacity = capacity;
+        this.buffer = ByteBuffer.allocateDirect(capacity);
+    }
+
+    /**
+     * @return seq, присвоенный сообщению
+     */
+    public long append(String event, byte[] data) {
+        long seq = nextSeq++;
+        byte[] eventBytes = event.getBytes(StandardCharsets.UTF_8);
+        int size = HEADER_SIZE + eventBytes.length + data.length;
+
+        if (size > capacity) {
+            clear();
+            return seq;
+        }
+        while (capacity - used < size) {
+            evictOldest();
+        }
+
+        headerView.clear();
+        headerView.putLong(seq).putInt(eventBytes.length).putInt(data.length);
+        int position = (head + used) % capacity;
+        position = write(position, header);
+        position = write(position, eventBytes);
+        write(position, data);
+
+        if (count == 0) {
+            oldestSeq = seq;
+        }
+        used += size;
+        count++;
+        return seq;
+    }
+
+    /**
+     * Передаёт visitor'у по порядку все сообщения с seq > lastSeq
+     *
+     * @return false, если часть таких сообщений уже вытеснена
+     */
+    public boolean replayAfter(long lastSeq, Visitor visitor) {
+        if (lastSeq >= nextSeq - 1) {
+            return true;
+        }
+        if (lastSeq + 1 < oldestSeq || count == 0) {
+            return false;
+        }
+
+        int position = head;
+        for (int i = 0; i < count; i++) {
+            read(position, header);
+            headerView.clear();
+            long seq = headerView.getLong();
+            int eventLength = headerView.getInt();
+            int dataLength = headerView.getInt();
+            position = (position + HEADER_SIZE) % capacity;
+
+            if (seq > lastSeq) {
+                byte[] eventBytes = new byte[eventLength];
+                byte[] data = new byte[dataLength];
+                position = read(position, eventBytes);
+                position = read(position, data);
+                visitor.accept(seq, new String(eventBytes, StandardCharsets.UTF_8), data);
+            } else {
+                position = (position + eventLength + dataLength) % capacity;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * seq последнего выданного сообщения (0 - сообщений не было)
+     */
+    public long getLastSeq() {
+        return nextSeq - 1;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    private void evictOldest() {
+        read(head, header);
+        headerView.clear();
+        headerView.getLong();
+        int size = HEADER_SIZE + headerView.getInt() + headerView.getInt();
+
+        head = (head + size) % capacity;
+        used -= size;
+        count--;
+        oldestSeq++;
+    }
+
+    private void clear() {
+        head = 0;
+        used = 0;
+        count = 0;
+        oldestSeq = nextSeq;
+    }
+
+    private int write(int position, byte[] source) {
+        int first = Math.min(source.length, capacity - position);
+        buffer.put(position, source, 0, first);
+        buffer.put(0, source, first, source.length - first);
+        return (position + source.length) % capacity;
+    }
+
+    private int read(int position, byte[] target) {
+        int first = Math.min(target.length, capacity - position);
+        buffer.get(position, target, 0, first);
+        buffer.get(0, target, first, target.length - first);
+        return (position + target.length) % capacity;
+    }
+}
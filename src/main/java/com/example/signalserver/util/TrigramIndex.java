@@ -0,0 +1,260 @@
+package com.example.signalserver.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Инвертированный триграммный индекс для поиска подстроки по нескольким полям.
+ *
+ * Документы получают возрастающие внутренние номера, поэтому списки вхождений -
+ * отсортированные int[] без дополнительной сортировки. Изменение документа - удаление
+ * (tombstone) и вставка под новым номером; при накоплении удалённых индекс уплотняется.
+ * Поля по порядку: 0 - основное (выше ранг), остальные - дополнительные, последнее - наименее важное.
+ * Запросы короче трёх символов не обслуживаются: без триграмм остаётся только полный перебор.
+ */
+public class TrigramIndex {
+
+    private static final int MIN_COMPACT_DOCS = 1024;
+
+    public static final int MIN_QUERY_LENGTH = 3;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private Map<Long, IntList> postings = new HashMap<>();
+    private long[] docKeys = new long[1024];
+    private String[][] docFields = new String[1024][];
+    private BitSet deleted = new BitSet();
+    private Map<Long, Integer> docByKey = new HashMap<>();
+    private int docCount;
+    private int deletedCount;
+
+    /**
+     * Результат поиска: ключи документов запрошенной страницы и общее число совпадений
+     */
+    public record SearchResult(long[] keys, int total) {
+    }
+
+    public void upsert(long key, String... fields) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(key);
+            addLocked(key, normalize(fields));
+            if (deletedCount > MIN_COMPACT_DOCS && deletedCount > docCount / 4) {
+                compactLocked();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(long key) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(key);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return docCount - deletedCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Поиск подстроки без учёта регистра, результаты упорядочены по рангу.
+     * Для запроса короче MIN_QUERY_LENGTH результат пуст
+     */
+    public SearchResult search(String query, int offset, int limit) {
+        String term = query == null ? "" : query.trim().toLowerCase(Locale.ROOT);
+        if (term.length() < MIN_QUERY_LENGTH) {
+            return new SearchResult(new long[0], 0);
+        }
+
+        lock.readLock().lock();
+        try {
+            int[] candidates = candidatesLocked(term);
+            if (candidates.length == 0) {
+                return new SearchResult(new long[0], 0);
+            }
+
+            // ранг в старших битах (инвертирован для сортировки по возрастанию), номер документа в младших
+            long[] ranked = new long[candidates.length];
+            int matches = 0;
+            for (int doc : candidates) {
+                if (deleted.get(doc)) {
+                    continue;
+                }
+                int score = score(docFields[doc], term);
+                if (score > 0) {
+                    ranked[matches++] = ((long) (Integer.MAX_VALUE - score) << 32) | doc;
+                }
+            }
+
+            Arrays.sort(ranked, 0, matches);
+
+            int from = Math.min(Math.max(offset, 0), matches);
+            int to = Math.min(from + Math.max(limit, 0), matches);
+            long[] keys = new long[to - from];
+            for (int i = from; i < to; i++) {
+                keys[i - from] = docKeys[(int) ranked[i]];
+            }
+            return new SearchResult(keys, matches);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Пересечение списков вхождений всех триграмм запроса, начиная с самого короткого
+     */
+    private int[] candidatesLocked(String term) {
+        Set<Long> trigrams = new HashSet<>();
+        addTrigrams(term, trigrams);
+
+        List<IntList> lists = new ArrayList<>(trigrams.size());
+        for (Long trigram : trigrams) {
+            IntList list = postings.get(trigram);
+            if (list == null) {
+                return new int[0];
+            }
+            lists.add(list);
+        }
+        lists.sort((a, b) -> Integer.compare(a.size, b.size));
+
+        int[] result = Arrays.copyOf(lists.get(0).data, lists.get(0).size);
+        int resultSize = result.length;
+        for (int l = 1; l < lists.size() && resultSize > 0; l++) {
+            IntList other = lists.get(l);
+            int i = 0;
+            int j = 0;
+            int k = 0;
+            while (i < resultSize && j < other.size) {
+                int a = result[i];
+                int b = other.data[j];
+                if (a == b) {
+                    result[k++] = a;
+                    i++;
+                    j++;
+                } else if (a < b) {
+                    i++;
+                } else {
+                    j++;
+                }
+            }
+            resultSize = k;
+        }
+        return Arrays.copyOf(result, resultSize);
+    }
+
+    private static int score(String[] fields, String term) {
+        int best = 0;
+        int last = fields.length - 1;
+        for (int f = 0; f < fields.length; f++) {
+            String value = fields[f];
+            if (value.isEmpty()) {
+                continue;
+            }
+
+            int score;
+            if (f == 0) {
+                score = value.equals(term) ? 100 : value.startsWith(term) ? 60 : value.contains(term) ? 40 : 0;
+            } else if (f < last) {
+                score = value.equals(term) ? 50 : value.startsWith(term) ? 30 : value.contains(term) ? 20 : 0;
+            } else {
+                score = value.startsWith(term) ? 15 : value.contains(term) ? 10 : 0;
+            }
+            best = Math.max(best, score);
+        }
+        return best;
+    }
+
+    private void addLocked(long key, String[] fields) {
+        if (docCount == docKeys.length) {
+            int capacity = docKeys.length + (docKeys.length >> 1);
+            docKeys = Arrays.copyOf(docKeys, capacity);
+            docFields = Arrays.copyOf(docFields, capacity);
+        }
+
+        int doc = docCount++;
+        docKeys[doc] = key;
+        docFields[doc] = fields;
+        docByKey.put(key, doc);
+
+        Set<Long> trigrams = new HashSet<>();
+        for (String field : fields) {
+            addTrigrams(field, trigrams);
+        }
+        for (Long trigram : trigrams) {
+            postings.computeIfAbsent(trigram, t -> new IntList()).add(doc);
+        }
+    }
+
+    private void removeLocked(long key) {
+        Integer doc = docByKey.remove(key);
+        if (doc != null) {
+            deleted.set(doc);
+            docFields[doc] = null;
+            deletedCount++;
+        }
+    }
+
+    private void compactLocked() {
+        long[] keys = docKeys;
+        String[][] fields = docFields;
+        BitSet wasDeleted = deleted;
+        int count = docCount;
+
+        postings = new HashMap<>();
+        docKeys = new long[Math.max(1024, count - deletedCount)];
+        docFields = new String[docKeys.length][];
+        deleted = new BitSet();
+        docByKey = new HashMap<>();
+        docCount = 0;
+        deletedCount = 0;
+
+        for (int doc = 0; doc < count; doc++) {
+            if (!wasDeleted.get(doc)) {
+                addLocked(keys[doc], fields[doc]);
+            }
+        }
+    }
+
+    private static String[] normalize(String[] fields) {
+        String[] normalized = new String[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            normalized[i] = fields[i] == null ? "" : fields[i].toLowerCase(Locale.ROOT);
+        }
+        return normalized;
+    }
+
+    private static void addTrigrams(String value, Set<Long> target) {
+        for (int i = 0; i + 3 <= value.length(); i++) {
+            target.add(((long) value.charAt(i) << 32) | ((long) value.charAt(i + 1) << 16) | value.charAt(i + 2));
+        }
+    }
+
+    private static final class IntList {
+        int[] data = new int[4];
+        int size;
+
+        void add(int value) {
+            if (size == data.length) {
+                data = Arrays.copyOf(data, size + (size >> 1) + 1);
+            }
+            data[size++] = value;
+        }
+    }
+}
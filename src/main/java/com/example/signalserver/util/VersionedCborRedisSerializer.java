@@ -0,0 +1,91 @@
+package com.example.signalserver.util;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+/**
+ * Сериализатор значений Redis: CBOR для заранее известного типа, без метаданных @class.
+ *
+ * Первый байт значения - версия формата. Значения без байта версии (JSON, записанный
+ * GenericJackson2JsonRedisSerializer) читаются как JSON, так что новый узел понимает
+ * старые данные. Обратное неверно: узел без этого сериализатора CBOR не прочитает.
+ * Перевод существующего ключа на этот формат - в два выпуска: сначала чтение на всех
+ * узлах, затем запись. Ключи, появившиеся вместе с сериализатором (кэш UserCache),
+ * этого не требуют. Неизвестные поля игнорируются - новые поля в структурах не ломают
+ * узлы с этим сериализатором. Даты пишутся числовыми массивами, а не ISO-строками.
+ *
+ * Тип задаётся при создании: для значений произвольного типа (RedisTemplate<String, Object>)
+ * сериализатор не подходит - без @class они прочитаются как LinkedHashMap.
+ */
+public class VersionedCborRedisSerializer<T> implements RedisSerializer<T> {
+
+    public static final byte VERSION_CBOR_1 = 0x01;
+
+    private static final CBORMapper CBOR = configure(new CBORMapper());
+    private static final ObjectMapper JSON = configure(new ObjectMapper());
+
+    private final ObjectReader cborReader;
+    private final ObjectWriter cborWriter;
+    private final ObjectReader jsonReader;
+
+    public VersionedCborRedisSerializer(Class<T> type) {
+        this.cborReader = CBOR.readerFor(type);
+        this.cborWriter = CBOR.writerFor(type);
+        this.jsonReader = JSON.readerFor(type);
+    }
+
+    @Override
+    public byte[] serialize(T value) throws SerializationException {
+        if (value == null) {
+            return null;
+        }
+
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(64);
+            out.write(VERSION_CBOR_1);
+            cborWriter.writeValue(out, value);
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new SerializationException("Could not write CBOR value", e);
+        }
+    }
+
+    @Override
+    public T deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+
+        try {
+            if (bytes[0] == VERSION_CBOR_1) {
+                return cborReader.readValue(bytes, 1, bytes.length - 1);
+            }
+            if (isJsonStart(bytes[0])) {
+                return jsonReader.readValue(bytes);
+            }
+        } catch (IOException e) {
+            throw new SerializationException("Could not read Redis value", e);
+        }
+        throw new SerializationException("Unsupported Redis value format version: " + bytes[0]);
+    }
+
+    private static boolean isJsonStart(byte b) {
+        return b == '{' || b == '[' || b == '"' || b == '-' || (b >= '0' && b <= '9')
+                || b == 't' || b == 'f' || b == 'n';
+    }
+
+    private static <M extends ObjectMapper> M configure(M mapper) {
+        mapper.registerModule(new JavaTimeModule());
+        mapper.disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        return mapper;
+    }
+}
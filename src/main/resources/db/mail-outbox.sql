@@ -0,0 +1,17 @@
+-- Очередь исходящих писем внутри БД (transactional outbox).
+-- Строка пишется в той же транзакции, что и регистрация или сброс пароля;
+-- EmailOutbox пересылает строки в RabbitMQ и удаляет их после подтверждения брокера.
+-- Скрипт идемпотентен.
+
+CREATE TABLE IF NOT EXISTS mail_outbox (
+    id              BIGSERIAL PRIMARY KEY,
+    type            VARCHAR(32)  NOT NULL,
+    recipient       VARCHAR(255) NOT NULL,
+    first_name      VARCHAR(255),
+    token           VARCHAR(255) NOT NULL,
+    attempts        INT          NOT NULL DEFAULT 0,
+    next_attempt_at TIMESTAMP    NOT NULL DEFAULT now(),
+    created_at      TIMESTAMP    NOT NULL DEFAULT now()
+);
+
+CREATE INDEX IF NOT EXISTS mail_outbox_next_attempt_idx ON mail_outbox (next_attempt_at);
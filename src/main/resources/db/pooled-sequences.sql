@@ -0,0 +1,43 @@
+-- Переход с GenerationType.IDENTITY на последовательности с pooled-оптимизатором
+-- (allocationSize = 50). Hibernate берёт у последовательности верхнюю границу
+-- диапазона, поэтому шаг последовательности должен совпадать с allocationSize,
+-- а текущее значение - быть не меньше MAX(id) + 50.
+--
+-- Скрипт идемпотентен: его можно запускать повторно, в том числе на таблицах,
+-- где id создан как serial/bigserial или GENERATED BY DEFAULT AS IDENTITY.
+--
+-- room_events сюда не входит: строки пишет RoomEventSink сырым INSERT, где id
+-- берётся из DEFAULT nextval() по одному, и шаг 50 сжигал бы 50 значений на строку.
+
+DO $$
+DECLARE
+    t TEXT;
+    seq TEXT;
+    max_id BIGINT;
+BEGIN
+    FOREACH t IN ARRAY ARRAY['users', 'rooms', 'call_sessions', 'refresh_tokens', 'verification_tokens']
+    LOOP
+        seq := t || '_id_seq';
+
+        -- Identity-колонку превращаем в обычную колонку с DEFAULT nextval(...)
+        IF EXISTS (SELECT 1 FROM information_schema.columns
+                   WHERE table_name = t AND column_name = 'id' AND is_identity = 'YES') THEN
+            EXECUTE format('ALTER TABLE %I ALTER COLUMN id DROP IDENTITY', t);
+        END IF;
+
+        EXECUTE format('CREATE SEQUENCE IF NOT EXISTS %I', seq);
+        EXECUTE format('ALTER SEQUENCE %I INCREMENT BY 50 OWNED BY %I.id', seq, t);
+        EXECUTE format('ALTER TABLE %I ALTER COLUMN id SET DEFAULT nextval(%L)', t, seq);
+
+        EXECUTE format('SELECT COALESCE(MAX(id), 0) FROM %I', t) INTO max_id;
+        EXECUTE format('SELECT setval(%L, %s)', seq, max_id + 50);
+    END LOOP;
+END $$;
+
+-- Возврат шага 1 для room_events, если прежняя версия скрипта уже перевела её на 50
+DO $$
+BEGIN
+    IF EXISTS (SELECT 1 FROM pg_class WHERE relkind = 'S' AND relname = 'room_events_id_seq') THEN
+        ALTER SEQUENCE room_events_id_seq INCREMENT BY 1;
+    END IF;
+END $$;
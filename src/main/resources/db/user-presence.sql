@@ -0,0 +1,22 @@
+-- Онлайн-статус в кластере: строка (user_id, node_id) на каждый узел, где у
+-- пользователя есть подключение. users.online пересчитывается как наличие хотя бы
+-- одной строки. Узлы отмечаются в presence_nodes; строки узла, переставшего
+-- отмечаться, удаляет любой живой узел (см. PresenceService).
+-- Скрипт идемпотентен.
+
+CREATE TABLE IF NOT EXISTS presence_nodes (
+    node_id      VARCHAR(36) PRIMARY KEY,
+    heartbeat_at TIMESTAMP   NOT NULL DEFAULT now()
+);
+
+CREATE TABLE IF NOT EXISTS user_presence (
+    user_id BIGINT      NOT NULL REFERENCES users (id) ON DELETE CASCADE,
+    node_id VARCHAR(36) NOT NULL,
+    PRIMARY KEY (user_id, node_id)
+);
+
+CREATE INDEX IF NOT EXISTS user_presence_node_idx ON user_presence (node_id);
+
+-- Флаги, выставленные до появления user_presence, никем не будут сняты
+UPDATE users u SET online = false
+WHERE u.online AND NOT EXISTS (SELECT 1 FROM user_presence p WHERE p.user_id = u.id);
@@ -0,0 +1,127 @@
+package com.example.signalserver.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Вставка строк до и после перехода на pooled-последовательности.
+ *
+ * identity - то, что делает Hibernate с GenerationType.IDENTITY: каждая вставка
+ * отдельным запросом с RETURNING id, батч невозможен. pooledSequence - SEQUENCE
+ * с allocationSize = 50: один nextval на 50 строк и JDBC-батч (с
+ * reWriteBatchedInserts, как в spring.datasource.url).
+ *
+ * Нужен живой Postgres: -Dbench.jdbc.url, -Dbench.jdbc.user, -Dbench.jdbc.password
+ * (по умолчанию локальная videocalldb). Таблицы создаются временные.
+ * Запускается через main() с test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InsertBatchingBenchmark {
+
+    private static final int ROWS = 500;
+    private static final int ALLOCATION_SIZE = 50;
+
+    private Connection connection;
+    private PreparedStatement identityInsert;
+    private PreparedStatement pooledInsert;
+    private PreparedStatement nextval;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        connection = DriverManager.getConnection(
+                System.getProperty("bench.jdbc.url", "jdbc:postgresql://localhost:5432/videocalldb?reWriteBatchedInserts=true"),
+                System.getProperty("bench.jdbc.user", "postgres"),
+                System.getProperty("bench.jdbc.password", ""));
+
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TEMP TABLE bench_identity (id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, "
+                    + "room_id BIGINT, event_type VARCHAR(32), created_at TIMESTAMP)");
+            statement.execute("CREATE TEMP TABLE bench_pooled (id BIGINT PRIMARY KEY, "
+                    + "room_id BIGINT, event_type VARCHAR(32), created_at TIMESTAMP)");
+            statement.execute("CREATE TEMP SEQUENCE bench_pooled_seq INCREMENT BY " + ALLOCATION_SIZE);
+        }
+
+        identityInsert = connection.prepareStatement(
+                "INSERT INTO bench_identity (room_id, event_type, created_at) VALUES (?, ?, now()) RETURNING id");
+        pooledInsert = connection.prepareStatement(
+                "INSERT INTO bench_pooled (id, room_id, event_type, created_at) VALUES (?, ?, ?, now())");
+        nextval = connection.prepareStatement("SELECT nextval('bench_pooled_seq')");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        connection.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public long identity() throws SQLException {
+        long last = 0;
+        for (int i = 0; i < ROWS; i++) {
+            identityInsert.setLong(1, i);
+            identityInsert.setString(2, "USER_JOINED");
+            try (ResultSet keys = identityInsert.executeQuery()) {
+                keys.next();
+                last = keys.getLong(1);
+            }
+        }
+        return last;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public int[] pooledSequence() throws SQLException {
+        long hi = 0;
+        int[] counts = null;
+        for (int i = 0; i < ROWS; i++) {
+            // pooled-оптимизатор: значение последовательности - верхняя граница диапазона
+            if (i % ALLOCATION_SIZE == 0) {
+                try (ResultSet rs = nextval.executeQuery()) {
+                    rs.next();
+                    hi = rs.getLong(1);
+                }
+            }
+            pooledInsert.setLong(1, hi - ALLOCATION_SIZE + 1 + i % ALLOCATION_SIZE);
+            pooledInsert.setLong(2, i);
+            pooledInsert.setString(3, "USER_JOINED");
+            pooledInsert.addBatch();
+            if ((i + 1) % ALLOCATION_SIZE == 0) {
+                counts = pooledInsert.executeBatch();
+            }
+        }
+        return counts;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(InsertBatchingBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.signalserver.benchmark;
+
+import com.example.signalserver.model.entity.User;
+import com.example.signalserver.security.CustomUserDetails;
+import com.example.signalserver.service.auth.JWTService;
+import com.example.signalserver.service.auth.JwtKeyRing;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import org.mockito.Answers;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Стоимость аутентификации одного запроса в JwtRequestFilter.
+ * Прежний путь воспроизведён целиком: токен HS512 на общем секрете, четыре разбора
+ * с пересозданием ключа и парсера на каждом и перечитывание пользователя из БД.
+ * Задержка БД задаётся параметром dbRoundTripMicros (0 - только CPU-часть).
+ * Новый путь - один разбор ES256-токена кэшированным парсером с выбором ключа по kid
+ * и принципал из claims.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtAuthBenchmark {
+
+    private static final String LEGACY_SECRET =
+            "benchmark-secret-benchmark-secret-benchmark-secret-benchmark-secret";
+
+    @Param({"0", "300"})
+    private long dbRoundTripMicros;
+
+    private JWTService jwtService;
+    private User user;
+    private String token;
+    private String legacyToken;
+
+    @Setup
+    public void setUp() {
+        // Redis заменён заглушкой: публикация ключей в бенчмарке не нужна
+        JwtKeyRing keyRing = new JwtKeyRing();
+        ReflectionTestUtils.setField(keyRing, "stringRedisTemplate",
+                Mockito.mock(StringRedisTemplate.class, Answers.RETURNS_DEEP_STUBS));
+        ReflectionTestUtils.setField(keyRing, "signingEnabled", true);
+        ReflectionTestUtils.setField(keyRing, "jwtExpiration", 3600);
+        ReflectionTestUtils.setField(keyRing, "rotationIntervalMs", 86_400_000L);
+        keyRing.rotate();
+
+        jwtService = new JWTService();
+        ReflectionTestUtils.setField(jwtService, "keyRing", keyRing);
+        ReflectionTestUtils.setField(jwtService, "jwtExpiration", 3600);
+        jwtService.init();
+
+        user = new User("alice", "alice@example.com", "hash");
+        user.setId(42L);
+        token = jwtService.generateToken(new CustomUserDetails(user));
+
+        // Токен в прежнем формате: без kid и uid, подписан HS512
+        Date now = new Date();
+        legacyToken = Jwts.builder()
+                .setSubject(user.getUsername())
+                .setIssuedAt(now)
+                .setExpiration(new Date(now.getTime() + 3_600_000L))
+                .signWith(Keys.hmacShaKeyFor(LEGACY_SECRET.getBytes()), SignatureAlgorithm.HS512)
+                .compact();
+    }
+
+    @Benchmark
+    public void legacyParseAndReload(Blackhole bh) {
+        // validateToken(jwt)
+        bh.consume(legacyParse());
+        // getUsernameFromToken(jwt)
+        String username = legacyParse().getSubject();
+        // userDetailsService.loadUserByUsername(username)
+        CustomUserDetails userDetails = legacyLoadUser(username);
+        // validateToken(jwt, userDetails): имя и срок разбираются отдельно
+        boolean valid = legacyParse().getSubject().equals(userDetails.getUsername())
+                && legacyParse().getExpiration().getTime() > System.currentTimeMillis();
+        bh.consume(valid);
+        bh.consume(userDetails);
+    }
+
+    @Benchmark
+    public void singleParse(Blackhole bh) {
+        Claims claims = jwtService.parseToken(token);
+        bh.consume(CustomUserDetails.fromToken(
+                claims.get(JWTService.USER_ID_KEY, Number.class).longValue(),
+                claims.getSubject(),
+                claims.get(JWTService.AUTHORITIES_KEY, String.class)));
+    }
+
+    private Claims legacyParse() {
+        return Jwts.parserBuilder()
+                .setSigningKey(Keys.hmacShaKeyFor(LEGACY_SECRET.getBytes()))
+                .build()
+                .parseClaimsJws(legacyToken)
+                .getBody();
+    }
+
+    /**
+     * Перечитывание пользователя: ожидание ответа БД и сборка сущности заново
+     */
+    private CustomUserDetails legacyLoadUser(String username) {
+        if (dbRoundTripMicros > 0) {
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(dbRoundTripMicros));
+        }
+        User loaded = new User(username, user.getEmail(), user.getPassword());
+        loaded.setId(user.getId());
+        return new CustomUserDetails(loaded);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(JwtAuthBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.signalserver.benchmark;
+
+import com.example.signalserver.dto.response.UserProfile;
+import com.example.signalserver.model.enums.UserStatus;
+import com.example.signalserver.util.VersionedCborRedisSerializer;
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сериализация значений Redis на примере UserProfile из кэша пользователей:
+ * прежний GenericJackson2JsonRedisSerializer (JSON + @class) против
+ * VersionedCborRedisSerializer. Размер значения в байтах печатается при запуске.
+ * Запускается через main() с test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RedisSerializerBenchmark {
+
+    @Param({"json", "cbor"})
+    public String format;
+
+    private RedisSerializer<Object> serializer;
+    private UserProfile value;
+    private byte[] encoded;
+
+    @Setup
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public void setUp() {
+        if ("json".equals(format)) {
+            // Как в прежнем RedisConfig: тип значения пишется в свойство @class
+            ObjectMapper mapper = new ObjectMapper();
+            mapper.registerModule(new JavaTimeModule());
+            mapper.activateDefaultTyping(mapper.getPolymorphicTypeValidator(),
+                    ObjectMapper.DefaultTyping.NON_FINAL, JsonTypeInfo.As.PROPERTY);
+            serializer = new GenericJackson2JsonRedisSerializer(mapper);
+        } else {
+            serializer = (RedisSerializer) new VersionedCborRedisSerializer<>(UserProfile.class);
+        }
+
+        value = new UserProfile();
+        value.setId(123456L);
+        value.setUsername("alice_smith");
+        value.setEmail("alice.smith@example.com");
+        value.setFirstName("Alice");
+        value.setLastName("Smith");
+        value.setAvatarUrl("https://cdn.example.com/avatars/123456.png");
+        value.setOnline(true);
+        value.setStatus(UserStatus.ONLINE);
+        value.setLastSeenAt(LocalDateTime.of(2026, 10, 18, 12, 30, 15));
+
+        encoded = serializer.serialize(value);
+        System.out.printf("%n%s: %d bytes per UserProfile%n", format, encoded.length);
+    }
+
+    @Benchmark
+    public byte[] encode() {
+        return serializer.serialize(value);
+    }
+
+    @Benchmark
+    public Object decode() {
+        return serializer.deserialize(encoded);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(RedisSerializerBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.signalserver.benchmark;
+
+import com.example.signalserver.service.call.RoomExecutor;
+import io.netty.util.concurrent.Future;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Сравнение модели "комната-актор" (RoomExecutor) с блокировкой на комнату
+ * при конкурентных join/leave. Параметр rooms задаёт степень конкуренции:
+ * чем меньше комнат, тем больше потоков бьются за одну и ту же.
+ * Запускается через main() с test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+public class RoomExecutionBenchmark {
+
+    private static final int BATCH = 64;
+    private static final int MAX_PARTICIPANTS = 50;
+
+    @Param({"1", "16", "1024"})
+    public int rooms;
+
+    private String[] roomCodes;
+
+    private RoomExecutor roomExecutor;
+    private Map<String, int[]> actorRooms;
+
+    private Map<String, ReentrantLock> locks;
+    private Map<String, int[]> lockedRooms;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        roomCodes = new String[rooms];
+        actorRooms = new HashMap<>();
+        locks = new HashMap<>();
+        lockedRooms = new HashMap<>();
+
+        for (int i = 0; i < rooms; i++) {
+            String code = "R" + i;
+            roomCodes[i] = code;
+            actorRooms.put(code, new int[1]);
+            locks.put(code, new ReentrantLock());
+            lockedRooms.put(code, new int[1]);
+        }
+
+        roomExecutor = new RoomExecutor(0);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        roomExecutor.shutdown();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void roomActor() {
+        Future<?>[] pending = new Future<?>[BATCH];
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+
+        for (int i = 0; i < BATCH; i++) {
+            String code = roomCodes[random.nextInt(rooms)];
+            int[] participants = actorRooms.get(code);
+            pending[i] = roomExecutor.submit(code, () -> joinOrLeave(participants));
+        }
+        // Задачи попадают на разные loop'ы: учитываются только выполненные изменения
+        for (Future<?> future : pending) {
+            future.syncUninterruptibly();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void lockPerRoom() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+
+        for (int i = 0; i < BATCH; i++) {
+            String code = roomCodes[random.nextInt(rooms)];
+            ReentrantLock lock = locks.get(code);
+            lock.lock();
+            try {
+                joinOrLeave(lockedRooms.get(code));
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private static boolean joinOrLeave(int[] participants) {
+        // check-then-act, который небезопасен без владельца состояния
+        if (participants[0] < MAX_PARTICIPANTS) {
+            participants[0]++;
+            return true;
+        }
+        participants[0] = 0;
+        return false;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(RoomExecutionBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
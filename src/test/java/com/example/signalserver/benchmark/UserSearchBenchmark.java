@@ -0,0 +1,113 @@
+package com.example.signalserver.benchmark;
+
+import com.example.signalserver.util.TrigramIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Поиск пользователей: триграммный индекс против полного просмотра с
+ * LOWER(x) LIKE '%term%' по четырём полям, как в UserRepository.searchActiveUsers.
+ * Просмотр выполняется в памяти над теми же строками, то есть это нижняя граница
+ * стоимости запроса в Postgres (без ввода-вывода и сети).
+ * Запускается через main() с test classpath; нужен heap от 4 ГБ.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class UserSearchBenchmark {
+
+    private static final String[] FIRST_NAMES = {"anna", "boris", "maria", "ivan", "olga", "pavel",
+            "elena", "dmitry", "sofia", "nikita", "alex", "kate", "john", "emily", "lucas", "mia"};
+    private static final String[] LAST_NAMES = {"ivanov", "petrova", "smirnov", "kuznetsova", "popov",
+            "sokolova", "lebedev", "smith", "johnson", "brown", "garcia", "miller", "davis", "wilson"};
+    private static final String[] DOMAINS = {"gmail.com", "mail.ru", "yandex.ru", "outlook.com"};
+
+    // От редких до частых совпадений
+    private static final String[] QUERIES = {"user123456", "petrova", "ann", "smi", "mail"};
+
+    private static final int PAGE_SIZE = 20;
+
+    @Param({"1000000"})
+    public int users;
+
+    private String[][] rows;
+    private TrigramIndex index;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        rows = new String[users][];
+        index = new TrigramIndex();
+
+        for (int i = 0; i < users; i++) {
+            String first = FIRST_NAMES[random.nextInt(FIRST_NAMES.length)];
+            String last = LAST_NAMES[random.nextInt(LAST_NAMES.length)];
+            String username = "user" + i + "_" + first.charAt(0) + last;
+            String email = first + "." + last + i + "@" + DOMAINS[random.nextInt(DOMAINS.length)];
+
+            rows[i] = new String[]{username, capitalize(first), capitalize(last), email};
+            index.upsert(i, rows[i]);
+        }
+    }
+
+    @Benchmark
+    public void trigramIndex(Blackhole bh) {
+        bh.consume(index.search(nextQuery(), 0, PAGE_SIZE));
+    }
+
+    @Benchmark
+    public void likeScan(Blackhole bh) {
+        String term = nextQuery().toLowerCase(Locale.ROOT);
+        int total = 0;
+        long[] page = new long[PAGE_SIZE];
+        for (int i = 0; i < rows.length; i++) {
+            String[] row = rows[i];
+            if (row[0].toLowerCase(Locale.ROOT).contains(term)
+                    || row[1].toLowerCase(Locale.ROOT).contains(term)
+                    || row[2].toLowerCase(Locale.ROOT).contains(term)
+                    || row[3].toLowerCase(Locale.ROOT).contains(term)) {
+                if (total < PAGE_SIZE) {
+                    page[total] = i;
+                }
+                total++;
+            }
+        }
+        bh.consume(page);
+        bh.consume(total);
+    }
+
+    private String nextQuery() {
+        return QUERIES[next++ % QUERIES.length];
+    }
+
+    private static String capitalize(String value) {
+        return Character.toUpperCase(value.charAt(0)) + value.substring(1);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(UserSearchBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
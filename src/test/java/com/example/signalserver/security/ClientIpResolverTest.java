@@ -0,0 +1,62 @@
+package com.example.signalserver.security;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * X-Forwarded-For задаёт клиент: заголовку верят только от доверенных прокси
+ */
+class ClientIpResolverTest {
+
+    @Test
+    void headerIsIgnoredWithoutTrustedProxies() {
+        ClientIpResolver resolver = resolver(List.of());
+
+        assertEquals("203.0.113.7", resolver.resolve(request("203.0.113.7", "1.2.3.4")));
+    }
+
+    @Test
+    void rotatedHeaderDoesNotChangeKeyBehindTrustedProxy() {
+        ClientIpResolver resolver = resolver(List.of("10.0.0.0/8"));
+
+        // Клиент дописал своё значение слева, прокси - реальный адрес справа
+        assertEquals("203.0.113.7", resolver.resolve(request("10.0.0.5", "1.2.3.4, 203.0.113.7")));
+        assertEquals("203.0.113.7", resolver.resolve(request("10.0.0.5", "5.6.7.8, 203.0.113.7")));
+    }
+
+    @Test
+    void chainOfTrustedProxiesIsSkipped() {
+        ClientIpResolver resolver = resolver(List.of("10.0.0.0/8"));
+
+        assertEquals("203.0.113.7", resolver.resolve(request("10.0.0.5", "203.0.113.7, 10.1.1.1")));
+        assertEquals("10.0.0.5", resolver.resolve(request("10.0.0.5", null)));
+    }
+
+    @Test
+    void garbageHopIsTheClient() {
+        ClientIpResolver resolver = resolver(List.of("10.0.0.0/8"));
+
+        assertEquals("not-an-ip", resolver.resolve(request("10.0.0.5", "not-an-ip")));
+    }
+
+    private static ClientIpResolver resolver(List<String> trustedProxies) {
+        ClientIpResolver resolver = new ClientIpResolver();
+        ReflectionTestUtils.setField(resolver, "trustedProxies", trustedProxies);
+        resolver.init();
+        return resolver;
+    }
+
+    private static MockHttpServletRequest request(String remoteAddr, String forwardedFor) {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setRemoteAddr(remoteAddr);
+        if (forwardedFor != null) {
+            request.addHeader("X-Forwarded-For", forwardedFor);
+        }
+        return request;
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.signalserver.service.auth;
+
+import com.example.signalserver.dto.request.LoginRequest;
+import com.example.signalserver.dto.response.AuthResponse;
+import com.example.signalserver.exception.AuthenticationException;
+import com.example.signalserver.model.entity.User;
+import com.example.signalserver.model.enums.UserStatus;
+import com.example.signalserver.repository.user.UserRepository;
+import com.example.signalserver.security.CustomUserDetails;
+import com.example.signalserver.security.LoadedUserAuthenticationProvider;
+import com.example.signalserver.security.LoginThrottleService;
+import com.example.signalserver.service.user.LastSeenBuffer;
+import com.example.signalserver.service.user.UserCache;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.security.authentication.ProviderManager;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.Callable;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * Вход должен стоить одного SQL-запроса: пароль проверяется по уже загруженной
+ * сущности, а запись времени входа уходит в пакетный буфер. Запросы считает
+ * статистика Hibernate на встроенной БД.
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class AuthServiceLoginTest {
+
+    private static final String PASSWORD = "Secret123";
+    private static final BCryptPasswordEncoder ENCODER = new BCryptPasswordEncoder(4);
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private final RefreshTokenStore refreshTokenStore = Mockito.mock(RefreshTokenStore.class);
+    private final PasswordHashingService passwordHashingService = Mockito.mock(PasswordHashingService.class);
+    private final JWTService jwtService = Mockito.mock(JWTService.class);
+    private final LoginThrottleService loginThrottleService = Mockito.mock(LoginThrottleService.class);
+    private final UserCache userCache = Mockito.mock(UserCache.class);
+    private final LastSeenBuffer lastSeenBuffer = Mockito.mock(LastSeenBuffer.class);
+
+    private final AuthService authService = new AuthService();
+
+    private Statistics statistics;
+    private long userId;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        LoadedUserAuthenticationProvider provider = new LoadedUserAuthenticationProvider();
+        ReflectionTestUtils.setField(provider, "passwordEncoder", ENCODER);
+        ReflectionTestUtils.setField(authService, "authenticationManager", new ProviderManager(provider));
+        ReflectionTestUtils.setField(authService, "userRepository", userRepository);
+        ReflectionTestUtils.setField(authService, "refreshTokenStore", refreshTokenStore);
+        ReflectionTestUtils.setField(authService, "passwordHashingService", passwordHashingService);
+        ReflectionTestUtils.setField(authService, "jwtService", jwtService);
+        ReflectionTestUtils.setField(authService, "loginThrottleService", loginThrottleService);
+        ReflectionTestUtils.setField(authService, "userCache", userCache);
+        ReflectionTestUtils.setField(authService, "lastSeenBuffer", lastSeenBuffer);
+
+        // Пул хеширования выполняет задачу на вызывающем потоке
+        when(passwordHashingService.call(eq(PasswordHashingService.Category.LOGIN), any()))
+                .thenAnswer(invocation -> invocation.getArgument(1, Callable.class).call());
+
+        User user = new User("alice", "alice@example.com", ENCODER.encode(PASSWORD));
+        user.setStatus(UserStatus.ONLINE);
+        user.setEmailVerified(true);
+        userId = userRepository.saveAndFlush(user).getId();
+        entityManager.clear();
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void loginRunsOneStatementAndDefersWrites() {
+        when(jwtService.generateToken(any(CustomUserDetails.class))).thenReturn("access-token");
+        when(refreshTokenStore.issue(eq(userId), any(), any())).thenReturn("refresh-token");
+
+        AuthResponse response = authService.login(request(PASSWORD), "10.0.0.1", "test-agent");
+        entityManager.flush();
+
+        assertEquals("access-token", response.getAccessToken());
+        assertEquals("refresh-token", response.getRefreshToken());
+        assertEquals(userId, response.getUser().getId());
+
+        assertEquals(1, statistics.getPrepareStatementCount(), "Login must issue exactly one SQL statement");
+        assertEquals(0, statistics.getEntityUpdateCount());
+        verify(lastSeenBuffer).touch(userId);
+        verifyNoInteractions(userCache);
+    }
+
+    @Test
+    void wrongPasswordRunsOneStatementWithoutWrites() {
+        assertThrows(AuthenticationException.class,
+                () -> authService.login(request("Wrong1234"), "10.0.0.1", "test-agent"));
+        entityManager.flush();
+
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityUpdateCount());
+        verify(loginThrottleService).recordFailure("10.0.0.1", "alice");
+        verify(refreshTokenStore, never()).issue(anyLong(), any(), any());
+        verifyNoInteractions(lastSeenBuffer);
+    }
+
+    private static LoginRequest request(String password) {
+        LoginRequest request = new LoginRequest();
+        request.setUsernameOrEmail("alice");
+        request.setPassword(password);
+        return request;
+    }
+}
@@ -0,0 +1,150 @@
+package com.example.signalserver.service.call;
+
+import com.corundumstudio.socketio.SocketIOClient;
+import com.example.signalserver.model.entity.CallSession;
+import com.example.signalserver.model.entity.Room;
+import com.example.signalserver.model.entity.User;
+import com.example.signalserver.model.enums.ConnectionStatus;
+import com.example.signalserver.repository.call.CallSessionRepository;
+import com.example.signalserver.repository.room.RoomRepository;
+import com.example.signalserver.repository.user.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Пачки call_sessions на встроенной БД: у каждого входа своя строка, выход
+ * закрывает только её, даже если вход и выход попали в одну пачку.
+ */
+@DataJpaTest
+class CallSessionRecorderTest {
+
+    @Autowired
+    private CallSessionRepository callSessionRepository;
+
+    @Autowired
+    private RoomRepository roomRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private final CallSessionRecorder recorder = new CallSessionRecorder();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private User alice;
+    private User bob;
+    private Room roomA;
+    private Room roomB;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(recorder, "queueCapacity", 64);
+        ReflectionTestUtils.setField(recorder, "callSessionRepository", callSessionRepository);
+        ReflectionTestUtils.setField(recorder, "roomRepository", roomRepository);
+        ReflectionTestUtils.setField(recorder, "userRepository", userRepository);
+        ReflectionTestUtils.setField(recorder, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(recorder, "transactionTemplate", new TransactionTemplate(transactionManager));
+        ReflectionTestUtils.setField(recorder, "meterRegistry", meterRegistry);
+        recorder.open();
+
+        alice = userRepository.save(new User("alice", "alice@example.com", "hash"));
+        bob = userRepository.save(new User("bob", "bob@example.com", "hash"));
+        roomA = roomRepository.save(new Room("ROOMA", "A", alice));
+        roomB = roomRepository.save(new Room("ROOMB", "B", alice));
+        entityManager.flush();
+    }
+
+    @Test
+    void roomSwitchInsideOneBatchKeepsEveryoneElsesWrites() {
+        PeerSession alicePeer = peer(alice);
+        PeerSession bobPeer = peer(bob);
+        recorder.recordJoin(alicePeer, roomA.getId(), "ROOMA", "agent", "10.0.0.1");
+        recorder.flushQueued();
+
+        // Смена комнаты: вход в B раньше выхода из A, в той же пачке - чужой вход
+        recorder.recordJoin(alicePeer, roomB.getId(), "ROOMB", "agent", "10.0.0.1");
+        recorder.recordJoin(bobPeer, roomA.getId(), "ROOMA", "agent", "10.0.0.2");
+        recorder.recordLeave(alicePeer, "ROOMA");
+        recorder.flushQueued();
+
+        List<CallSession> aliceRows = rowsOf(alice);
+        assertEquals(2, aliceRows.size());
+        assertFalse(rowIn(aliceRows, roomA).isActive(), "Leaving A closes the A row");
+        assertTrue(rowIn(aliceRows, roomB).isActive(), "The B row stays open");
+        assertEquals(1, rowsOf(bob).size());
+        assertEquals(0, meterRegistry.counter("call.sessions.dropped", "reason", "write_failed").count());
+    }
+
+    @Test
+    void rejoinInsideOneBatchClosesOnlyThePreviousVisit() {
+        PeerSession alicePeer = peer(alice);
+        recorder.recordJoin(alicePeer, roomA.getId(), "ROOMA", "agent", "10.0.0.1");
+        recorder.flushQueued();
+
+        recorder.recordLeave(alicePeer, "ROOMA");
+        recorder.recordJoin(alicePeer, roomA.getId(), "ROOMA", "agent", "10.0.0.1");
+        recorder.flushQueued();
+
+        List<CallSession> rows = rowsOf(alice);
+        assertEquals(2, rows.size());
+        assertEquals(1, rows.stream().filter(CallSession::isActive).count());
+        assertEquals(0, meterRegistry.counter("call.sessions.dropped", "reason", "write_failed").count());
+    }
+
+    @Test
+    void evictedSocketLeavesAsReconnecting() {
+        PeerSession alicePeer = peer(alice);
+        recorder.recordJoin(alicePeer, roomA.getId(), "ROOMA", "agent", "10.0.0.1");
+        recorder.flushQueued();
+
+        // OutboundDispatcher вытеснил медленный сокет - разрыв закрывает строку как RECONNECTING
+        alicePeer.markEvicted();
+        recorder.recordLeave(alicePeer, "ROOMA");
+        recorder.flushQueued();
+
+        CallSession row = rowIn(rowsOf(alice), roomA);
+        assertFalse(row.isActive());
+        assertEquals(ConnectionStatus.RECONNECTING, row.getConnectionStatus());
+    }
+
+    private PeerSession peer(User user) {
+        return new PeerSession(Mockito.mock(SocketIOClient.class), user.getId(), user.getUsername(), 1024);
+    }
+
+    private List<CallSession> rowsOf(User user) {
+        entityManager.clear();
+        return callSessionRepository.findAll().stream()
+                .filter(session -> session.getUser().getId().equals(user.getId()))
+                .toList();
+    }
+
+    private static CallSession rowIn(List<CallSession> rows, Room room) {
+        return rows.stream()
+                .filter(session -> session.getRoom().getId().equals(room.getId()))
+                .findFirst()
+                .orElseThrow();
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.signalserver.service.call;
+
+import com.corundumstudio.socketio.SocketIOClient;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultHttpRequest;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpVersion;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.Mockito.when;
+
+/**
+ * Поиск websocket-канала сессии: upgrade с polling находится по sid,
+ * polling-запросы не запоминаются, а считаются
+ */
+class ChannelWritabilityTrackerTest {
+
+    private final ChannelWritabilityTracker tracker = new ChannelWritabilityTracker();
+
+    @Test
+    void upgradedChannelIsFoundBySessionId() {
+        UUID sid = UUID.randomUUID();
+        SocketIOClient client = client(sid);
+
+        EmbeddedChannel polling = open("/socket.io/?EIO=4&transport=polling&sid=" + sid);
+        assertNull(tracker.channelOf(client), "Polling connection must not be used for writability");
+
+        EmbeddedChannel websocket = open("/socket.io/?EIO=4&transport=websocket&sid=" + sid);
+        assertSame(websocket, tracker.channelOf(client));
+
+        polling.close();
+        assertSame(websocket, tracker.channelOf(client));
+        websocket.close();
+        assertNull(tracker.channelOf(client));
+    }
+
+    @Test
+    void pollsAreCountedOnlyForWatchedSessions() {
+        UUID sid = UUID.randomUUID();
+        SocketIOClient client = client(sid);
+
+        open("/socket.io/?EIO=4&transport=polling&sid=" + sid);
+        AtomicLong polls = tracker.watchPolls(client);
+        open("/socket.io/?EIO=4&transport=polling&sid=" + sid);
+        open("/socket.io/?EIO=4&transport=polling&sid=" + UUID.randomUUID());
+        assertEquals(1, polls.get());
+
+        tracker.unwatchPolls(client);
+        open("/socket.io/?EIO=4&transport=polling&sid=" + sid);
+        assertEquals(1, polls.get());
+    }
+
+    private EmbeddedChannel open(String uri) {
+        EmbeddedChannel channel = new EmbeddedChannel(tracker);
+        channel.writeInbound(new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, uri));
+        return channel;
+    }
+
+    private static SocketIOClient client(UUID sid) {
+        SocketIOClient client = Mockito.mock(SocketIOClient.class);
+        when(client.getSessionId()).thenReturn(sid);
+        return client;
+    }
+}
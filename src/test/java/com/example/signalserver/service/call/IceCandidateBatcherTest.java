@@ -0,0 +1,217 @@
+package com.example.signalserver.service.call;
+
+import com.corundumstudio.socketio.SocketIOClient;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Склейка кандидатов через настоящий OutboundDispatcher; сокет заменён
+ * клиентом-заглушкой, записывающим полученные события.
+ */
+class IceCandidateBatcherTest {
+
+    private static final long WINDOW_MS = 20;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final OutboundDispatcher outbound = new OutboundDispatcher();
+    private final IceCandidateBatcher batcher = new IceCandidateBatcher();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(outbound, "lowWatermark", 64);
+        ReflectionTestUtils.setField(outbound, "highWatermark", 256);
+        ReflectionTestUtils.setField(outbound, "maxDepth", 1024);
+        ReflectionTestUtils.setField(outbound, "drainBatch", 64);
+        ReflectionTestUtils.setField(outbound, "drainIntervalMs", 20L);
+        ReflectionTestUtils.setField(outbound, "staleIceMs", 5000L);
+        ReflectionTestUtils.setField(outbound, "pollingInFlight", 32);
+        ReflectionTestUtils.setField(outbound, "slowTimeoutMs", 10000L);
+        ReflectionTestUtils.setField(outbound, "writabilityTracker", new ChannelWritabilityTracker());
+        ReflectionTestUtils.setField(outbound, "objectMapper", objectMapper);
+        ReflectionTestUtils.setField(outbound, "meterRegistry", meterRegistry);
+        outbound.init();
+
+        ReflectionTestUtils.setField(batcher, "windowMs", WINDOW_MS);
+        ReflectionTestUtils.setField(batcher, "outbound", outbound);
+        ReflectionTestUtils.setField(batcher, "meterRegistry", meterRegistry);
+        batcher.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        batcher.shutdown();
+        outbound.shutdown();
+    }
+
+    @Test
+    void burstFromOneSenderArrivesAsOneFrame() throws InterruptedException {
+        FakeClient receiver = new FakeClient();
+        PeerSession target = receiver.session();
+
+        for (int i = 0; i < 20; i++) {
+            batcher.add("alice", target, candidate("alice", i));
+        }
+        receiver.awaitEvents(1);
+
+        assertEquals(List.of(SignalingService.EVENT_ICE_CANDIDATES), receiver.eventNames());
+        assertEquals(20, receiver.events.get(0).payload().path("candidates").size());
+        assertEquals("alice", receiver.events.get(0).payload().path("from").asText());
+        assertEquals(19, meterRegistry.counter("signaling.ice.emits_saved").count());
+    }
+
+    @Test
+    void sendersAreBatchedSeparately() throws InterruptedException {
+        FakeClient receiver = new FakeClient();
+        PeerSession target = receiver.session();
+
+        for (int i = 0; i < 5; i++) {
+            batcher.add("alice", target, candidate("alice", i));
+            batcher.add("bob", target, candidate("bob", i));
+        }
+        receiver.awaitEvents(2);
+
+        assertEquals(2, receiver.events.size());
+        for (FakeClient.Received event : receiver.events) {
+            assertEquals(5, event.payload().path("candidates").size());
+        }
+    }
+
+    @Test
+    void singleCandidateKeepsPlainEvent() throws InterruptedException {
+        FakeClient receiver = new FakeClient();
+
+        batcher.add("alice", receiver.session(), candidate("alice", 0));
+        receiver.awaitEvents(1);
+
+        assertEquals(List.of(SignalingService.EVENT_ICE_CANDIDATE), receiver.eventNames());
+        assertEquals(0, meterRegistry.counter("signaling.ice.emits_saved").count());
+    }
+
+    @Test
+    void endOfCandidatesFlushesWithoutWaitingForWindow() throws InterruptedException {
+        ReflectionTestUtils.setField(batcher, "windowMs", 60_000L);
+        FakeClient receiver = new FakeClient();
+        PeerSession target = receiver.session();
+
+        batcher.add("alice", target, candidate("alice", 0));
+        batcher.add("alice", target, candidate("alice", 1));
+        ObjectNode end = objectMapper.createObjectNode().put("from", "alice");
+        end.putObject("candidate").put("candidate", "");
+        batcher.add("alice", target, end);
+        receiver.awaitEvents(1);
+
+        assertEquals(3, receiver.events.get(0).payload().path("candidates").size());
+    }
+
+    @Test
+    void otherEventsPushOutPendingCandidatesFirst() {
+        ReflectionTestUtils.setField(batcher, "windowMs", 60_000L);
+        FakeClient receiver = new FakeClient();
+        PeerSession target = receiver.session();
+
+        batcher.add("alice", target, candidate("alice", 0));
+        batcher.add("alice", target, candidate("alice", 1));
+        batcher.flush("alice", target);
+        outbound.send(target, SignalingService.EVENT_OFFER, objectMapper.createObjectNode().put("from", "alice"));
+
+        assertEquals(List.of(SignalingService.EVENT_ICE_CANDIDATES, SignalingService.EVENT_OFFER), receiver.eventNames());
+    }
+
+    @Test
+    void flushDrainsOnCallerThread() {
+        ReflectionTestUtils.setField(batcher, "windowMs", 60_000L);
+        FakeClient receiver = new FakeClient();
+        PeerSession target = receiver.session();
+
+        batcher.add("alice", target, candidate("alice", 0));
+        batcher.add("alice", target, candidate("alice", 1));
+        // Поток таймера больше не работает - выталкивание не должно от него зависеть
+        batcher.shutdown();
+        batcher.flush("alice", target);
+        batcher.flush("bob", target);
+        outbound.send(target, SignalingService.EVENT_ANSWER, objectMapper.createObjectNode().put("from", "alice"));
+
+        assertEquals(List.of(SignalingService.EVENT_ICE_CANDIDATES, SignalingService.EVENT_ANSWER), receiver.eventNames());
+    }
+
+    @Test
+    void clientsWithoutBatchFlagGetCandidatesOneByOne() {
+        FakeClient receiver = new FakeClient();
+        PeerSession target = receiver.session(false);
+
+        for (int i = 0; i < 3; i++) {
+            batcher.add("alice", target, candidate("alice", i));
+        }
+        batcher.flush("alice", target);
+
+        assertEquals(List.of(SignalingService.EVENT_ICE_CANDIDATE, SignalingService.EVENT_ICE_CANDIDATE,
+                SignalingService.EVENT_ICE_CANDIDATE), receiver.eventNames());
+    }
+
+    private ObjectNode candidate(String from, int index) {
+        ObjectNode payload = objectMapper.createObjectNode().put("from", from);
+        payload.putObject("candidate")
+                .put("candidate", "candidate:" + index + " 1 udp 2122260223 10.0.0.1 " + (50000 + index) + " typ host")
+                .put("sdpMid", "0");
+        return payload;
+    }
+
+    /**
+     * Заглушка клиента Socket.IO: запоминает события, отправленные сокету
+     */
+    private final class FakeClient {
+
+        record Received(String event, JsonNode payload, long seq) {
+        }
+
+        final List<Received> events = new CopyOnWriteArrayList<>();
+
+        final SocketIOClient client = Mockito.mock(SocketIOClient.class, invocation -> {
+            if (invocation.getMethod().getName().equals("sendEvent")) {
+                Object[] args = invocation.getArguments();
+                events.add(new Received((String) args[0], (JsonNode) args[1], (Long) args[2]));
+                return null;
+            }
+            return Mockito.RETURNS_DEFAULTS.answer(invocation);
+        });
+
+        PeerSession session() {
+            return session(true);
+        }
+
+        PeerSession session(boolean iceBatching) {
+            PeerSession peer = new PeerSession(client, 1, "receiver", 64 * 1024);
+            peer.setIceBatching(iceBatching);
+            outbound.open(peer);
+            return peer;
+        }
+
+        List<String> eventNames() {
+            return events.stream().map(Received::event).toList();
+        }
+
+        void awaitEvents(int count) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + 2000;
+            while (events.size() < count && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            assertTrue(events.size() >= count, "Expected " + count + " events, got " + events);
+            // Окно склейки прошло - лишних событий быть не должно
+            Thread.sleep(WINDOW_MS * 2);
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package com.example.signalserver.service.call;
+
+import com.corundumstudio.socketio.SocketIOClient;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.WriteBufferWaterMark;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultHttpRequest;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpVersion;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Очереди сокетов через настоящий OutboundDispatcher: websocket-канал -
+ * EmbeddedChannel, найденный ChannelWritabilityTracker по sid, который
+ * делается незаписываемым неотправленной записью.
+ */
+class OutboundDispatcherTest {
+
+    private static final long SLOW_TIMEOUT_MS = 200;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ChannelWritabilityTracker tracker = new ChannelWritabilityTracker();
+    private final OutboundDispatcher outbound = new OutboundDispatcher();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(outbound, "lowWatermark", 2);
+        ReflectionTestUtils.setField(outbound, "highWatermark", 4);
+        ReflectionTestUtils.setField(outbound, "maxDepth", 8);
+        ReflectionTestUtils.setField(outbound, "drainBatch", 64);
+        ReflectionTestUtils.setField(outbound, "drainIntervalMs", 10L);
+        ReflectionTestUtils.setField(outbound, "staleIceMs", 5000L);
+        ReflectionTestUtils.setField(outbound, "pollingInFlight", 32);
+        ReflectionTestUtils.setField(outbound, "slowTimeoutMs", SLOW_TIMEOUT_MS);
+        ReflectionTestUtils.setField(outbound, "writabilityTracker", tracker);
+        ReflectionTestUtils.setField(outbound, "objectMapper", objectMapper);
+        ReflectionTestUtils.setField(outbound, "meterRegistry", meterRegistry);
+        outbound.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        outbound.shutdown();
+    }
+
+    @Test
+    void queuedEventsAreDrainedWhenChannelRecovers() throws InterruptedException {
+        Socket socket = new Socket();
+        PeerSession peer = socket.session();
+
+        socket.block();
+        outbound.send(peer, SignalingService.EVENT_OFFER, payload("alice"));
+        outbound.send(peer, SignalingService.EVENT_ICE_CANDIDATE, payload("alice"));
+        Thread.sleep(50);
+        assertTrue(socket.events.isEmpty(), "Nothing is written while the channel is over its watermark");
+
+        socket.unblock();
+        socket.awaitEvents(2);
+        assertEquals(List.of(SignalingService.EVENT_OFFER, SignalingService.EVENT_ICE_CANDIDATE), socket.events);
+    }
+
+    @Test
+    void iceIsDroppedOnceQueueIsCongested() {
+        Socket socket = new Socket();
+        PeerSession peer = socket.session();
+
+        socket.block();
+        for (int i = 0; i < 4; i++) {
+            outbound.send(peer, SignalingService.EVENT_OFFER, payload("alice"));
+        }
+        outbound.send(peer, SignalingService.EVENT_ICE_CANDIDATE, payload("alice"));
+
+        assertEquals(4, peer.getOutbox().size());
+        assertEquals(1, meterRegistry.counter("signaling.outbox.dropped", "reason", "congested").count());
+    }
+
+    @Test
+    void peerMediaIsCoalescedPerPeer() {
+        Socket socket = new Socket();
+        PeerSession peer = socket.session();
+
+        socket.block();
+        outbound.send(peer, SignalingService.EVENT_PEER_MEDIA, payload("bob"));
+        outbound.send(peer, SignalingService.EVENT_PEER_MEDIA, payload("bob"));
+        outbound.send(peer, SignalingService.EVENT_PEER_MEDIA, payload("carol"));
+
+        assertEquals(2, peer.getOutbox().size());
+        assertEquals(1, meterRegistry.counter("signaling.outbox.coalesced").count());
+    }
+
+    @Test
+    void overflowEvictsSocket() {
+        Socket socket = new Socket();
+        PeerSession peer = socket.session();
+
+        socket.block();
+        for (int i = 0; i < 9; i++) {
+            outbound.send(peer, SignalingService.EVENT_OFFER, payload("alice"));
+        }
+
+        assertTrue(peer.isEvicted(), "Evicted session is closed as RECONNECTING by CallSessionRecorder");
+        assertNull(peer.getOutbox());
+        verify(socket.client).disconnect();
+        assertEquals(1, meterRegistry.counter("signaling.outbox.evicted").count());
+    }
+
+    @Test
+    void stalledQueueEvictsSocket() throws InterruptedException {
+        Socket socket = new Socket();
+        PeerSession peer = socket.session();
+
+        socket.block();
+        outbound.send(peer, SignalingService.EVENT_OFFER, payload("alice"));
+
+        long deadline = System.currentTimeMillis() + SLOW_TIMEOUT_MS * 10;
+        while (!peer.isEvicted() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(peer.isEvicted());
+        // Отключение идёт следом за пометкой в потоке дописывания
+        verify(socket.client, timeout(1000)).disconnect();
+    }
+
+    @Test
+    void movingQueueIsNotEvicted() throws InterruptedException {
+        Socket socket = new Socket();
+        PeerSession peer = socket.session();
+
+        socket.block();
+        outbound.send(peer, SignalingService.EVENT_OFFER, payload("alice"));
+        Thread.sleep(SLOW_TIMEOUT_MS / 2);
+        socket.unblock();
+        socket.awaitEvents(1);
+        Thread.sleep(SLOW_TIMEOUT_MS);
+
+        assertFalse(peer.isEvicted());
+        verify(socket.client, never()).disconnect();
+    }
+
+    @Test
+    void resumeReplaysOnlyEventsAfterLastSeq() {
+        Socket wifi = new Socket();
+        PeerSession peer = wifi.session();
+        for (int i = 0; i < 3; i++) {
+            outbound.send(peer, SignalingService.EVENT_OFFER, payload("alice"));
+        }
+        assertTrue(outbound.detach(peer, wifi.client));
+        // Сокета нет - события копятся только в буфере повтора
+        outbound.send(peer, SignalingService.EVENT_ANSWER, payload("bob"));
+        outbound.send(peer, SignalingService.EVENT_PEER_MEDIA, payload("bob"));
+
+        Socket lte = new Socket();
+        // Клиент успел получить seq 1 и 2
+        assertTrue(outbound.resume(peer, lte.client, 2));
+
+        assertEquals(List.of(1L, 2L, 3L), wifi.seqs);
+        assertEquals(List.of(3L, 4L, 5L), lte.seqs);
+        assertEquals(List.of(SignalingService.EVENT_OFFER, SignalingService.EVENT_ANSWER,
+                SignalingService.EVENT_PEER_MEDIA), lte.events);
+        assertSame(lte.client, peer.getClient());
+        assertFalse(outbound.detach(peer, wifi.client), "The old socket no longer owns the session");
+    }
+
+    private ObjectNode payload(String peerId) {
+        return objectMapper.createObjectNode().put("peerId", peerId).put("from", peerId);
+    }
+
+    /**
+     * Сокет с websocket-каналом: события, отправленные клиенту, запоминаются
+     */
+    private final class Socket {
+
+        final UUID sid = UUID.randomUUID();
+        final List<String> events = new CopyOnWriteArrayList<>();
+        final List<Long> seqs = new CopyOnWriteArrayList<>();
+        final EmbeddedChannel channel = new EmbeddedChannel(tracker);
+
+        final SocketIOClient client = Mockito.mock(SocketIOClient.class, invocation -> {
+            if (invocation.getMethod().getName().equals("sendEvent")) {
+                events.add((String) invocation.getArguments()[0]);
+                seqs.add((Long) invocation.getArguments()[2]);
+                return null;
+            }
+            return Mockito.RETURNS_DEFAULTS.answer(invocation);
+        });
+
+        Socket() {
+            when(client.getSessionId()).thenReturn(sid);
+            channel.config().setWriteBufferWaterMark(new WriteBufferWaterMark(8, 16));
+            channel.writeInbound(new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET,
+                    "/socket.io/?EIO=4&transport=websocket&sid=" + sid));
+        }
+
+        PeerSession session() {
+            PeerSession peer = new PeerSession(client, 1, "receiver", 64 * 1024);
+            outbound.open(peer);
+            return peer;
+        }
+
+        void block() {
+            channel.write(Unpooled.wrappedBuffer(new byte[32]));
+            assertFalse(channel.isWritable());
+        }
+
+        void unblock() {
+            channel.flush();
+            channel.releaseOutbound();
+        }
+
+        void awaitEvents(int count) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + 2000;
+            while (events.size() < count && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            assertTrue(events.size() >= count, "Expected " + count + " events, got " + events);
+        }
+    }
+}
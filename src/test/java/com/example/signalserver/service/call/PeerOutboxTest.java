@@ -0,0 +1,181 @@
+package com.example.signalserver.service.call;
+
+import com.corundumstudio.socketio.SocketIOClient;
+import com.corundumstudio.socketio.Transport;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.WriteBufferWaterMark;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.when;
+
+/**
+ * Очередь одного сокета: записываемость задаёт EmbeddedChannel, который
+ * переполняется неотправленной записью, у polling-клиента - счётчик его запросов.
+ */
+class PeerOutboxTest {
+
+    // low=2, high=4, max=8, по одному событию за дописывание, ICE живёт 1 с, polling - 2 события
+    private static final PeerOutbox.Limits LIMITS = new PeerOutbox.Limits(2, 4, 8, 1, 1000, 2);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final Counter staleCounter = meterRegistry.counter("stale");
+    private final Counter congestedCounter = meterRegistry.counter("congested");
+
+    private final List<Sent> sent = new CopyOnWriteArrayList<>();
+    private final SocketIOClient client = Mockito.mock(SocketIOClient.class, invocation -> {
+        if (invocation.getMethod().getName().equals("sendEvent")) {
+            Object[] args = invocation.getArguments();
+            sent.add(new Sent((String) args[0], args[1], (Long) args[2]));
+            return null;
+        }
+        return Mockito.RETURNS_DEFAULTS.answer(invocation);
+    });
+
+    private EmbeddedChannel channel;
+    private PeerOutbox outbox;
+
+    record Sent(String event, Object payload, long seq) {
+    }
+
+    @BeforeEach
+    void setUp() {
+        channel = new EmbeddedChannel();
+        channel.config().setWriteBufferWaterMark(new WriteBufferWaterMark(8, 16));
+        outbox = new PeerOutbox(client, () -> channel, () -> 0, LIMITS, staleCounter, congestedCounter);
+    }
+
+    @Test
+    void writableChannelSendsImmediately() {
+        assertEquals(PeerOutbox.Outcome.SENT, outbox.offer("offer", "sdp", 1, PeerOutbox.Kind.CRITICAL, null, 0));
+
+        assertEquals(List.of(new Sent("offer", "sdp", 1)), sent);
+        assertEquals(0, outbox.size());
+    }
+
+    @Test
+    void congestionDropsQueuedIceUntilLowWatermark() {
+        block();
+        assertEquals(PeerOutbox.Outcome.QUEUED, ice(1, 0));
+        critical(2);
+        critical(3);
+        // Четвёртое событие - верхняя граница: кандидат выбрасывается из очереди
+        assertEquals(PeerOutbox.Outcome.QUEUED, critical(4));
+        assertEquals(3, outbox.size());
+        assertEquals(1, congestedCounter.count());
+
+        assertEquals(PeerOutbox.Outcome.DROPPED, ice(5, 0));
+        assertEquals(2, congestedCounter.count());
+
+        unblock();
+        assertEquals(2, outbox.drain(0));
+        // Спуск до нижней границы снимает перегрузку
+        assertEquals(PeerOutbox.Outcome.QUEUED, ice(6, 0));
+        assertEquals(List.of(2L), seqs());
+    }
+
+    @Test
+    void staleIceIsSkippedOnDrain() {
+        block();
+        ice(1, 0);
+        critical(2);
+        ice(3, 900);
+
+        unblock();
+        // Просроченный кандидат пропускается и не занимает место в пачке дописывания
+        assertEquals(1, outbox.drain(1500));
+        assertEquals(1, staleCounter.count());
+        assertEquals(List.of(2L), seqs());
+
+        outbox.drain(1500);
+        assertEquals(List.of(2L, 3L), seqs());
+    }
+
+    @Test
+    void latestStateReplacesUnsentValueAndKeepsSeq() {
+        block();
+        outbox.offer(SignalingService.EVENT_PEER_MEDIA, "muted", 1, PeerOutbox.Kind.LATEST, "bob", 0);
+        critical(2);
+        assertEquals(PeerOutbox.Outcome.COALESCED,
+                outbox.offer(SignalingService.EVENT_PEER_MEDIA, "unmuted", 3, PeerOutbox.Kind.LATEST, "bob", 0));
+        assertEquals(PeerOutbox.Outcome.QUEUED,
+                outbox.offer(SignalingService.EVENT_PEER_MEDIA, "muted", 4, PeerOutbox.Kind.LATEST, "carol", 0));
+
+        unblock();
+        outbox.drain(0);
+        outbox.drain(0);
+        outbox.drain(0);
+
+        assertEquals(new Sent(SignalingService.EVENT_PEER_MEDIA, "unmuted", 1), sent.get(0));
+        assertEquals(List.of(1L, 2L, 4L), seqs());
+    }
+
+    @Test
+    void fullQueueOverflowsAndUnmovingQueueStalls() {
+        block();
+        for (int seq = 1; seq <= 8; seq++) {
+            assertEquals(PeerOutbox.Outcome.QUEUED, critical(seq));
+        }
+        assertEquals(PeerOutbox.Outcome.OVERFLOW, critical(9));
+
+        assertEquals(8, outbox.drain(6000));
+        assertTrue(outbox.isStalled(6000, 5000));
+
+        unblock();
+        outbox.drain(7000);
+        assertFalse(outbox.isStalled(7000, 5000), "Progress restarts the stall timer");
+    }
+
+    @Test
+    void pollingClientGetsLimitedEventsBetweenPolls() {
+        AtomicLong polls = new AtomicLong();
+        when(client.getTransport()).thenReturn(Transport.POLLING);
+        outbox = new PeerOutbox(client, () -> null, polls::get, LIMITS, staleCounter, congestedCounter);
+
+        assertEquals(PeerOutbox.Outcome.SENT, critical(1));
+        assertEquals(PeerOutbox.Outcome.SENT, critical(2));
+        assertEquals(PeerOutbox.Outcome.QUEUED, critical(3));
+        assertEquals(1, outbox.drain(0), "No poll yet - nothing more is handed to netty-socketio");
+
+        polls.incrementAndGet();
+        outbox.drain(0);
+        assertEquals(List.of(1L, 2L, 3L), seqs());
+    }
+
+    private PeerOutbox.Outcome critical(long seq) {
+        return outbox.offer(SignalingService.EVENT_OFFER, "sdp", seq, PeerOutbox.Kind.CRITICAL, null, 1000);
+    }
+
+    private PeerOutbox.Outcome ice(long seq, long now) {
+        return outbox.offer(SignalingService.EVENT_ICE_CANDIDATE, "candidate", seq, PeerOutbox.Kind.DROPPABLE, null, now);
+    }
+
+    private List<Long> seqs() {
+        return sent.stream().map(Sent::seq).toList();
+    }
+
+    /**
+     * Неотправленная запись выше верхней границы буфера делает канал незаписываемым
+     */
+    private void block() {
+        channel.write(Unpooled.wrappedBuffer(new byte[32]));
+        assertFalse(channel.isWritable());
+    }
+
+    private void unblock() {
+        channel.flush();
+        channel.releaseOutbound();
+        assertTrue(channel.isWritable());
+    }
+}
@@ -0,0 +1,251 @@
+package com.example.signalserver.service.call;
+
+import com.corundumstudio.socketio.HandshakeData;
+import com.corundumstudio.socketio.SocketIOClient;
+import com.example.signalserver.service.user.PresenceService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.netty.handler.codec.http.DefaultHttpHeaders;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Возобновление сессии: SessionResumption напрямую и путь подключения
+ * SignalingService с настоящими OutboundDispatcher и буфером повтора; сокеты -
+ * клиенты-заглушки, записывающие полученные события.
+ */
+class SessionResumptionTest {
+
+    private static final long USER_ID = 1;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final SessionResumption resumption = new SessionResumption();
+    private final OutboundDispatcher outbound = new OutboundDispatcher();
+    private final PresenceService presenceService = Mockito.mock(PresenceService.class);
+    private final SignalingService signaling = new SignalingService();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(resumption, "graceMs", 60_000L);
+        ReflectionTestUtils.setField(resumption, "bufferBytes", 32 * 1024);
+        ReflectionTestUtils.setField(resumption, "meterRegistry", meterRegistry);
+        resumption.init();
+
+        ReflectionTestUtils.setField(outbound, "lowWatermark", 64);
+        ReflectionTestUtils.setField(outbound, "highWatermark", 256);
+        ReflectionTestUtils.setField(outbound, "maxDepth", 1024);
+        ReflectionTestUtils.setField(outbound, "drainBatch", 64);
+        ReflectionTestUtils.setField(outbound, "drainIntervalMs", 20L);
+        ReflectionTestUtils.setField(outbound, "staleIceMs", 5000L);
+        ReflectionTestUtils.setField(outbound, "pollingInFlight", 32);
+        ReflectionTestUtils.setField(outbound, "slowTimeoutMs", 10000L);
+        ReflectionTestUtils.setField(outbound, "writabilityTracker", new ChannelWritabilityTracker());
+        ReflectionTestUtils.setField(outbound, "objectMapper", objectMapper);
+        ReflectionTestUtils.setField(outbound, "meterRegistry", meterRegistry);
+        outbound.init();
+
+        ReflectionTestUtils.setField(signaling, "sessionResumption", resumption);
+        ReflectionTestUtils.setField(signaling, "outbound", outbound);
+        ReflectionTestUtils.setField(signaling, "presenceService", presenceService);
+    }
+
+    @AfterEach
+    void tearDown() {
+        outbound.shutdown();
+        resumption.shutdown();
+    }
+
+    @Test
+    void claimAndExpiryNeverBothWin() throws InterruptedException {
+        ReflectionTestUtils.setField(resumption, "graceMs", 100L);
+        List<PeerSession> sessions = new ArrayList<>();
+        Map<PeerSession, AtomicInteger> expired = new ConcurrentHashMap<>();
+        for (int i = 0; i < 200; i++) {
+            FakeClient socket = new FakeClient(null);
+            PeerSession peer = resumption.open(socket.client, USER_ID, "alice");
+            AtomicInteger expiries = new AtomicInteger();
+            expired.put(peer, expiries);
+            sessions.add(peer);
+            resumption.park(peer, socket.client, expiries::incrementAndGet);
+        }
+
+        // Захваты идут, пока колесо таймера истекает те же сессии
+        Thread.sleep(90);
+        Map<PeerSession, Boolean> claimed = new ConcurrentHashMap<>();
+        for (PeerSession peer : sessions) {
+            claimed.put(peer, resumption.claim(peer.getResumeToken(), USER_ID) != null);
+        }
+        Thread.sleep(400);
+
+        for (PeerSession peer : sessions) {
+            int expiries = expired.get(peer).get();
+            assertTrue(expiries <= 1);
+            assertNotEquals(claimed.get(peer), expiries == 1, "Exactly one of claim and expiry wins");
+        }
+        assertEquals(0, resumption.getParkedCount());
+        assertEquals(200, meterRegistry.counter("signaling.resume", "result", "resumed").count()
+                + meterRegistry.counter("signaling.resume", "result", "expired").count());
+    }
+
+    @Test
+    void expiredSessionCannotBeClaimed() throws InterruptedException {
+        ReflectionTestUtils.setField(resumption, "graceMs", 50L);
+        FakeClient socket = new FakeClient(null);
+        PeerSession peer = resumption.open(socket.client, USER_ID, "alice");
+        AtomicInteger expiries = new AtomicInteger();
+        resumption.park(peer, socket.client, expiries::incrementAndGet);
+
+        long deadline = System.currentTimeMillis() + 2000;
+        while (expiries.get() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertEquals(1, expiries.get());
+        assertNull(resumption.claim(peer.getResumeToken(), USER_ID));
+    }
+
+    @Test
+    void tokenOfAnotherUserIsRejected() {
+        FakeClient socket = new FakeClient(null);
+        PeerSession peer = resumption.open(socket.client, USER_ID, "alice");
+        resumption.park(peer, socket.client, () -> { });
+
+        assertNull(resumption.claim(peer.getResumeToken(), USER_ID + 1));
+        assertEquals(1, meterRegistry.counter("signaling.resume", "result", "rejected").count());
+        // Чужая попытка не снимает сессию с парковки
+        assertEquals(1, resumption.getParkedCount());
+        assertSame(peer, resumption.claim(peer.getResumeToken(), USER_ID));
+        assertEquals(0, resumption.getParkedCount());
+    }
+
+    @Test
+    void resumeFromSeqOlderThanBufferStartsNewSession() {
+        ReflectionTestUtils.setField(resumption, "bufferBytes", 256);
+        FakeClient wifi = new FakeClient(null);
+        connect(wifi);
+        PeerSession peer = wifi.client.get("peer");
+        for (int i = 0; i < 20; i++) {
+            outbound.send(peer, SignalingService.EVENT_OFFER, objectMapper.createObjectNode().put("from", "bob" + i));
+        }
+        wifi.disconnect();
+        ReflectionTestUtils.invokeMethod(signaling, "onDisconnect", wifi.client);
+        assertEquals(1, resumption.getParkedCount());
+
+        FakeClient lte = new FakeClient(Map.of("resume", peer.getResumeToken(), "seq", "1"));
+        connect(lte);
+
+        // Пропущенное вытеснено из буфера - прежняя сессия завершена, открыта новая
+        verify(presenceService).disconnected(USER_ID);
+        assertEquals(0, resumption.getParkedCount());
+        assertNull(resumption.claim(peer.getResumeToken(), USER_ID));
+        assertEquals(1, lte.events.size());
+        JsonNode session = lte.events.get(0).payload();
+        assertFalse(session.path("resumed").asBoolean());
+        assertNotEquals(peer.getPeerId(), session.path("peerId").asText());
+    }
+
+    @Test
+    void replacedSocketDisconnectDoesNotPark() {
+        FakeClient wifi = new FakeClient(null);
+        connect(wifi);
+        PeerSession peer = wifi.client.get("peer");
+
+        // Переход на LTE, пока Wi-Fi сокет ещё открыт
+        FakeClient lte = new FakeClient(Map.of("resume", peer.getResumeToken(), "seq", "1"));
+        connect(lte);
+        assertTrue(wifi.disconnected, "The previous socket is closed by the server");
+        ReflectionTestUtils.invokeMethod(signaling, "onDisconnect", wifi.client);
+
+        assertEquals(0, resumption.getParkedCount());
+        assertSame(lte.client, peer.getClient());
+        assertNotNull(peer.getOutbox());
+        verify(presenceService, never()).disconnected(anyLong());
+        assertEquals(1, lte.events.size());
+        assertTrue(lte.events.get(0).payload().path("resumed").asBoolean());
+        assertEquals(2, lte.events.get(0).seq());
+    }
+
+    private void connect(FakeClient socket) {
+        ReflectionTestUtils.invokeMethod(signaling, "completeConnect", socket.client, USER_ID, "alice");
+    }
+
+    /**
+     * Заглушка клиента Socket.IO: хранит атрибуты, запоминает полученные события
+     * и закрытие сокета сервером
+     */
+    private static final class FakeClient {
+
+        record Received(String event, JsonNode payload, long seq) {
+        }
+
+        final List<Received> events = new CopyOnWriteArrayList<>();
+        final Map<String, Object> attributes = new ConcurrentHashMap<>();
+        final UUID sessionId = UUID.randomUUID();
+        final HandshakeData handshake;
+        volatile boolean disconnected;
+
+        final SocketIOClient client;
+
+        FakeClient(Map<String, String> urlParams) {
+            Map<String, List<String>> params = new ConcurrentHashMap<>();
+            if (urlParams != null) {
+                urlParams.forEach((name, value) -> params.put(name, List.of(value)));
+            }
+            handshake = new HandshakeData(new DefaultHttpHeaders(), params, null, "/socket.io/", false);
+            client = Mockito.mock(SocketIOClient.class, invocation -> {
+                Object[] args = invocation.getArguments();
+                return switch (invocation.getMethod().getName()) {
+                    case "sendEvent" -> {
+                        events.add(new Received((String) args[0], (JsonNode) args[1], (Long) args[2]));
+                        yield null;
+                    }
+                    case "set" -> {
+                        attributes.put((String) args[0], args[1]);
+                        yield null;
+                    }
+                    case "get" -> attributes.get((String) args[0]);
+                    case "del" -> {
+                        attributes.remove((String) args[0]);
+                        yield null;
+                    }
+                    case "isChannelOpen" -> !disconnected;
+                    case "disconnect" -> {
+                        disconnect();
+                        yield null;
+                    }
+                    case "getSessionId" -> sessionId;
+                    case "getHandshakeData" -> handshake;
+                    default -> Mockito.RETURNS_DEFAULTS.answer(invocation);
+                };
+            });
+        }
+
+        void disconnect() {
+            disconnected = true;
+        }
+    }
+}
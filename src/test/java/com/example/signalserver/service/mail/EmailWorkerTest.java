@@ -0,0 +1,227 @@
+package com.example.signalserver.service.mail;
+
+import com.example.signalserver.config.MailQueueConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+/**
+ * EmailWorker против SMTP-заглушки на локальном сокете: настоящий JavaMailSender,
+ * настоящие шаблоны, RabbitTemplate заменён моком для проверки повторов и DLQ.
+ */
+class EmailWorkerTest {
+
+    private static final int MAX_ATTEMPTS = 3;
+    private static final String REJECTED = "missing@example.com";
+
+    private SmtpStub smtp;
+    private RabbitTemplate rabbitTemplate;
+    private EmailWorker worker;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        smtp = new SmtpStub(Set.of(REJECTED));
+        rabbitTemplate = mock(RabbitTemplate.class);
+        worker = newWorker(smtp.port());
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        smtp.close();
+    }
+
+    @Test
+    void batchIsSentOverOneConnection() {
+        worker.onBatch(List.of(
+                EmailJob.of(EmailJob.Type.EMAIL_VERIFICATION, "alice@example.com", "Alice", "t1"),
+                EmailJob.of(EmailJob.Type.PASSWORD_RESET, "bob@example.com", "Bob", "t2")));
+
+        assertEquals(1, smtp.connections.get());
+        assertEquals(2, smtp.messages.size());
+        assertEquals(List.of("alice@example.com"), smtp.messages.get(0).recipients());
+        assertTrue(smtp.messages.get(0).data().contains("Subject: Verify your email address"));
+        assertEquals(List.of("bob@example.com"), smtp.messages.get(1).recipients());
+        assertTrue(smtp.messages.get(1).data().contains("Subject: Reset your password"));
+        verifyNoInteractions(rabbitTemplate);
+    }
+
+    @Test
+    void rejectedMessageIsRetriedAndTheRestDelivered() {
+        EmailJob rejected = EmailJob.of(EmailJob.Type.EMAIL_VERIFICATION, REJECTED, "Ghost", "t1");
+
+        worker.onBatch(List.of(
+                rejected,
+                EmailJob.of(EmailJob.Type.EMAIL_VERIFICATION, "alice@example.com", "Alice", "t2")));
+
+        assertEquals(1, smtp.messages.size());
+        assertEquals(List.of("alice@example.com"), smtp.messages.get(0).recipients());
+
+        ArgumentCaptor<EmailJob> retried = ArgumentCaptor.forClass(EmailJob.class);
+        verify(rabbitTemplate).convertAndSend(eq(MailQueueConfig.MAIL_EXCHANGE),
+                eq(MailQueueConfig.RETRY_ROUTING_KEY), retried.capture());
+        assertEquals(REJECTED, retried.getValue().getTo());
+        assertEquals(1, retried.getValue().getAttempt());
+        verify(rabbitTemplate, never()).convertAndSend(anyString(), eq(MailQueueConfig.DEAD_ROUTING_KEY), any(Object.class));
+    }
+
+    @Test
+    void lastFailedAttemptGoesToDeadLetterQueue() {
+        EmailJob rejected = new EmailJob(EmailJob.Type.PASSWORD_RESET, REJECTED, "Ghost", "t1", MAX_ATTEMPTS - 1);
+
+        worker.onBatch(List.of(rejected));
+
+        verify(rabbitTemplate).convertAndSend(MailQueueConfig.MAIL_EXCHANGE, MailQueueConfig.DEAD_ROUTING_KEY, rejected);
+        verify(rabbitTemplate, never()).convertAndSend(anyString(), eq(MailQueueConfig.RETRY_ROUTING_KEY), any(Object.class));
+    }
+
+    @Test
+    void unreachableServerRetriesWholeBatch() throws IOException {
+        int port = smtp.port();
+        smtp.close();
+        worker = newWorker(port);
+
+        worker.onBatch(List.of(
+                EmailJob.of(EmailJob.Type.EMAIL_VERIFICATION, "alice@example.com", "Alice", "t1"),
+                EmailJob.of(EmailJob.Type.EMAIL_VERIFICATION, "bob@example.com", "Bob", "t2")));
+
+        ArgumentCaptor<EmailJob> retried = ArgumentCaptor.forClass(EmailJob.class);
+        verify(rabbitTemplate, times(2)).convertAndSend(eq(MailQueueConfig.MAIL_EXCHANGE),
+                eq(MailQueueConfig.RETRY_ROUTING_KEY), retried.capture());
+        assertEquals(Set.of("alice@example.com", "bob@example.com"),
+                Set.copyOf(retried.getAllValues().stream().map(EmailJob::getTo).toList()));
+    }
+
+    private EmailWorker newWorker(int port) {
+        JavaMailSenderImpl mailSender = new JavaMailSenderImpl();
+        mailSender.setHost("localhost");
+        mailSender.setPort(port);
+        mailSender.getJavaMailProperties().put("mail.smtp.connectiontimeout", "2000");
+        mailSender.getJavaMailProperties().put("mail.smtp.timeout", "2000");
+
+        EmailWorker emailWorker = new EmailWorker();
+        ReflectionTestUtils.setField(emailWorker, "from", "no-reply@signalserver.local");
+        ReflectionTestUtils.setField(emailWorker, "baseUrl", "http://localhost:8080");
+        ReflectionTestUtils.setField(emailWorker, "supportEmail", "support@signalserver.local");
+        ReflectionTestUtils.setField(emailWorker, "maxAttempts", MAX_ATTEMPTS);
+        ReflectionTestUtils.setField(emailWorker, "appName", "SignalServer");
+        ReflectionTestUtils.setField(emailWorker, "mailSender", mailSender);
+        ReflectionTestUtils.setField(emailWorker, "mailTemplateEngine", new MailQueueConfig().mailTemplateEngine());
+        ReflectionTestUtils.setField(emailWorker, "rabbitTemplate", rabbitTemplate);
+        return emailWorker;
+    }
+
+    private record ReceivedMessage(List<String> recipients, String data) {
+    }
+
+    /**
+     * Минимальный SMTP-сервер: принимает письма, отклоняет RCPT для заданных адресов
+     */
+    private static final class SmtpStub implements AutoCloseable {
+
+        private final ServerSocket serverSocket;
+        private final Set<String> rejected;
+        private final AtomicInteger connections = new AtomicInteger();
+        private final List<ReceivedMessage> messages = new CopyOnWriteArrayList<>();
+
+        SmtpStub(Set<String> rejected) throws IOException {
+            this.rejected = rejected;
+            this.serverSocket = new ServerSocket(0);
+            Thread acceptor = new Thread(this::acceptLoop, "smtp-stub");
+            acceptor.setDaemon(true);
+            acceptor.start();
+        }
+
+        int port() {
+            return serverSocket.getLocalPort();
+        }
+
+        private void acceptLoop() {
+            while (!serverSocket.isClosed()) {
+                try (Socket socket = serverSocket.accept()) {
+                    connections.incrementAndGet();
+                    serve(socket);
+                } catch (IOException e) {
+                    // Сервер закрыт
+                }
+            }
+        }
+
+        private void serve(Socket socket) throws IOException {
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+            PrintWriter out = new PrintWriter(socket.getOutputStream(), true, StandardCharsets.US_ASCII);
+            reply(out, "220 smtp-stub ready");
+
+            List<String> recipients = new ArrayList<>();
+            String line;
+            while ((line = in.readLine()) != null) {
+                String command = line.toUpperCase();
+                if (command.startsWith("EHLO") || command.startsWith("HELO")) {
+                    reply(out, "250 smtp-stub");
+                } else if (command.startsWith("MAIL FROM")) {
+                    recipients = new ArrayList<>();
+                    reply(out, "250 OK");
+                } else if (command.startsWith("RCPT TO")) {
+                    String address = line.substring(line.indexOf('<') + 1, line.indexOf('>'));
+                    if (rejected.contains(address)) {
+                        reply(out, "550 No such user");
+                    } else {
+                        recipients.add(address);
+                        reply(out, "250 OK");
+                    }
+                } else if (command.startsWith("DATA")) {
+                    reply(out, "354 End data with <CR><LF>.<CR><LF>");
+                    StringBuilder data = new StringBuilder();
+                    while ((line = in.readLine()) != null && !line.equals(".")) {
+                        data.append(line).append('\n');
+                    }
+                    messages.add(new ReceivedMessage(recipients, data.toString()));
+                    reply(out, "250 OK");
+                } else if (command.startsWith("QUIT")) {
+                    reply(out, "221 Bye");
+                    return;
+                } else {
+                    // RSET, NOOP
+                    reply(out, "250 OK");
+                }
+            }
+        }
+
+        private static void reply(PrintWriter out, String response) {
+            out.print(response + "\r\n");
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            serverSocket.close();
+        }
+    }
+}
@@ -0,0 +1,263 @@
+package com.example.signalserver.service.room;
+
+import com.example.signalserver.service.cluster.ClusterMembership;
+import com.example.signalserver.service.cluster.NodeMessenger;
+import com.example.signalserver.util.ConsistentHashRing;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+/**
+ * Маршрутизация через владельца на нескольких узлах в одной JVM:
+ * RabbitMQ заменён очередью, доставляющей сообщения по id узла.
+ */
+class OwnerRoutedRoomTransportTest {
+
+    private static final int VNODES = 40;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final InMemoryBroker broker = new InMemoryBroker();
+    private final Map<String, Node> nodes = new LinkedHashMap<>();
+
+    private volatile ConsistentHashRing ring;
+
+    @BeforeEach
+    void setUp() {
+        for (String id : List.of("n1", "n2", "n3")) {
+            nodes.put(id, new Node(id));
+        }
+        ring = ringOf("n1", "n2", "n3");
+    }
+
+    @Test
+    void ownerForwardsOnlyToNodesHostingTheRoom() {
+        String room = roomOwnedBy("n3");
+        node("n1").transport.attach(room);
+        node("n2").transport.attach(room);
+        broker.pump();
+
+        node("n1").transport.publish(room, "peer-media", null, "peer-1", objectMapper.createObjectNode());
+        broker.pump();
+
+        assertEquals(1, node("n2").received.size());
+        assertEquals("peer-media", node("n2").received.get(0).event());
+        assertEquals("peer-1", node("n2").received.get(0).excluded());
+        assertTrue(node("n1").received.isEmpty(), "Sender must not get its own message back");
+        assertTrue(node("n3").received.isEmpty(), "Owner without members must not deliver locally");
+    }
+
+    @Test
+    void ownerHandlesItsOwnTrafficWithoutBroker() {
+        String room = roomOwnedBy("n1");
+        node("n1").transport.attach(room);
+        node("n2").transport.attach(room);
+        broker.pump();
+        broker.sent = 0;
+
+        node("n2").transport.publish(room, "offer", "peer-1", null, objectMapper.createObjectNode());
+        broker.pump();
+        // Единственный переход через брокер - ROUTE от n2 к владельцу
+        assertEquals(1, broker.sent);
+        assertEquals("peer-1", node("n1").received.get(0).to());
+
+        node("n1").transport.publish(room, "answer", "peer-2", null, objectMapper.createObjectNode());
+        broker.pump();
+        assertEquals(2, broker.sent);
+        assertEquals("answer", node("n2").received.get(0).event());
+    }
+
+    @Test
+    void roomsMoveToNewOwnerWhenNodeLeaves() {
+        String room = roomOwnedBy("n3");
+        node("n1").transport.attach(room);
+        node("n2").transport.attach(room);
+        broker.pump();
+
+        ConsistentHashRing previous = ring;
+        ring = ringOf("n1", "n2");
+        nodes.remove("n3");
+        for (Node node : nodes.values()) {
+            node.transport.onRingChanged(previous, ring);
+        }
+        broker.pump();
+
+        node("n2").transport.publish(room, "peer-joined", null, null, objectMapper.createObjectNode());
+        broker.pump();
+
+        assertEquals(1, node("n1").received.size());
+        assertTrue(node("n2").received.isEmpty());
+    }
+
+    @Test
+    void newOwnerReplaysRoutesToNodesThatAttachLate() {
+        ConsistentHashRing grown = ringOf("n1", "n2", "n3", "n4");
+        String room = roomMovingTo("n3", "n4", grown);
+        node("n1").transport.attach(room);
+        node("n2").transport.attach(room);
+        broker.pump();
+
+        Node n4 = new Node("n4");
+        nodes.put("n4", n4);
+        n4.view(ringOf("n4"), grown);
+
+        // n1 уже видит n4 владельцем, n2 и n3 - ещё нет
+        node("n1").view(ring, grown);
+        node("n1").transport.publish(room, "peer-joined", null, null, objectMapper.createObjectNode());
+        broker.pump();
+        assertTrue(node("n2").received.isEmpty());
+
+        node("n2").view(ring, grown);
+        broker.pump();
+        node("n3").view(ring, grown);
+        broker.pump();
+
+        assertEquals(1, node("n2").received.size());
+        assertEquals("peer-joined", node("n2").received.get(0).event());
+        assertTrue(node("n1").received.isEmpty());
+    }
+
+    @Test
+    void oldOwnerHandsOffMembersToNewOwner() {
+        ConsistentHashRing grown = ringOf("n1", "n2", "n3", "n4");
+        String room = roomMovingTo("n3", "n4", grown);
+        node("n1").transport.attach(room);
+        node("n2").transport.attach(room);
+        broker.pump();
+
+        Node n4 = new Node("n4");
+        nodes.put("n4", n4);
+        n4.view(ringOf("n4"), grown);
+
+        // Прежний владелец обновился первым, участники ещё шлют ему
+        node("n3").view(ring, grown);
+        broker.pump();
+        node("n2").transport.publish(room, "peer-media", null, null, objectMapper.createObjectNode());
+        broker.pump();
+        assertEquals(1, node("n1").received.size());
+
+        // Повторная регистрация уже известных узлов не дублирует доставку
+        node("n1").view(ring, grown);
+        node("n2").view(ring, grown);
+        broker.pump();
+        assertEquals(1, node("n1").received.size());
+        assertTrue(node("n2").received.isEmpty());
+        assertTrue(node("n3").received.isEmpty());
+    }
+
+    @Test
+    void detachedNodeStopsReceiving() {
+        String room = roomOwnedBy("n2");
+        node("n1").transport.attach(room);
+        node("n3").transport.attach(room);
+        broker.pump();
+
+        node("n3").transport.detach(room);
+        broker.pump();
+
+        node("n1").transport.publish(room, "peer-left", null, null, objectMapper.createObjectNode());
+        broker.pump();
+
+        assertTrue(node("n3").received.isEmpty());
+        assertEquals(0, broker.pending.size());
+    }
+
+    private Node node(String id) {
+        return nodes.get(id);
+    }
+
+    private String roomOwnedBy(String nodeId) {
+        for (int i = 0; ; i++) {
+            String room = "room-" + i;
+            if (nodeId.equals(ring.ownerOf(room))) {
+                return room;
+            }
+        }
+    }
+
+    private String roomMovingTo(String from, String to, ConsistentHashRing grown) {
+        for (int i = 0; ; i++) {
+            String room = "room-" + i;
+            if (from.equals(ring.ownerOf(room)) && to.equals(grown.ownerOf(room))) {
+                return room;
+            }
+        }
+    }
+
+    private static ConsistentHashRing ringOf(String... ids) {
+        Map<String, Integer> weights = new LinkedHashMap<>();
+        for (String id : ids) {
+            weights.put(id, 4);
+        }
+        return ConsistentHashRing.of(weights, VNODES);
+    }
+
+    private final class Node {
+        final OwnerRoutedRoomTransport transport = new OwnerRoutedRoomTransport();
+        final List<RoomTransport.RelayedMessage> received = new ArrayList<>();
+
+        // Собственное кольцо узла; null - общее кольцо теста
+        private volatile ConsistentHashRing view;
+
+        Node(String id) {
+            ClusterMembership membership = Mockito.mock(ClusterMembership.class);
+            when(membership.getNodeId()).thenReturn(id);
+            when(membership.ownerOf(anyString())).thenAnswer(invocation ->
+                    (view != null ? view : ring).ownerOf(invocation.getArgument(0)));
+
+            ReflectionTestUtils.setField(transport, "clusterMembership", membership);
+            ReflectionTestUtils.setField(transport, "nodeMessenger", broker);
+            ReflectionTestUtils.setField(transport, "objectMapper", objectMapper);
+            ReflectionTestUtils.setField(transport, "meterRegistry", new SimpleMeterRegistry());
+            ReflectionTestUtils.setField(transport, "settleMs", 60_000L);
+            transport.init();
+            transport.setInboundHandler((roomCode, messages) -> received.addAll(messages));
+        }
+
+        /**
+         * Узел увидел новое кольцо раньше или позже остальных
+         */
+        void view(ConsistentHashRing previous, ConsistentHashRing updated) {
+            view = updated;
+            transport.onRingChanged(previous, updated);
+        }
+    }
+
+    /**
+     * Заменитель брокера: сообщения копятся в очереди и доставляются по pump()
+     */
+    private final class InMemoryBroker implements NodeMessenger {
+        final Queue<Map.Entry<String, byte[]>> pending = new ArrayDeque<>();
+        int sent;
+
+        @Override
+        public void send(String nodeId, byte[] body) {
+            pending.add(Map.entry(nodeId, body));
+            sent++;
+        }
+
+        void pump() {
+            Map.Entry<String, byte[]> message;
+            while ((message = pending.poll()) != null) {
+                Node target = nodes.get(message.getKey());
+                if (target != null) {
+                    target.transport.receive(message.getValue());
+                }
+            }
+        }
+    }
+}
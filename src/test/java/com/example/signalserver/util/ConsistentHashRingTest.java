@@ -0,0 +1,88 @@
+package com.example.signalserver.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConsistentHashRingTest {
+
+    private static final int VNODES = 40;
+    private static final int KEYS = 100_000;
+
+    @Test
+    void spreadsKeysEvenlyAcrossEqualNodes() {
+        ConsistentHashRing ring = ConsistentHashRing.of(Map.of("a", 4, "b", 4, "c", 4), VNODES);
+
+        Map<String, Integer> counts = count(ring);
+        for (int count : counts.values()) {
+            assertTrue(Math.abs(count - KEYS / 3.0) < KEYS / 3.0 * 0.15, "Uneven distribution: " + counts);
+        }
+    }
+
+    @Test
+    void spreadsKeysProportionallyToWeight() {
+        ConsistentHashRing ring = ConsistentHashRing.of(Map.of("heavy", 6, "light", 2), VNODES);
+
+        Map<String, Integer> counts = count(ring);
+        double share = counts.get("heavy") / (double) KEYS;
+        assertTrue(share > 0.65 && share < 0.85, "Heavy node share: " + share);
+    }
+
+    @Test
+    void joiningNodeTakesKeysOnlyFromOthers() {
+        ConsistentHashRing before = ConsistentHashRing.of(Map.of("a", 4, "b", 4, "c", 4), VNODES);
+        ConsistentHashRing after = ConsistentHashRing.of(Map.of("a", 4, "b", 4, "c", 4, "d", 4), VNODES);
+
+        int moved = 0;
+        for (int i = 0; i < KEYS; i++) {
+            String key = "room-" + i;
+            String oldOwner = before.ownerOf(key);
+            String newOwner = after.ownerOf(key);
+            if (!oldOwner.equals(newOwner)) {
+                assertEquals("d", newOwner, "Key moved between existing nodes: " + key);
+                moved++;
+            }
+        }
+        // Идеально - четверть ключей
+        assertTrue(moved < KEYS * 0.32, "Too many keys moved: " + moved);
+    }
+
+    @Test
+    void leavingNodeHandsOverOnlyItsKeys() {
+        ConsistentHashRing before = ConsistentHashRing.of(Map.of("a", 4, "b", 4, "c", 4), VNODES);
+        ConsistentHashRing after = ConsistentHashRing.of(Map.of("a", 4, "c", 4), VNODES);
+
+        for (int i = 0; i < KEYS; i++) {
+            String key = "room-" + i;
+            String oldOwner = before.ownerOf(key);
+            if (!oldOwner.equals("b")) {
+                assertEquals(oldOwner, after.ownerOf(key), "Key of a remaining node moved: " + key);
+            }
+        }
+    }
+
+    @Test
+    void lowerWeightOnlyReleasesKeys() {
+        ConsistentHashRing before = ConsistentHashRing.of(Map.of("a", 4, "b", 4), VNODES);
+        ConsistentHashRing after = ConsistentHashRing.of(Map.of("a", 4, "b", 2), VNODES);
+
+        for (int i = 0; i < KEYS; i++) {
+            String key = "room-" + i;
+            if (before.ownerOf(key).equals("a")) {
+                assertEquals("a", after.ownerOf(key), "Key moved to the node that lost weight: " + key);
+            }
+        }
+    }
+
+    private static Map<String, Integer> count(ConsistentHashRing ring) {
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < KEYS; i++) {
+            counts.merge(ring.ownerOf("room-" + i), 1, Integer::sum);
+        }
+        return counts;
+    }
+}
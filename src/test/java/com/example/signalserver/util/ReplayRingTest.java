@@ -0,0 +1,68 @@
+package com.example.signalserver.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReplayRingTest {
+
+    @Test
+    void replaysOnlyMessagesAfterLastSeq() {
+        ReplayRing ring = new ReplayRing(1024);
+        for (int i = 1; i <= 5; i++) {
+            assertEquals(i, ring.append("event", data("m" + i)));
+        }
+
+        List<String> replayed = new ArrayList<>();
+        assertTrue(ring.replayAfter(3, (seq, event, data) -> replayed.add(seq + ":" + text(data))));
+        assertEquals(List.of("4:m4", "5:m5"), replayed);
+
+        assertTrue(ring.replayAfter(5, (seq, event, data) -> replayed.add("unexpected")));
+        assertEquals(2, replayed.size());
+    }
+
+    @Test
+    void evictsOldestRecordsAcrossWrapAround() {
+        // Запись: 16 байт заголовка + 1 байт события + 10 байт данных
+        ReplayRing ring = new ReplayRing(100);
+        for (int i = 0; i < 10; i++) {
+            ring.append("e", data(String.format("payload-%02d", i)));
+        }
+        assertEquals(3, ring.size());
+
+        List<String> replayed = new ArrayList<>();
+        assertTrue(ring.replayAfter(8, (seq, event, data) -> replayed.add(event + ":" + text(data))));
+        assertEquals(List.of("e:payload-08", "e:payload-09"), replayed);
+
+        assertTrue(ring.replayAfter(7, (seq, event, data) -> { }));
+        assertFalse(ring.replayAfter(6, (seq, event, data) -> { }), "Evicted messages cannot be replayed");
+    }
+
+    @Test
+    void oversizedMessageBreaksReplayBeforeIt() {
+        ReplayRing ring = new ReplayRing(64);
+        ring.append("small", data("a"));
+        long big = ring.append("big", new byte[128]);
+        long next = ring.append("small", data("b"));
+
+        assertFalse(ring.replayAfter(big - 1, (seq, event, data) -> { }));
+
+        List<Long> replayed = new ArrayList<>();
+        assertTrue(ring.replayAfter(big, (seq, event, data) -> replayed.add(seq)));
+        assertEquals(List.of(next), replayed);
+    }
+
+    private static byte[] data(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String text(byte[] data) {
+        return new String(data, StandardCharsets.UTF_8);
+    }
+}